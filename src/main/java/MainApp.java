@@ -1,20 +1,166 @@
+import api.HttpServerOptions;
+import api.UserHttpServer;
+import dao.CachingUserDao;
+import dao.InMemoryUserDao;
+import dao.MetricsUserDao;
+import dao.ShardFence;
+import dao.ShardMapStore;
+import dao.ShardRanges;
+import dao.ShardRebalancer;
+import dao.ShardedUserDao;
 import dao.UserDao;
 import dao.UserDaoImpl;
+import dao.WriteBehindUserDao;
 import entity.User;
+import exception.UserException;
+import metrics.HibernateMetrics;
+import metrics.MetricsRegistry;
+import org.hibernate.SessionFactory;
+import service.UserBatchRunner;
 import service.UserMenuManager;
 import service.UserService;
 import utils.HibernateUtil;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class MainApp {
-    private static final Scanner scanner = new Scanner(System.in);
-    private static final UserDao<User, Long> userDao = new UserDaoImpl();
-    private static final UserService userService = new UserService(userDao);
-    private static final UserMenuManager menuManager = new UserMenuManager(scanner, userService);
-
-    public static void main(String[] args) {
-        menuManager.run();
-        HibernateUtil.shutdown();
+    private static final String engine = System.getProperty("user.dao", "hibernate").toLowerCase(Locale.ROOT);
+    private static final boolean inMemory = "memory".equals(engine);
+    private static final MetricsRegistry metrics = MetricsRegistry.global();
+    private static ShardedUserDao shardedDao;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long toMainMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        metrics.registerMBean();
+        UserService userService = new UserService(inMemory
+                ? new MetricsUserDao<>(new InMemoryUserDao(), metrics, "dao")
+                : createUserDao());
+        if (args.length > 0 && "--http".equals(args[0])) {
+            runHttpServer(userService);
+        } else if (args.length > 0 && "--startup-report".equals(args[0])) {
+            startupReport(userService, toMainMillis);
+        } else if (args.length == 2 && "--batch".equals(args[0])) {
+            runBatch(userService, args[1]);
+        } else if (args.length == 4 && "--rebalance".equals(args[0])) {
+            rebalance(Long.parseLong(args[1]), Long.parseLong(args[2]), Integer.parseInt(args[3]));
+        } else {
+            new UserMenuManager(new Scanner(System.in), userService).run();
+        }
+        if (!inMemory) {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    private static void runHttpServer(UserService userService) throws IOException, InterruptedException {
+        UserHttpServer server = new UserHttpServer(userService, HttpServerOptions.fromSystemProperties());
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            stopped.countDown();
+        }));
+        server.start();
+        stopped.await();
+    }
+
+    /**
+     * Команды из файла или, если указан "-", из stdin. Размер пакета — -Duser.batch.size.
+     */
+    private static void runBatch(UserService userService, String source) throws IOException {
+        UserBatchRunner runner = new UserBatchRunner(userService,
+                Integer.getInteger("user.batch.size", UserBatchRunner.DEFAULT_BATCH_SIZE));
+        try (Reader reader = "-".equals(source)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(source), StandardCharsets.UTF_8)) {
+            runner.run(reader);
+        }
+    }
+
+    /**
+     * Время холодного старта: от запуска JVM до main и до первого запроса, который строит SessionFactory.
+     * Сравнивать с -Dhibernate.fast_start=true и с архивом AppCDS (профиль fast-start в pom.xml).
+     */
+    private static void startupReport(UserService userService, long toMainMillis) {
+        long queryStartedAt = System.nanoTime();
+        String firstQuery;
+        try {
+            long users = userService.countUsers();
+            firstQuery = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queryStartedAt) + " мс (пользователей: " + users + ")";
+        } catch (UserException ex) {
+            firstQuery = "БД недоступна: " + ex.getMessage();
+        }
+        System.out.println("Запуск JVM -> main: " + toMainMillis + " мс");
+        System.out.println("Построение SessionFactory: " + HibernateUtil.getBootDuration().toMillis() + " мс");
+        System.out.println("Первый запрос (вместе с построением SessionFactory): " + firstQuery);
+        System.out.println("Запуск JVM -> первый запрос: " + ManagementFactory.getRuntimeMXBean().getUptime() + " мс");
+        System.out.println("Загружено классов: " + ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount());
+    }
+
+    private static void rebalance(long fromInclusive, long toExclusive, int targetShard) {
+        if (shardedDao == null) {
+            throw new UserException("Перенос диапазона доступен только при -Duser.dao=sharded");
+        }
+        new ShardRebalancer(shardedDao, HibernateUtil.getShardSessionFactories())
+                .moveRange(fromInclusive, toExclusive, targetShard);
+    }
+
+    private static UserDao<User, Long> createUserDao() {
+        UserDao<User, Long> storage = "sharded".equals(engine) ? createShardedDao() : new UserDaoImpl();
+        HibernateUtil.whenInitialized(sessionFactory -> HibernateMetrics.bind(metrics, sessionFactory));
+        HibernateMetrics.bindPool(metrics);
+        CachingUserDao cache = new CachingUserDao(
+                new MetricsUserDao<>(storage, metrics, "dao"),
+                Integer.getInteger("user.cache.size", 10_000),
+                Duration.ofSeconds(Long.getLong("user.cache.ttl.seconds", 300)));
+        metrics.gauge("cache.hits", () -> cache.cacheStats().hits());
+        metrics.gauge("cache.misses", () -> cache.cacheStats().misses());
+        metrics.gauge("cache.evictions", () -> cache.cacheStats().evictions());
+        metrics.gauge("cache.size", () -> cache.cacheStats().size());
+        if (!Boolean.getBoolean("user.writeBehind")) {
+            return cache;
+        }
+        WriteBehindUserDao writeBehind = new WriteBehindUserDao(
+                cache,
+                Integer.getInteger("user.writeBehind.capacity", 10_000),
+                Integer.getInteger("user.writeBehind.batchSize", 50),
+                Duration.ofMillis(Long.getLong("user.writeBehind.flushMillis", 200)),
+                Duration.ofMillis(Long.getLong("user.writeBehind.offerTimeoutMillis", 1_000)));
+        HibernateUtil.closeBeforeShutdown(writeBehind);
+        metrics.gauge("write_behind.pending", writeBehind::pendingWrites);
+        return writeBehind;
+    }
+
+    private static ShardedUserDao createShardedDao() {
+        List<SessionFactory> sessionFactories = HibernateUtil.getShardSessionFactories();
+        List<UserDaoImpl> shards = new ArrayList<>(sessionFactories.size());
+        for (int i = 0; i < sessionFactories.size(); i++) {
+            UserDaoImpl shard = i == 0 ? new UserDaoImpl() : new UserDaoImpl(sessionFactories.get(i));
+            shard.restartIdSequence(ShardRanges.firstId(i));
+            shard.setShardFence(new ShardFence(i, sessionFactories.size()));
+            shards.add(shard);
+        }
+        // user.shards.ranges задает карту только для пустой shard_map, дальше ее меняет --rebalance
+        String ranges = System.getProperty("user.shards.ranges");
+        ShardMapStore mapStore = new ShardMapStore(sessionFactories);
+        mapStore.initialize(ranges == null
+                ? ShardRanges.initial(shards.size())
+                : ShardRanges.parse(ranges, shards.size()));
+        shardedDao = new ShardedUserDao(shards, mapStore,
+                Duration.ofMillis(Long.getLong("user.shards.refreshMillis", 1_000)));
+        HibernateUtil.closeBeforeShutdown(shardedDao);
+        return shardedDao;
     }
-}
\ No newline at end of file
+}
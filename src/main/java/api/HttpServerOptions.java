@@ -0,0 +1,32 @@
+package api;
+
+import exception.UserException;
+
+public record HttpServerOptions(int port,
+                                int backlog,
+                                int maxBodyBytes,
+                                int maxRequestHeaders,
+                                int keepAliveSeconds,
+                                int maxIdleConnections) {
+
+    public HttpServerOptions {
+        if (port < 0 || backlog <= 0 || maxBodyBytes <= 0 || maxRequestHeaders <= 0
+                || keepAliveSeconds <= 0 || maxIdleConnections <= 0) {
+            throw new UserException("Некорректные параметры HTTP-сервера");
+        }
+    }
+
+    public static HttpServerOptions fromSystemProperties() {
+        return new HttpServerOptions(
+                Integer.getInteger("user.http.port", 8080),
+                Integer.getInteger("user.http.backlog", 1024),
+                Integer.getInteger("user.http.maxBodyBytes", 16 * 1024),
+                Integer.getInteger("user.http.maxRequestHeaders", 100),
+                Integer.getInteger("user.http.keepAliveSeconds", 30),
+                Integer.getInteger("user.http.maxIdleConnections", 1000));
+    }
+
+    public HttpServerOptions withPort(int port) {
+        return new HttpServerOptions(port, backlog, maxBodyBytes, maxRequestHeaders, keepAliveSeconds, maxIdleConnections);
+    }
+}
@@ -0,0 +1,279 @@
+package api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import entity.User;
+import exception.DuplicateEmailException;
+import exception.UserException;
+import exception.UserNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import metrics.MetricsRegistry;
+import service.UserService;
+import utils.UserJson;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP/JSON API поверх {@link UserService} на встроенном сервере JDK.
+ * Каждый запрос обрабатывается в своем виртуальном потоке, списки отдаются chunked-ответом
+ * и сериализуются прямо в поток ответа.
+ * <pre>
+ * GET    /users/{id}
+ * GET    /users?afterId=&amp;size=   или   /users?page=&amp;size=
+ * POST   /users
+ * PUT    /users/{id}
+ * DELETE /users/{id}
+ * GET    /metrics              (текстовый формат Prometheus)
+ * </pre>
+ */
+@Slf4j
+public class UserHttpServer implements AutoCloseable {
+
+    private static final String USERS_PATH = "/users";
+    private static final String METRICS_PATH = "/metrics";
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int STOP_DELAY_SECONDS = 1;
+
+    private final UserService userService;
+    private final HttpServerOptions options;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public UserHttpServer(UserService userService, HttpServerOptions options) throws IOException {
+        this.userService = userService;
+        this.options = options;
+        applyConnectionSettings(options);
+        this.server = HttpServer.create(new InetSocketAddress(options.port()), options.backlog());
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext(USERS_PATH, this::handle);
+        server.createContext(METRICS_PATH, this::handleMetrics);
+    }
+
+    public void start() {
+        server.start();
+        log.info("HTTP API запущен на порту {}", port());
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                route(exchange);
+            } catch (UserNotFoundException ex) {
+                sendError(exchange, 404, ex.getMessage());
+            } catch (RequestTooLargeException ex) {
+                sendError(exchange, 413, ex.getMessage());
+            } catch (UserException | NumberFormatException | ArithmeticException ex) {
+                int status = statusFor(ex);
+                if (status == 500) {
+                    log.error(ex.getMessage(), ex);
+                }
+                sendError(exchange, status, ex.getMessage());
+            } catch (RuntimeException ex) {
+                log.error("Ошибка обработки HTTP-запроса", ex);
+                sendError(exchange, 500, "Внутренняя ошибка сервера");
+            }
+        }
+    }
+
+    /**
+     * Ошибка без причины — отказ валидации. С причиной смотрим SQLSTATE: 23505 — нарушение уникальности,
+     * остальные 23xxx — нарушение ограничений таблицы, то есть тоже неверные данные запроса.
+     */
+    private static int statusFor(RuntimeException ex) {
+        if (ex instanceof DuplicateEmailException) {
+            return 409;
+        }
+        for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("23")) {
+                return "23505".equals(sql.getSQLState()) ? 409 : 400;
+            }
+        }
+        return ex.getCause() != null ? 500 : 400;
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Метод не поддерживается");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", PROMETHEUS_TEXT);
+            exchange.sendResponseHeaders(200, 0);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+                MetricsRegistry.global().writePrometheus(writer);
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        Long id = parseId(path);
+
+        if (id == null) {
+            switch (method) {
+                case "GET" -> listUsers(exchange);
+                case "POST" -> createUser(exchange);
+                default -> sendError(exchange, 405, "Метод не поддерживается");
+            }
+            return;
+        }
+        switch (method) {
+            case "GET" -> getUser(exchange, id);
+            case "PUT" -> updateUser(exchange, id);
+            case "DELETE" -> deleteUser(exchange, id);
+            default -> sendError(exchange, 405, "Метод не поддерживается");
+        }
+    }
+
+    private void getUser(HttpExchange exchange, long id) throws IOException {
+        Optional<User> user = userService.getUserById(id);
+        if (user.isEmpty()) {
+            throw new UserNotFoundException(id);
+        }
+        sendUser(exchange, 200, user.get());
+    }
+
+    private void listUsers(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI());
+        int size = query.containsKey("size") ? Integer.parseInt(query.get("size")) : DEFAULT_PAGE_SIZE;
+        List<User> users = query.containsKey("page")
+                ? userService.getUsersPage(Integer.parseInt(query.get("page")), size)
+                : userService.getUsersAfterId(query.containsKey("afterId") ? Long.parseLong(query.get("afterId")) : null, size);
+
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            writer.write('[');
+            for (int i = 0; i < users.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                UserJson.write(users.get(i), writer);
+            }
+            writer.write(']');
+        }
+    }
+
+    private void createUser(HttpExchange exchange) throws IOException {
+        User user = UserJson.parse(readBody(exchange));
+        user.setId(null);
+        userService.saveUser(user);
+        sendUser(exchange, 201, user);
+    }
+
+    private void updateUser(HttpExchange exchange, long id) throws IOException {
+        User user = UserJson.parse(readBody(exchange));
+        user.setId(id);
+        userService.updateUser(user);
+        sendUser(exchange, 200, user);
+    }
+
+    private void deleteUser(HttpExchange exchange, long id) throws IOException {
+        userService.deleteUser(id);
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readNBytes(options.maxBodyBytes() + 1);
+            if (bytes.length > options.maxBodyBytes()) {
+                throw new RequestTooLargeException(options.maxBodyBytes());
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void sendUser(HttpExchange exchange, int status, User user) throws IOException {
+        send(exchange, status, UserJson.toJson(user));
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            // Заголовки потокового ответа уже ушли: статус не поменять, обрываем ответ закрытием обмена
+            log.warn("Ответ {} {} прерван после отправки заголовков: {}",
+                    exchange.getRequestMethod(), exchange.getRequestURI(), message);
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"error\":");
+        json.append('"');
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\');
+            }
+            json.append(c < 0x20 ? ' ' : c);
+        }
+        json.append("\"}");
+        send(exchange, status, json.toString());
+    }
+
+    private void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static Long parseId(String path) {
+        if (path.length() <= USERS_PATH.length() + 1) {
+            return null;
+        }
+        return Long.parseLong(path.substring(USERS_PATH.length() + 1));
+    }
+
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String query = uri.getQuery();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(pair.substring(0, eq), pair.substring(eq + 1));
+            }
+        }
+        return params;
+    }
+
+    private static void applyConnectionSettings(HttpServerOptions options) {
+        // Настройки читаются встроенным сервером один раз, при первом создании HttpServer
+        System.setProperty("sun.net.httpserver.idleInterval", String.valueOf(options.keepAliveSeconds()));
+        System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(options.maxIdleConnections()));
+        System.setProperty("sun.net.httpserver.maxReqHeaders", String.valueOf(options.maxRequestHeaders()));
+    }
+
+    private static final class RequestTooLargeException extends RuntimeException {
+        private RequestTooLargeException(int limit) {
+            super("Тело запроса превышает " + limit + " байт");
+        }
+    }
+}
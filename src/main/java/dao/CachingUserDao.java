@@ -0,0 +1,165 @@
+package dao;
+
+import entity.User;
+import utils.CacheStats;
+import utils.LruCache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through кэш пользователей по ID поверх любого {@link UserDao}.
+ * Наружу отдаются копии, чтобы изменения вызывающего кода не попадали в кэш до успешной записи.
+ * Индекс email -> ID используется только вместе с кэшем по ID: запись сбрасывается там,
+ * а устаревшее соответствие email отсекается сверкой email у закэшированного пользователя.
+ * Каждая запись увеличивает поколение инвалидации; загрузка, во время которой оно сменилось,
+ * в кэш не попадает, иначе прочитанное до update/delete значение пережило бы инвалидацию.
+ */
+public class CachingUserDao extends ForwardingUserDao<User, Long> {
+
+    private final LruCache<Long, User> byId;
+    private final LruCache<String, Long> idByEmail;
+    private final AtomicLong generation = new AtomicLong();
+
+    public CachingUserDao(UserDao<User, Long> delegate, int maxSize, Duration ttl) {
+        super(delegate);
+        this.byId = new LruCache<>(maxSize, ttl.toNanos(), TimeUnit.NANOSECONDS);
+        this.idByEmail = new LruCache<>(maxSize, ttl.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        if (id == null) {
+            return delegate.findById(null);
+        }
+        User cached = byId.get(id);
+        if (cached != null) {
+            return Optional.of(copy(cached));
+        }
+        long loadGeneration = generation.get();
+        Optional<User> loaded = delegate.findById(id);
+        loaded.ifPresent(user -> remember(user, loadGeneration));
+        return loaded;
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        User cached = cachedByEmail(email);
+        if (cached != null) {
+            return Optional.of(copy(cached));
+        }
+        long loadGeneration = generation.get();
+        Optional<User> loaded = delegate.findByEmail(email);
+        loaded.ifPresent(user -> remember(user, loadGeneration));
+        return loaded;
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return cachedByEmail(email) != null || delegate.existsByEmail(email);
+    }
+
+    @Override
+    public boolean update(User user) {
+        try {
+            return delegate.update(user);
+        } finally {
+            invalidate(user.getId());
+        }
+    }
+
+    @Override
+    public boolean updateIfExists(User user) {
+        try {
+            return delegate.updateIfExists(user);
+        } finally {
+            invalidate(user.getId());
+        }
+    }
+
+    @Override
+    public boolean delete(Long id) {
+        try {
+            return delegate.delete(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public int updateAll(Collection<? extends User> users) {
+        try {
+            return delegate.updateAll(users);
+        } finally {
+            generation.incrementAndGet();
+            users.forEach(user -> byId.invalidate(user.getId()));
+        }
+    }
+
+    @Override
+    public int deleteAllById(Collection<? extends Long> ids) {
+        try {
+            return delegate.deleteAllById(ids);
+        } finally {
+            generation.incrementAndGet();
+            ids.forEach(byId::invalidate);
+        }
+    }
+
+    public CacheStats cacheStats() {
+        return byId.stats();
+    }
+
+    public CacheStats naturalIdCacheStats() {
+        return idByEmail.stats();
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        byId.invalidateAll();
+        idByEmail.invalidateAll();
+    }
+
+    private User cachedByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        String key = User.emailKey(email);
+        Long id = idByEmail.get(key);
+        if (id == null) {
+            return null;
+        }
+        User cached = byId.get(id);
+        if (cached == null || !key.equals(User.emailKey(cached.getEmail()))) {
+            idByEmail.invalidate(key);
+            return null;
+        }
+        return cached;
+    }
+
+    private void invalidate(Long id) {
+        generation.incrementAndGet();
+        if (id != null) {
+            byId.invalidate(id);
+        }
+    }
+
+    private void remember(User user, long loadGeneration) {
+        if (generation.get() != loadGeneration) {
+            return;
+        }
+        byId.put(user.getId(), copy(user));
+        idByEmail.put(User.emailKey(user.getEmail()), user.getId());
+        // Инвалидация могла пройти между проверкой и put: тогда она не увидела нашу запись
+        if (generation.get() != loadGeneration) {
+            byId.invalidate(user.getId());
+        }
+    }
+
+    private static User copy(User user) {
+        return new User(user.getId(), user.getUsername(), user.getEmail(), user.getAge(), user.getCreatedAt());
+    }
+}
@@ -0,0 +1,135 @@
+package dao;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Базовый декоратор: передает все вызовы в delegate. Наследники переопределяют только нужные операции.
+ */
+public abstract class ForwardingUserDao<T, ID> implements UserDao<T, ID> {
+
+    protected final UserDao<T, ID> delegate;
+
+    protected ForwardingUserDao(UserDao<T, ID> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<T> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<T> findPage(int offset, int limit) {
+        return delegate.findPage(offset, limit);
+    }
+
+    @Override
+    public List<T> findAfterId(ID lastId, int limit) {
+        return delegate.findAfterId(lastId, limit);
+    }
+
+    @Override
+    public List<T> findCreatedAfter(LocalDateTime lastCreatedAt, ID lastId, int limit) {
+        return delegate.findCreatedAfter(lastCreatedAt, lastId, limit);
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public long streamAll(Consumer<? super T> action) {
+        return delegate.streamAll(action);
+    }
+
+    @Override
+    public long streamRange(ID fromInclusive, ID toExclusive, Consumer<? super T> action) {
+        return delegate.streamRange(fromInclusive, toExclusive, action);
+    }
+
+    @Override
+    public Optional<ID> findMinId() {
+        return delegate.findMinId();
+    }
+
+    @Override
+    public Optional<ID> findMaxId() {
+        return delegate.findMaxId();
+    }
+
+    @Override
+    public Optional<T> findById(ID id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public Optional<T> findByEmail(String email) {
+        return delegate.findByEmail(email);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return delegate.existsByEmail(email);
+    }
+
+    @Override
+    public List<T> searchByUsername(String prefix, int limit) {
+        return delegate.searchByUsername(prefix, limit);
+    }
+
+    @Override
+    public List<T> searchBySimilarUsername(String query, int limit) {
+        return delegate.searchBySimilarUsername(query, limit);
+    }
+
+    @Override
+    public long[] ageHistogram(int bucketWidth, int buckets) {
+        return delegate.ageHistogram(bucketWidth, buckets);
+    }
+
+    @Override
+    public long[] signupsPerDay(LocalDate fromInclusive, LocalDate toExclusive) {
+        return delegate.signupsPerDay(fromInclusive, toExclusive);
+    }
+
+    @Override
+    public boolean create(T entity) {
+        return delegate.create(entity);
+    }
+
+    @Override
+    public boolean update(T entity) {
+        return delegate.update(entity);
+    }
+
+    @Override
+    public boolean updateIfExists(T entity) {
+        return delegate.updateIfExists(entity);
+    }
+
+    @Override
+    public boolean delete(ID id) {
+        return delegate.delete(id);
+    }
+
+    @Override
+    public int createAll(Collection<? extends T> entities) {
+        return delegate.createAll(entities);
+    }
+
+    @Override
+    public int updateAll(Collection<? extends T> entities) {
+        return delegate.updateAll(entities);
+    }
+
+    @Override
+    public int deleteAllById(Collection<? extends ID> ids) {
+        return delegate.deleteAllById(ids);
+    }
+}
@@ -0,0 +1,458 @@
+package dao;
+
+import entity.User;
+import exception.DuplicateEmailException;
+import exception.UserException;
+import utils.LongObjectHashMap;
+import utils.Trigrams;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище пользователей в памяти, без БД. Пользователи лежат в сегментах — таблицах с открытой адресацией
+ * по примитивному id, у каждого сегмента свой {@link StampedLock}: чтение идет оптимистично, без захвата замка,
+ * запись блокирует только свой сегмент. Уникальность email без учета регистра держит отдельный
+ * индекс lower(email) -> id.
+ * Поиск по префиксу имени идет по упорядоченному индексу (username, id) — skip list, который обновляется
+ * вместе с записью; нечеткий поиск по триграммам — полным проходом.
+ * Агрегаты (гистограмма возраста, регистрации по дням) считаются по сегментам параллельно, без копий пользователей.
+ * Упорядоченные по id выборки идут по skip list живых id, а не перебором всего диапазона выданных id:
+ * их стоимость зависит от размера результата, а не от числа удаленных записей. Наружу отдаются только копии.
+ */
+public class InMemoryUserDao implements UserDao<User, Long> {
+
+    private static final int SEGMENTS = 16;
+    private static final Comparator<User> BY_CREATED_AT = Comparator
+            .comparing(User::getCreatedAt)
+            .thenComparing(User::getId);
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final ConcurrentHashMap<String, Long> idByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<UsernameKey> byUsername = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<Long> ids = new ConcurrentSkipListSet<>();
+    private final AtomicLong lastId;
+    private final long firstId;
+    private final LongAdder size = new LongAdder();
+
+    public InMemoryUserDao() {
+        this(1);
+    }
+
+    public InMemoryUserDao(long firstId) {
+        if (firstId <= 0) {
+            throw new UserException("Начальный ID должен быть положительным");
+        }
+        this.firstId = firstId;
+        this.lastId = new AtomicLong(firstId - 1);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public List<User> findAll() {
+        List<User> users = new ArrayList<>();
+        streamAll(users::add);
+        return users;
+    }
+
+    @Override
+    public List<User> findPage(int offset, int limit) {
+        List<User> users = new ArrayList<>(Math.min(limit, 1024));
+        int skipped = 0;
+        for (Iterator<Long> it = ids.iterator(); it.hasNext() && users.size() < limit; ) {
+            // id мог быть удален между чтением индекса и сегмента
+            User user = get(it.next());
+            if (user != null && skipped++ >= offset) {
+                users.add(copy(user));
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public List<User> findAfterId(Long lastId, int limit) {
+        List<User> users = new ArrayList<>(Math.min(limit, 1024));
+        Collection<Long> tail = lastId == null ? ids : ids.tailSet(lastId, false);
+        for (Iterator<Long> it = tail.iterator(); it.hasNext() && users.size() < limit; ) {
+            User user = get(it.next());
+            if (user != null) {
+                users.add(copy(user));
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public List<User> findCreatedAfter(LocalDateTime lastCreatedAt, Long lastId, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        // Индекса по created_at нет: один проход с кучей на limit элементов, O(n log limit)
+        PriorityQueue<User> top = new PriorityQueue<>(limit, BY_CREATED_AT.reversed());
+        for (Segment segment : segments) {
+            segment.forEach(user -> {
+                if (lastCreatedAt != null && !isAfter(user, lastCreatedAt, lastId)) {
+                    return;
+                }
+                if (top.size() < limit) {
+                    top.add(user);
+                } else if (BY_CREATED_AT.compare(user, top.peek()) < 0) {
+                    top.poll();
+                    top.add(user);
+                }
+            });
+        }
+        List<User> users = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            users.add(copy(top.poll()));
+        }
+        return users.reversed();
+    }
+
+    @Override
+    public long count() {
+        return size.sum();
+    }
+
+    @Override
+    public long streamAll(Consumer<? super User> action) {
+        return streamRange(firstId, Long.MAX_VALUE, action);
+    }
+
+    @Override
+    public long streamRange(Long fromInclusive, Long toExclusive, Consumer<? super User> action) {
+        long processed = 0;
+        if (fromInclusive >= toExclusive) {
+            return processed;
+        }
+        for (long id : ids.subSet(fromInclusive, toExclusive)) {
+            User user = get(id);
+            if (user != null) {
+                action.accept(copy(user));
+                processed++;
+            }
+        }
+        return processed;
+    }
+
+    @Override
+    public Optional<Long> findMinId() {
+        return Optional.ofNullable(ids.ceiling(Long.MIN_VALUE));
+    }
+
+    @Override
+    public Optional<Long> findMaxId() {
+        return Optional.ofNullable(ids.floor(Long.MAX_VALUE));
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        User user = get(id);
+        return user == null ? Optional.empty() : Optional.of(copy(user));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        String key = User.emailKey(email);
+        Long id = idByEmail.get(key);
+        if (id == null) {
+            return Optional.empty();
+        }
+        User user = get(id);
+        return user != null && User.emailKey(user.getEmail()).equals(key) ? Optional.of(copy(user)) : Optional.empty();
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return idByEmail.containsKey(User.emailKey(email));
+    }
+
+    @Override
+    public List<User> searchByUsername(String prefix, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        List<User> users = new ArrayList<>(Math.min(limit, 1024));
+        for (UsernameKey key : byUsername.tailSet(new UsernameKey(prefix, Long.MIN_VALUE))) {
+            if (users.size() == limit || !key.username().startsWith(prefix)) {
+                break;
+            }
+            // Ключ мог устареть между чтением индекса и сегмента: сверяем имя
+            User user = get(key.id());
+            if (user != null && user.getUsername().equals(key.username())) {
+                users.add(copy(user));
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public List<User> searchBySimilarUsername(String query, int limit) {
+        long[] trigrams = Trigrams.of(query);
+        if (limit <= 0 || trigrams.length == 0) {
+            return List.of();
+        }
+        // Куча на limit элементов, в вершине — наименее похожий из отобранных
+        PriorityQueue<Match> top = new PriorityQueue<>(limit, Match.BEST_FIRST.reversed());
+        for (Segment segment : segments) {
+            segment.forEach(user -> {
+                double similarity = Trigrams.similarity(trigrams, Trigrams.of(user.getUsername()));
+                if (similarity < Trigrams.DEFAULT_THRESHOLD) {
+                    return;
+                }
+                Match match = new Match(user, similarity);
+                if (top.size() < limit) {
+                    top.add(match);
+                } else if (Match.BEST_FIRST.compare(match, top.peek()) < 0) {
+                    top.poll();
+                    top.add(match);
+                }
+            });
+        }
+        List<User> users = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            users.add(copy(top.poll().user()));
+        }
+        return users.reversed();
+    }
+
+    @Override
+    public long[] ageHistogram(int bucketWidth, int buckets) {
+        // Отрицательный возраст (строки, записанные до проверки в UserValidator) попадает в первый интервал
+        return aggregate(buckets, (user, counts) -> counts[bucket(user.getAge(), bucketWidth, buckets)]++);
+    }
+
+    @Override
+    public long[] signupsPerDay(LocalDate fromInclusive, LocalDate toExclusive) {
+        long firstDay = fromInclusive.toEpochDay();
+        int days = (int) Math.max(0, toExclusive.toEpochDay() - firstDay);
+        return aggregate(days, (user, counts) -> {
+            long day = user.getCreatedAt().toLocalDate().toEpochDay() - firstDay;
+            if (day >= 0 && day < days) {
+                counts[(int) day]++;
+            }
+        });
+    }
+
+    @Override
+    public boolean create(User user) {
+        if (user.getId() != null) {
+            throw new UserException("Ошибка при сохранении пользователя: новый пользователь не должен иметь ID");
+        }
+        long id = lastId.incrementAndGet();
+        if (idByEmail.putIfAbsent(User.emailKey(user.getEmail()), id) != null) {
+            throw new DuplicateEmailException("Ошибка при сохранении пользователя: email уже занят: " + user.getEmail());
+        }
+        if (user.getCreatedAt() == null) {
+            user.setCreatedAt(LocalDateTime.now());
+        }
+        user.setId(id);
+        Segment segment = segmentFor(id);
+        long stamp = segment.lock.writeLock();
+        try {
+            segment.users.put(id, copy(user));
+            ids.add(id);
+            byUsername.add(new UsernameKey(user.getUsername(), id));
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+        size.increment();
+        return true;
+    }
+
+    @Override
+    public boolean update(User user) {
+        if (user.getId() == null) {
+            return create(user);
+        }
+        if (!replace(user)) {
+            throw new UserException("Ошибка при обновлении пользователя: не найден ID " + user.getId());
+        }
+        return true;
+    }
+
+    @Override
+    public boolean updateIfExists(User user) {
+        return user.getId() != null && replace(user);
+    }
+
+    @Override
+    public boolean delete(Long id) {
+        if (id <= 0) {
+            return false;
+        }
+        Segment segment = segmentFor(id);
+        long stamp = segment.lock.writeLock();
+        try {
+            User removed = segment.users.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            ids.remove(id);
+            idByEmail.remove(User.emailKey(removed.getEmail()), id);
+            byUsername.remove(new UsernameKey(removed.getUsername(), id));
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+        size.decrement();
+        return true;
+    }
+
+    @Override
+    public int createAll(Collection<? extends User> users) {
+        for (User user : users) {
+            create(user);
+        }
+        return users.size();
+    }
+
+    @Override
+    public int updateAll(Collection<? extends User> users) {
+        for (User user : users) {
+            update(user);
+        }
+        return users.size();
+    }
+
+    @Override
+    public int deleteAllById(Collection<? extends Long> ids) {
+        int deleted = 0;
+        for (Long id : ids) {
+            if (delete(id)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private boolean replace(User user) {
+        long id = user.getId();
+        Segment segment = segmentFor(id);
+        long stamp = segment.lock.writeLock();
+        try {
+            User existing = segment.users.get(id);
+            if (existing == null) {
+                return false;
+            }
+            String key = User.emailKey(user.getEmail());
+            String existingKey = User.emailKey(existing.getEmail());
+            if (!existingKey.equals(key)) {
+                if (idByEmail.putIfAbsent(key, id) != null) {
+                    throw new DuplicateEmailException("Ошибка при обновлении пользователя: email уже занят: " + user.getEmail());
+                }
+                idByEmail.remove(existingKey, id);
+            }
+            // created_at не обновляется, как и в таблице
+            user.setCreatedAt(existing.getCreatedAt());
+            segment.users.put(id, copy(user));
+            if (!existing.getUsername().equals(user.getUsername())) {
+                byUsername.add(new UsernameKey(user.getUsername(), id));
+                byUsername.remove(new UsernameKey(existing.getUsername(), id));
+            }
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    private User get(long id) {
+        if (id <= 0) {
+            return null;
+        }
+        Segment segment = segmentFor(id);
+        long stamp = segment.lock.tryOptimisticRead();
+        User user = segment.users.get(id);
+        if (segment.lock.validate(stamp)) {
+            return user;
+        }
+        stamp = segment.lock.readLock();
+        try {
+            return segment.users.get(id);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    private Segment segmentFor(long id) {
+        // Соседние id попадают в разные сегменты, последовательная вставка не упирается в один замок
+        return segments[(int) (id & (SEGMENTS - 1))];
+    }
+
+    private static int bucket(int age, int bucketWidth, int buckets) {
+        return Math.max(0, Math.min(age / bucketWidth, buckets - 1));
+    }
+
+    private long[] aggregate(int size, BiConsumer<User, long[]> accumulate) {
+        // Каждый сегмент считает в свой массив под своим замком чтения, затем массивы складываются
+        return Arrays.stream(segments)
+                .parallel()
+                .map(segment -> {
+                    long[] counts = new long[size];
+                    segment.forEach(user -> accumulate.accept(user, counts));
+                    return counts;
+                })
+                .reduce((total, part) -> {
+                    for (int i = 0; i < size; i++) {
+                        total[i] += part[i];
+                    }
+                    return total;
+                })
+                .orElseGet(() -> new long[size]);
+    }
+
+    private static boolean isAfter(User user, LocalDateTime lastCreatedAt, Long lastId) {
+        int cmp = user.getCreatedAt().compareTo(lastCreatedAt);
+        return cmp > 0 || (cmp == 0 && (lastId == null || user.getId() > lastId));
+    }
+
+    private static User copy(User user) {
+        return new User(user.getId(), user.getUsername(), user.getEmail(), user.getAge(), user.getCreatedAt());
+    }
+
+    private record UsernameKey(String username, long id) implements Comparable<UsernameKey> {
+
+        @Override
+        public int compareTo(UsernameKey other) {
+            int cmp = username.compareTo(other.username);
+            return cmp != 0 ? cmp : Long.compare(id, other.id);
+        }
+    }
+
+    private record Match(User user, double similarity) {
+
+        static final Comparator<Match> BEST_FIRST = Comparator
+                .comparingDouble(Match::similarity).reversed()
+                .thenComparing(match -> match.user().getId());
+    }
+
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private final LongObjectHashMap<User> users = new LongObjectHashMap<>();
+
+        private void forEach(Consumer<User> action) {
+            long stamp = lock.readLock();
+            try {
+                users.forEachValue(action);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package dao;
+
+import metrics.MetricsRegistry;
+import metrics.OperationTimer;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Замеряет каждую операцию DAO: задержка в HDR-гистограмму, ошибки по причине.
+ * Таймеры берутся из реестра один раз в конструкторе, сам замер не аллоцирует.
+ */
+public class MetricsUserDao<T, ID> extends ForwardingUserDao<T, ID> {
+
+    private final OperationTimer findAllTimer;
+    private final OperationTimer findPageTimer;
+    private final OperationTimer findAfterIdTimer;
+    private final OperationTimer findCreatedAfterTimer;
+    private final OperationTimer countTimer;
+    private final OperationTimer streamAllTimer;
+    private final OperationTimer streamRangeTimer;
+    private final OperationTimer findMinIdTimer;
+    private final OperationTimer findMaxIdTimer;
+    private final OperationTimer findByIdTimer;
+    private final OperationTimer findByEmailTimer;
+    private final OperationTimer existsByEmailTimer;
+    private final OperationTimer searchByUsernameTimer;
+    private final OperationTimer searchBySimilarUsernameTimer;
+    private final OperationTimer ageHistogramTimer;
+    private final OperationTimer signupsPerDayTimer;
+    private final OperationTimer createTimer;
+    private final OperationTimer updateTimer;
+    private final OperationTimer updateIfExistsTimer;
+    private final OperationTimer deleteTimer;
+    private final OperationTimer createAllTimer;
+    private final OperationTimer updateAllTimer;
+    private final OperationTimer deleteAllByIdTimer;
+
+    public MetricsUserDao(UserDao<T, ID> delegate, MetricsRegistry registry, String prefix) {
+        super(delegate);
+        this.findAllTimer = registry.timer(prefix + ".findAll");
+        this.findPageTimer = registry.timer(prefix + ".findPage");
+        this.findAfterIdTimer = registry.timer(prefix + ".findAfterId");
+        this.findCreatedAfterTimer = registry.timer(prefix + ".findCreatedAfter");
+        this.countTimer = registry.timer(prefix + ".count");
+        this.streamAllTimer = registry.timer(prefix + ".streamAll");
+        this.streamRangeTimer = registry.timer(prefix + ".streamRange");
+        this.findMinIdTimer = registry.timer(prefix + ".findMinId");
+        this.findMaxIdTimer = registry.timer(prefix + ".findMaxId");
+        this.findByIdTimer = registry.timer(prefix + ".findById");
+        this.findByEmailTimer = registry.timer(prefix + ".findByEmail");
+        this.existsByEmailTimer = registry.timer(prefix + ".existsByEmail");
+        this.searchByUsernameTimer = registry.timer(prefix + ".searchByUsername");
+        this.searchBySimilarUsernameTimer = registry.timer(prefix + ".searchBySimilarUsername");
+        this.ageHistogramTimer = registry.timer(prefix + ".ageHistogram");
+        this.signupsPerDayTimer = registry.timer(prefix + ".signupsPerDay");
+        this.createTimer = registry.timer(prefix + ".create");
+        this.updateTimer = registry.timer(prefix + ".update");
+        this.updateIfExistsTimer = registry.timer(prefix + ".updateIfExists");
+        this.deleteTimer = registry.timer(prefix + ".delete");
+        this.createAllTimer = registry.timer(prefix + ".createAll");
+        this.updateAllTimer = registry.timer(prefix + ".updateAll");
+        this.deleteAllByIdTimer = registry.timer(prefix + ".deleteAllById");
+    }
+
+    @Override
+    public List<T> findAll() {
+        long start = System.nanoTime();
+        try {
+            return delegate.findAll();
+        } catch (RuntimeException ex) {
+            throw findAllTimer.failed(ex);
+        } finally {
+            findAllTimer.stop(start);
+        }
+    }
+
+    @Override
+    public List<T> findPage(int offset, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findPage(offset, limit);
+        } catch (RuntimeException ex) {
+            throw findPageTimer.failed(ex);
+        } finally {
+            findPageTimer.stop(start);
+        }
+    }
+
+    @Override
+    public List<T> findAfterId(ID lastId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findAfterId(lastId, limit);
+        } catch (RuntimeException ex) {
+            throw findAfterIdTimer.failed(ex);
+        } finally {
+            findAfterIdTimer.stop(start);
+        }
+    }
+
+    @Override
+    public List<T> findCreatedAfter(LocalDateTime lastCreatedAt, ID lastId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findCreatedAfter(lastCreatedAt, lastId, limit);
+        } catch (RuntimeException ex) {
+            throw findCreatedAfterTimer.failed(ex);
+        } finally {
+            findCreatedAfterTimer.stop(start);
+        }
+    }
+
+    @Override
+    public long count() {
+        long start = System.nanoTime();
+        try {
+            return delegate.count();
+        } catch (RuntimeException ex) {
+            throw countTimer.failed(ex);
+        } finally {
+            countTimer.stop(start);
+        }
+    }
+
+    @Override
+    public long streamAll(Consumer<? super T> action) {
+        long start = System.nanoTime();
+        try {
+            return delegate.streamAll(action);
+        } catch (RuntimeException ex) {
+            throw streamAllTimer.failed(ex);
+        } finally {
+            streamAllTimer.stop(start);
+        }
+    }
+
+    @Override
+    public long streamRange(ID fromInclusive, ID toExclusive, Consumer<? super T> action) {
+        long start = System.nanoTime();
+        try {
+            return delegate.streamRange(fromInclusive, toExclusive, action);
+        } catch (RuntimeException ex) {
+            throw streamRangeTimer.failed(ex);
+        } finally {
+            streamRangeTimer.stop(start);
+        }
+    }
+
+    @Override
+    public Optional<ID> findMinId() {
+        long start = System.nanoTime();
+        try {
+            return delegate.findMinId();
+        } catch (RuntimeException ex) {
+            throw findMinIdTimer.failed(ex);
+        } finally {
+            findMinIdTimer.stop(start);
+        }
+    }
+
+    @Override
+    public Optional<ID> findMaxId() {
+        long start = System.nanoTime();
+        try {
+            return delegate.findMaxId();
+        } catch (RuntimeException ex) {
+            throw findMaxIdTimer.failed(ex);
+        } finally {
+            findMaxIdTimer.stop(start);
+        }
+    }
+
+    @Override
+    public Optional<T> findById(ID id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findById(id);
+        } catch (RuntimeException ex) {
+            throw findByIdTimer.failed(ex);
+        } finally {
+            findByIdTimer.stop(start);
+        }
+    }
+
+    @Override
+    public Optional<T> findByEmail(String email) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findByEmail(email);
+        } catch (RuntimeException ex) {
+            throw findByEmailTimer.failed(ex);
+        } finally {
+            findByEmailTimer.stop(start);
+        }
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        long start = System.nanoTime();
+        try {
+            return delegate.existsByEmail(email);
+        } catch (RuntimeException ex) {
+            throw existsByEmailTimer.failed(ex);
+        } finally {
+            existsByEmailTimer.stop(start);
+        }
+    }
+
+    @Override
+    public List<T> searchByUsername(String prefix, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.searchByUsername(prefix, limit);
+        } catch (RuntimeException ex) {
+            throw searchByUsernameTimer.failed(ex);
+        } finally {
+            searchByUsernameTimer.stop(start);
+        }
+    }
+
+    @Override
+    public List<T> searchBySimilarUsername(String query, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.searchBySimilarUsername(query, limit);
+        } catch (RuntimeException ex) {
+            throw searchBySimilarUsernameTimer.failed(ex);
+        } finally {
+            searchBySimilarUsernameTimer.stop(start);
+        }
+    }
+
+    @Override
+    public long[] ageHistogram(int bucketWidth, int buckets) {
+        long start = System.nanoTime();
+        try {
+            return delegate.ageHistogram(bucketWidth, buckets);
+        } catch (RuntimeException ex) {
+            throw ageHistogramTimer.failed(ex);
+        } finally {
+            ageHistogramTimer.stop(start);
+        }
+    }
+
+    @Override
+    public long[] signupsPerDay(LocalDate fromInclusive, LocalDate toExclusive) {
+        long start = System.nanoTime();
+        try {
+            return delegate.signupsPerDay(fromInclusive, toExclusive);
+        } catch (RuntimeException ex) {
+            throw signupsPerDayTimer.failed(ex);
+        } finally {
+            signupsPerDayTimer.stop(start);
+        }
+    }
+
+    @Override
+    public boolean create(T entity) {
+        long start = System.nanoTime();
+        try {
+            return delegate.create(entity);
+        } catch (RuntimeException ex) {
+            throw createTimer.failed(ex);
+        } finally {
+            createTimer.stop(start);
+        }
+    }
+
+    @Override
+    public boolean update(T entity) {
+        long start = System.nanoTime();
+        try {
+            return delegate.update(entity);
+        } catch (RuntimeException ex) {
+            throw updateTimer.failed(ex);
+        } finally {
+            updateTimer.stop(start);
+        }
+    }
+
+    @Override
+    public boolean updateIfExists(T entity) {
+        long start = System.nanoTime();
+        try {
+            return delegate.updateIfExists(entity);
+        } catch (RuntimeException ex) {
+            throw updateIfExistsTimer.failed(ex);
+        } finally {
+            updateIfExistsTimer.stop(start);
+        }
+    }
+
+    @Override
+    public boolean delete(ID id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.delete(id);
+        } catch (RuntimeException ex) {
+            throw deleteTimer.failed(ex);
+        } finally {
+            deleteTimer.stop(start);
+        }
+    }
+
+    @Override
+    public int createAll(Collection<? extends T> entities) {
+        long start = System.nanoTime();
+        try {
+            return delegate.createAll(entities);
+        } catch (RuntimeException ex) {
+            throw createAllTimer.failed(ex);
+        } finally {
+            createAllTimer.stop(start);
+        }
+    }
+
+    @Override
+    public int updateAll(Collection<? extends T> entities) {
+        long start = System.nanoTime();
+        try {
+            return delegate.updateAll(entities);
+        } catch (RuntimeException ex) {
+            throw updateAllTimer.failed(ex);
+        } finally {
+            updateAllTimer.stop(start);
+        }
+    }
+
+    @Override
+    public int deleteAllById(Collection<? extends ID> ids) {
+        long start = System.nanoTime();
+        try {
+            return delegate.deleteAllById(ids);
+        } catch (RuntimeException ex) {
+            throw deleteAllByIdTimer.failed(ex);
+        } finally {
+            deleteAllByIdTimer.stop(start);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package dao;
+
+import exception.UserException;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Проверка записи в шард внутри ее транзакции: каждый ID должен принадлежать этому шарду по копии
+ * карты в его же БД и не лежать в замороженном диапазоне. Строка карты читается под блокировкой чтения
+ * (FOR SHARE в PostgreSQL), которая держится до коммита записи, — поэтому заморозка и смена карты
+ * через {@link ShardMapStore} касаются всех узлов сразу, даже тех, что еще не перечитали карту.
+ * Если карты в БД нет (шарды без shard_map), проверка пропускается.
+ */
+public final class ShardFence {
+
+    private final int shard;
+    private final int shardCount;
+    private volatile String lockClause;
+    private volatile ShardMapStore.State last;
+
+    public ShardFence(int shard, int shardCount) {
+        this.shard = shard;
+        this.shardCount = shardCount;
+    }
+
+    void check(SharedSessionContract session, Iterable<? extends Long> ids) {
+        ShardMapStore.State state = read(session);
+        if (state == null) {
+            return;
+        }
+        for (long id : ids) {
+            checkId(state, id);
+        }
+    }
+
+    private ShardMapStore.State read(SharedSessionContract session) {
+        String lock = lockClause;
+        if (lock == null) {
+            lock = session.unwrap(SharedSessionContractImplementor.class)
+                    .getFactory().getJdbcServices().getDialect().getReadLockString(-1);
+            lockClause = lock;
+        }
+        ShardMapStore.State state = ShardMapStore.read(session, lock, shardCount, last);
+        last = state;
+        return state;
+    }
+
+    private void checkId(ShardMapStore.State state, long id) {
+        if (state.isFrozen(id)) {
+            throw new UserException("Пользователь с ID " + id + " переносится между шардами, повторите позже");
+        }
+        int owner = state.ranges().shardFor(id);
+        if (owner != shard) {
+            throw new UserException("ID " + id + " принадлежит шарду " + owner + ", а не " + shard
+                    + ": карта шардов изменилась, повторите операцию");
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package dao;
+
+import exception.UserException;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.Transaction;
+import org.hibernate.query.MutationQuery;
+
+import java.util.List;
+
+/**
+ * Общая для всех узлов карта шардов в таблице shard_map. Узлы читают ее из основной БД (шард 0),
+ * а копия в каждом шарде нужна {@link ShardFence}: запись в шард сверяется с ней в своей транзакции.
+ * Изменения идут сначала в шард 0 с проверкой версии — так два переноса не пройдут одновременно, —
+ * затем в остальные шарды. UPDATE строки ждет завершения записей, которые держат на ней блокировку чтения,
+ * поэтому после {@link #freeze} ни одна начатая до заморозки запись не закоммитится в замороженный диапазон.
+ * Если перенос прервался вместе с процессом, диапазон остается замороженным до {@link #unfreeze}.
+ */
+@Slf4j
+public class ShardMapStore {
+
+    private static final String SELECT_SQL =
+            "SELECT version, ranges, frozen_from, frozen_to FROM shard_map WHERE id = 1";
+
+    private final List<SessionFactory> shardSessionFactories;
+
+    public ShardMapStore(List<SessionFactory> shardSessionFactories) {
+        this.shardSessionFactories = List.copyOf(shardSessionFactories);
+    }
+
+    public int shardCount() {
+        return shardSessionFactories.size();
+    }
+
+    /**
+     * Записывает seed, если карты еще нет, и дописывает ее копию в шарды, где ее нет.
+     * Уже сохраненная карта главнее seed.
+     */
+    public State initialize(ShardRanges seed) {
+        State current = load(0);
+        if (current == null) {
+            try {
+                insert(0, new State(0, seed, null, null));
+            } catch (UserException ex) {
+                // Параллельно стартовавший узел успел вставить карту первым
+                log.debug("Карта шардов уже создана другим узлом: {}", ex.getMessage());
+            }
+            current = load(0);
+            if (current == null) {
+                throw new UserException("Не удалось сохранить карту шардов");
+            }
+        } else if (!current.ranges().format().equals(seed.format())) {
+            log.warn("Карта шардов из БД ({}) отличается от заданной при запуске ({}), используется карта из БД",
+                    current.ranges(), seed);
+        }
+        for (int shard = 1; shard < shardCount(); shard++) {
+            if (load(shard) == null) {
+                insert(shard, current);
+            }
+        }
+        return current;
+    }
+
+    public State load() {
+        State state = load(0);
+        if (state == null) {
+            throw new UserException("Карта шардов не найдена в shard_map");
+        }
+        return state;
+    }
+
+    public State freeze(State expected, long fromInclusive, long toExclusive) {
+        return change(expected, new State(expected.version() + 1, expected.ranges(), fromInclusive, toExclusive));
+    }
+
+    public State publish(State expected, ShardRanges ranges) {
+        return change(expected, new State(expected.version() + 1, ranges, null, null));
+    }
+
+    public State unfreeze(State expected) {
+        return change(expected, new State(expected.version() + 1, expected.ranges(), null, null));
+    }
+
+    /**
+     * Строка карты в транзакции session; lockClause — блокировка строки до конца транзакции или пустая строка.
+     * previous позволяет не разбирать карту заново, пока версия не сменилась.
+     */
+    static State read(SharedSessionContract session, String lockClause, int shardCount, State previous) {
+        Object[] row = session.createNativeQuery(SELECT_SQL + lockClause, Object[].class)
+                .addScalar("version", Long.class)
+                .addScalar("ranges", String.class)
+                .addScalar("frozen_from", Long.class)
+                .addScalar("frozen_to", Long.class)
+                .uniqueResult();
+        if (row == null) {
+            return null;
+        }
+        long version = (Long) row[0];
+        ShardRanges ranges = previous != null && previous.version() == version
+                ? previous.ranges()
+                : ShardRanges.parse((String) row[1], shardCount);
+        return new State(version, ranges, (Long) row[2], (Long) row[3]);
+    }
+
+    private State change(State expected, State next) {
+        // Шард 0 первым и с проверкой версии: узлы берут карту оттуда, остальные шарды догоняют
+        for (int shard = 0; shard < shardCount(); shard++) {
+            int updated = update(shard, next, shard == 0 ? expected.version() : null);
+            if (updated == 0 && shard == 0) {
+                throw new UserException("Карта шардов изменилась параллельно (версия " + expected.version()
+                        + "), повторите перенос");
+            }
+        }
+        return next;
+    }
+
+    private State load(int shard) {
+        try (Session session = shardSessionFactories.get(shard).openSession()) {
+            return read(session, "", shardCount(), null);
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при чтении карты шардов из шарда " + shard, ex);
+        }
+    }
+
+    private void insert(int shard, State state) {
+        Transaction transaction = null;
+        try (Session session = shardSessionFactories.get(shard).openSession()) {
+            transaction = session.beginTransaction();
+            session.createNativeMutationQuery("""
+                            INSERT INTO shard_map (id, version, ranges, frozen_from, frozen_to)
+                            VALUES (1, :version, :ranges, :frozenFrom, :frozenTo)""")
+                    .setParameter("version", state.version())
+                    .setParameter("ranges", state.ranges().format())
+                    .setParameter("frozenFrom", state.frozenFrom(), Long.class)
+                    .setParameter("frozenTo", state.frozenTo(), Long.class)
+                    .executeUpdate();
+            transaction.commit();
+        } catch (Exception ex) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new UserException("Ошибка при сохранении карты шардов в шард " + shard, ex);
+        }
+    }
+
+    private int update(int shard, State state, Long expectedVersion) {
+        Transaction transaction = null;
+        try (Session session = shardSessionFactories.get(shard).openSession()) {
+            transaction = session.beginTransaction();
+            MutationQuery query = session.createNativeMutationQuery("""
+                            UPDATE shard_map
+                            SET version = :version, ranges = :ranges, frozen_from = :frozenFrom, frozen_to = :frozenTo
+                            WHERE id = 1""" + (expectedVersion == null ? "" : " AND version = :expected"))
+                    .setParameter("version", state.version())
+                    .setParameter("ranges", state.ranges().format())
+                    .setParameter("frozenFrom", state.frozenFrom(), Long.class)
+                    .setParameter("frozenTo", state.frozenTo(), Long.class);
+            if (expectedVersion != null) {
+                query.setParameter("expected", expectedVersion);
+            }
+            int updated = query.executeUpdate();
+            transaction.commit();
+            return updated;
+        } catch (Exception ex) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new UserException("Ошибка при изменении карты шардов в шарде " + shard, ex);
+        }
+    }
+
+    /**
+     * Карта и замороженный диапазон [frozenFrom, frozenTo) — null, если переноса нет.
+     */
+    public record State(long version, ShardRanges ranges, Long frozenFrom, Long frozenTo) {
+
+        public boolean isFrozen(long id) {
+            return frozenFrom != null && id >= frozenFrom && id < frozenTo;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package dao;
+
+import exception.UserException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Неизменяемая карта диапазонов ID -> номер шарда. Каждый ключ открывает отрезок, который тянется
+ * до следующего ключа. Изначально шард k владеет [k * 2^40, (k + 1) * 2^40), и его последовательность
+ * выдает ID только из этого отрезка. Ребалансировка строит новую карту через {@link #move}.
+ * Текстовый вид — "0:0,1099511627776:1,..." — для хранения в настройках.
+ */
+public final class ShardRanges {
+
+    public static final int SHARD_ID_BITS = 40;
+
+    private final NavigableMap<Long, Integer> starts;
+    private final int shardCount;
+
+    private ShardRanges(NavigableMap<Long, Integer> starts, int shardCount) {
+        this.starts = Collections.unmodifiableNavigableMap(starts);
+        this.shardCount = shardCount;
+    }
+
+    public static ShardRanges initial(int shardCount) {
+        if (shardCount <= 0) {
+            throw new UserException("Количество шардов должно быть положительным");
+        }
+        NavigableMap<Long, Integer> starts = new TreeMap<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            starts.put(baseId(shard), shard);
+        }
+        return new ShardRanges(starts, shardCount);
+    }
+
+    public static ShardRanges parse(String text, int shardCount) {
+        NavigableMap<Long, Integer> starts = new TreeMap<>();
+        for (String entry : text.split(",")) {
+            int colon = entry.indexOf(':');
+            if (colon <= 0) {
+                throw new UserException("Некорректная карта шардов: " + text);
+            }
+            int shard = Integer.parseInt(entry.substring(colon + 1).trim());
+            if (shard < 0 || shard >= shardCount) {
+                throw new UserException("Номер шарда вне диапазона: " + shard);
+            }
+            starts.put(Long.parseLong(entry.substring(0, colon).trim()), shard);
+        }
+        if (!starts.containsKey(0L)) {
+            throw new UserException("Карта шардов должна начинаться с 0: " + text);
+        }
+        return new ShardRanges(starts, shardCount);
+    }
+
+    /**
+     * Первый ID пользователя шарда. Под него перезапускается последовательность, см. {@link UserDaoImpl#restartIdSequence}.
+     */
+    public static long firstId(int shard) {
+        return baseId(shard) + 1;
+    }
+
+    /**
+     * Шард, чья последовательность выдает id: исходный владелец отрезка, сколько бы раз его ни переносили.
+     */
+    public static int issuingShard(long id) {
+        return (int) (Math.max(id, 0) >>> SHARD_ID_BITS);
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public int shardFor(long id) {
+        return starts.floorEntry(Math.max(id, 0)).getValue();
+    }
+
+    /**
+     * Начало отрезка карты, в котором лежит id.
+     */
+    public long segmentStart(long id) {
+        return starts.floorKey(Math.max(id, 0));
+    }
+
+    /**
+     * Отрезки, пересекающие [fromInclusive, toExclusive), в порядке возрастания ID.
+     */
+    public List<Segment> segments(long fromInclusive, long toExclusive) {
+        List<Segment> segments = new ArrayList<>();
+        long start = Math.max(fromInclusive, 0);
+        while (start < toExclusive) {
+            Map.Entry<Long, Integer> owner = starts.floorEntry(start);
+            Long next = starts.higherKey(start);
+            long end = next == null ? toExclusive : Math.min(next, toExclusive);
+            segments.add(new Segment(start, end, owner.getValue()));
+            start = end;
+        }
+        return segments;
+    }
+
+    public ShardRanges move(long fromInclusive, long toExclusive, int targetShard) {
+        if (fromInclusive < 0 || fromInclusive >= toExclusive) {
+            throw new UserException("Некорректный диапазон: [" + fromInclusive + ", " + toExclusive + ")");
+        }
+        if (targetShard < 0 || targetShard >= shardCount) {
+            throw new UserException("Номер шарда вне диапазона: " + targetShard);
+        }
+        NavigableMap<Long, Integer> moved = new TreeMap<>(starts);
+        int ownerAfter = shardFor(toExclusive);
+        moved.subMap(fromInclusive, true, toExclusive, true).clear();
+        moved.put(fromInclusive, targetShard);
+        moved.put(toExclusive, ownerAfter);
+        // Склеиваем соседние отрезки одного шарда, чтобы карта не разрасталась
+        Integer previous = null;
+        for (var it = moved.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, Integer> entry = it.next();
+            if (entry.getValue().equals(previous)) {
+                it.remove();
+            } else {
+                previous = entry.getValue();
+            }
+        }
+        return new ShardRanges(moved, shardCount);
+    }
+
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        starts.forEach((start, shard) -> {
+            if (!sb.isEmpty()) {
+                sb.append(',');
+            }
+            sb.append(start).append(':').append(shard);
+        });
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    private static long baseId(int shard) {
+        return (long) shard << SHARD_ID_BITS;
+    }
+
+    public record Segment(long fromInclusive, long toExclusive, int shard) {
+    }
+}
@@ -0,0 +1,172 @@
+package dao;
+
+import entity.User;
+import exception.UserException;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перенос диапазона ID между шардами. Диапазон замораживается в общей карте {@link ShardMapStore} —
+ * с этого момента записи в него отклоняются на всех узлах, — строки копируются в целевой шард
+ * с сохранением ID пакетами JDBC, затем новая карта публикуется в shard_map, и после того, как узлы
+ * успели ее перечитать, строки удаляются из исходных шардов. Если копирование упало, скопированное
+ * удаляется из целевого шарда, а диапазон размораживается без смены карты.
+ * Переносить можно только уже выданные ID: иначе последовательность шарда продолжит выдавать ID
+ * внутри отданного диапазона.
+ */
+@Slf4j
+public class ShardRebalancer {
+
+    private static final int COPY_BATCH_SIZE = 500;
+    private static final String INSERT_SQL =
+            "INSERT INTO users (id, username, email, age, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final ShardedUserDao shardedDao;
+    private final ShardMapStore mapStore;
+    private final List<SessionFactory> shardSessionFactories;
+
+    public ShardRebalancer(ShardedUserDao shardedDao, List<SessionFactory> shardSessionFactories) {
+        if (shardSessionFactories.size() != shardedDao.shardCount()) {
+            throw new UserException("Количество SessionFactory не совпадает с количеством шардов");
+        }
+        if (shardedDao.mapStore() == null) {
+            throw new UserException("Перенос диапазона требует общей карты шардов в shard_map");
+        }
+        this.shardedDao = shardedDao;
+        this.mapStore = shardedDao.mapStore();
+        this.shardSessionFactories = List.copyOf(shardSessionFactories);
+    }
+
+    public long moveRange(long fromInclusive, long toExclusive, int targetShard) {
+        ShardMapStore.State before = mapStore.load();
+        if (before.frozenFrom() != null) {
+            throw new UserException("Уже идет перенос диапазона [" + before.frozenFrom() + ", "
+                    + before.frozenTo() + ")");
+        }
+        ShardRanges after = before.ranges().move(fromInclusive, toExclusive, targetShard);
+        checkAllocated(fromInclusive, toExclusive);
+        List<ShardRanges.Segment> moving = before.ranges().segments(fromInclusive, toExclusive).stream()
+                .filter(segment -> segment.shard() != targetShard)
+                .toList();
+        long startedAt = System.nanoTime();
+        long moved = 0;
+
+        ShardMapStore.State frozen = mapStore.freeze(before, fromInclusive, toExclusive);
+        try {
+            for (ShardRanges.Segment segment : moving) {
+                moved += copy(segment, targetShard);
+            }
+        } catch (RuntimeException ex) {
+            try {
+                for (ShardRanges.Segment segment : moving) {
+                    deleteRange(targetShard, segment);
+                }
+            } finally {
+                mapStore.unfreeze(frozen);
+                shardedDao.refresh();
+            }
+            throw ex;
+        }
+        mapStore.publish(frozen, after);
+        shardedDao.refresh();
+        // Узлы со старой картой еще читают диапазон из исходных шардов, пока не перечитают ее
+        awaitRefresh();
+        for (ShardRanges.Segment segment : moving) {
+            deleteRange(segment.shard(), segment);
+        }
+
+        log.info("Диапазон [{}, {}) перенесен в шард {}: {} строк за {} мс, новая карта: {}",
+                fromInclusive, toExclusive, targetShard, moved,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), after.format());
+        return moved;
+    }
+
+    /**
+     * ID выдает последовательность того шарда, в чьем исходном отрезке они лежат.
+     * Весь диапазон должен быть ниже уже выданных ею ID.
+     */
+    private void checkAllocated(long fromInclusive, long toExclusive) {
+        int issuer = ShardRanges.issuingShard(fromInclusive);
+        if (issuer != ShardRanges.issuingShard(toExclusive - 1) || issuer >= shardSessionFactories.size()) {
+            throw new UserException("Диапазон [" + fromInclusive + ", " + toExclusive
+                    + ") должен лежать в отрезке ID одного шарда");
+        }
+        long head = new UserDaoImpl(shardSessionFactories.get(issuer)).allocatedIdHead();
+        if (toExclusive - 1 > head) {
+            throw new UserException("Диапазон [" + fromInclusive + ", " + toExclusive + ") выходит за выданные ID шарда "
+                    + issuer + " (до " + head + "): новые пользователи получали бы ID внутри перенесенного диапазона");
+        }
+    }
+
+    private void awaitRefresh() {
+        try {
+            TimeUnit.NANOSECONDS.sleep(shardedDao.refreshInterval().toNanos());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UserException("Прервано ожидание перечитывания карты шардов", ex);
+        }
+    }
+
+    private long copy(ShardRanges.Segment segment, int targetShard) {
+        UserDao<User, Long> source = shardedDao.shard(segment.shard());
+        Transaction transaction = null;
+        try (Session session = shardSessionFactories.get(targetShard).openSession()) {
+            transaction = session.beginTransaction();
+            long copied = session.doReturningWork(connection -> {
+                try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+                    long[] rows = {0};
+                    source.streamRange(segment.fromInclusive(), segment.toExclusive(), user -> {
+                        try {
+                            insert.setLong(1, user.getId());
+                            insert.setString(2, user.getUsername());
+                            insert.setString(3, user.getEmail());
+                            insert.setInt(4, user.getAge());
+                            insert.setTimestamp(5, user.getCreatedAt() == null ? null : Timestamp.valueOf(user.getCreatedAt()));
+                            insert.addBatch();
+                            if (++rows[0] % COPY_BATCH_SIZE == 0) {
+                                insert.executeBatch();
+                            }
+                        } catch (SQLException ex) {
+                            throw new UserException("Ошибка при копировании пользователя " + user.getId(), ex);
+                        }
+                    });
+                    insert.executeBatch();
+                    return rows[0];
+                }
+            });
+            transaction.commit();
+            return copied;
+        } catch (Exception ex) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new UserException("Ошибка при переносе диапазона [" + segment.fromInclusive() + ", "
+                    + segment.toExclusive() + ") в шард " + targetShard, ex);
+        }
+    }
+
+    private void deleteRange(int shard, ShardRanges.Segment segment) {
+        Transaction transaction = null;
+        try (Session session = shardSessionFactories.get(shard).openSession()) {
+            transaction = session.beginTransaction();
+            session.createNativeMutationQuery("DELETE FROM users WHERE id >= :from AND id < :to")
+                    .setParameter("from", segment.fromInclusive())
+                    .setParameter("to", segment.toExclusive())
+                    .executeUpdate();
+            transaction.commit();
+        } catch (Exception ex) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new UserException("Ошибка при удалении диапазона из шарда " + shard, ex);
+        }
+    }
+}
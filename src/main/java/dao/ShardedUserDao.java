@@ -0,0 +1,569 @@
+package dao;
+
+import entity.User;
+import exception.DuplicateEmailException;
+import exception.UserException;
+import utils.Trigrams;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Пользователи, разложенные по нескольким БД. Новый пользователь попадает в шард по хэшу email,
+ * ID ему выдает последовательность этого шарда, а дальше запись ищется по ID через {@link ShardRanges}.
+ * Запросы по всей таблице (списки, страницы, подсчет) параллельно уходят во все шарды и сливаются,
+ * причем от каждого шарда берутся только строки из его отрезков карты: во время переноса диапазон
+ * лежит сразу в двух шардах — от копирования до удаления из исходного.
+ * Уникальность email внутри шарда держит ограничение БД, между шардами — проверка остальных шардов
+ * перед вставкой, пакетной вставкой или сменой email. Проверка и запись не атомарны: две вставки одного
+ * email сходятся в его домашнем шарде и упираются в ограничение, но смена email у пользователя вне
+ * домашнего шарда параллельно со вставкой того же email может оставить дубликат — такой гарантии
+ * между шардами нет.
+ * С {@link ShardMapStore} карта общая для всех узлов: узел перечитывает ее не реже refreshInterval,
+ * а запись в устаревший шард отклоняет {@link ShardFence} в самом шарде.
+ */
+public class ShardedUserDao implements UserDao<User, Long>, AutoCloseable {
+
+    private static final Comparator<User> BY_ID = Comparator.comparing(User::getId);
+    private static final Comparator<User> BY_CREATED_AT = Comparator
+            .comparing(User::getCreatedAt)
+            .thenComparing(User::getId);
+    private static final Comparator<User> BY_USERNAME = Comparator
+            .comparing(User::getUsername)
+            .thenComparing(User::getId);
+
+    private final List<UserDao<User, Long>> shards;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ShardMapStore mapStore;
+    private final long refreshIntervalNanos;
+    private volatile ShardMapStore.State state;
+    private volatile long refreshedAt;
+
+    public ShardedUserDao(List<? extends UserDao<User, Long>> shards) {
+        this(shards, ShardRanges.initial(shards.size()));
+    }
+
+    public ShardedUserDao(List<? extends UserDao<User, Long>> shards, ShardRanges ranges) {
+        if (shards.isEmpty() || ranges.shardCount() != shards.size()) {
+            throw new UserException("Карта диапазонов не совпадает с количеством шардов");
+        }
+        this.shards = List.copyOf(shards);
+        this.mapStore = null;
+        this.refreshIntervalNanos = Long.MAX_VALUE;
+        this.state = new ShardMapStore.State(0, ranges, null, null);
+    }
+
+    public ShardedUserDao(List<? extends UserDao<User, Long>> shards, ShardMapStore mapStore, Duration refreshInterval) {
+        if (shards.isEmpty() || mapStore.shardCount() != shards.size()) {
+            throw new UserException("Карта диапазонов не совпадает с количеством шардов");
+        }
+        this.shards = List.copyOf(shards);
+        this.mapStore = mapStore;
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+        refresh();
+    }
+
+    public ShardRanges ranges() {
+        return state().ranges();
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    UserDao<User, Long> shard(int index) {
+        return shards.get(index);
+    }
+
+    @Override
+    public List<User> findAll() {
+        ShardRanges current = ranges();
+        List<User> users = new ArrayList<>();
+        fanOutByIndex(i -> owned(i, current, shards.get(i).findAll())).forEach(users::addAll);
+        users.sort(BY_ID);
+        return users;
+    }
+
+    @Override
+    public List<User> findPage(int offset, int limit) {
+        // Глобальная страница по ID: каждый шард отдает свои первые offset + limit строк
+        int window = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        ShardRanges current = ranges();
+        List<User> merged = merge(fanOutByIndex(i -> ownedAfterId(i, current, null, window)), BY_ID, window);
+        return merged.size() <= offset ? List.of() : merged.subList(offset, merged.size());
+    }
+
+    @Override
+    public List<User> findAfterId(Long lastId, int limit) {
+        ShardRanges current = ranges();
+        return merge(fanOutByIndex(i -> ownedAfterId(i, current, lastId, limit)), BY_ID, limit);
+    }
+
+    @Override
+    public List<User> findCreatedAfter(LocalDateTime lastCreatedAt, Long lastId, int limit) {
+        ShardRanges current = ranges();
+        return merge(fanOutByIndex(i -> ownedTop(i, current, limit,
+                window -> shards.get(i).findCreatedAfter(lastCreatedAt, lastId, window))), BY_CREATED_AT, limit);
+    }
+
+    @Override
+    public long count() {
+        ShardRanges current = ranges();
+        long total = 0;
+        for (Long count : fanOutByIndex(i -> shards.get(i).count() - foreignRows(i, current, user -> { }))) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public long streamAll(Consumer<? super User> action) {
+        return streamRange(0L, Long.MAX_VALUE, action);
+    }
+
+    @Override
+    public long streamRange(Long fromInclusive, Long toExclusive, Consumer<? super User> action) {
+        // Отрезки карты идут по возрастанию ID, поэтому общий порядок сохраняется без слияния
+        long processed = 0;
+        for (ShardRanges.Segment segment : ranges().segments(fromInclusive, toExclusive)) {
+            processed += shards.get(segment.shard())
+                    .streamRange(segment.fromInclusive(), segment.toExclusive(), action);
+        }
+        return processed;
+    }
+
+    @Override
+    public Optional<Long> findMinId() {
+        ShardRanges current = ranges();
+        return fanOutByIndex(i -> ownedAfterId(i, current, null, 1)).stream()
+                .flatMap(List::stream)
+                .map(User::getId)
+                .min(Long::compare);
+    }
+
+    @Override
+    public Optional<Long> findMaxId() {
+        ShardRanges current = ranges();
+        return fanOutByIndex(i -> ownedMaxId(i, current)).stream()
+                .flatMap(Optional::stream)
+                .max(Long::compare);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return ownerOf(id).findById(id);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        ShardRanges current = ranges();
+        int home = shardForEmail(email);
+        Optional<User> user = shards.get(home).findByEmail(email)
+                .filter(found -> current.shardFor(found.getId()) == home);
+        if (user.isPresent()) {
+            return user;
+        }
+        // После ребалансировки пользователь мог уехать из шарда, выбранного по хэшу email
+        return fanOutByIndex(i -> i == home ? Optional.<User>empty() : shards.get(i).findByEmail(email)
+                        .filter(found -> current.shardFor(found.getId()) == i))
+                .stream()
+                .flatMap(Optional::stream)
+                .findFirst();
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        int home = shardForEmail(email);
+        return shards.get(home).existsByEmail(email) || existsOnOtherShards(email, home);
+    }
+
+    @Override
+    public List<User> searchByUsername(String prefix, int limit) {
+        ShardRanges current = ranges();
+        return merge(fanOutByIndex(i -> ownedTop(i, current, limit,
+                window -> shards.get(i).searchByUsername(prefix, window))), BY_USERNAME, limit);
+    }
+
+    @Override
+    public List<User> searchBySimilarUsername(String query, int limit) {
+        // Шарды уже отсортировали свои результаты, для слияния сходство пересчитывается здесь
+        long[] trigrams = Trigrams.of(query);
+        Comparator<User> bySimilarity = Comparator
+                .comparingDouble((User user) -> Trigrams.similarity(trigrams, Trigrams.of(user.getUsername())))
+                .reversed()
+                .thenComparing(User::getId);
+        ShardRanges current = ranges();
+        return merge(fanOutByIndex(i -> ownedTop(i, current, limit,
+                window -> shards.get(i).searchBySimilarUsername(query, window))), bySimilarity, limit);
+    }
+
+    @Override
+    public long[] ageHistogram(int bucketWidth, int buckets) {
+        ShardRanges current = ranges();
+        return sumCounts(fanOutByIndex(i -> {
+            long[] histogram = shards.get(i).ageHistogram(bucketWidth, buckets);
+            foreignRows(i, current, user -> histogram[Math.max(0, Math.min(user.getAge() / bucketWidth, buckets - 1))]--);
+            return histogram;
+        }));
+    }
+
+    @Override
+    public long[] signupsPerDay(LocalDate fromInclusive, LocalDate toExclusive) {
+        ShardRanges current = ranges();
+        long firstDay = fromInclusive.toEpochDay();
+        return sumCounts(fanOutByIndex(i -> {
+            long[] signups = shards.get(i).signupsPerDay(fromInclusive, toExclusive);
+            foreignRows(i, current, user -> {
+                long day = user.getCreatedAt().toLocalDate().toEpochDay() - firstDay;
+                if (day >= 0 && day < signups.length) {
+                    signups[(int) day]--;
+                }
+            });
+            return signups;
+        }));
+    }
+
+    @Override
+    public boolean create(User user) {
+        int target = shardForEmail(user.getEmail());
+        if (existsOnOtherShards(user.getEmail(), target)) {
+            throw new DuplicateEmailException("Ошибка при сохранении пользователя: email уже занят: " + user.getEmail());
+        }
+        return shards.get(target).create(user);
+    }
+
+    @Override
+    public boolean update(User user) {
+        if (user.getId() == null) {
+            return create(user);
+        }
+        return writableOwner(user).update(user);
+    }
+
+    @Override
+    public boolean updateIfExists(User user) {
+        if (user.getId() == null) {
+            return false;
+        }
+        return writableOwner(user).updateIfExists(user);
+    }
+
+    @Override
+    public boolean delete(Long id) {
+        ShardMapStore.State current = state();
+        checkNotFrozen(current, id);
+        return shards.get(current.ranges().shardFor(id)).delete(id);
+    }
+
+    @Override
+    public int createAll(Collection<? extends User> users) {
+        List<List<User>> groups = groups();
+        for (User user : users) {
+            groups.get(shardForEmail(user.getEmail())).add(user);
+        }
+        checkEmailsFreeOnOtherShards(groups);
+        return sum(groups, UserDao::createAll);
+    }
+
+    @Override
+    public int updateAll(Collection<? extends User> users) {
+        ShardMapStore.State current = state();
+        List<List<User>> groups = groups();
+        for (User user : users) {
+            if (user.getId() == null) {
+                groups.get(shardForEmail(user.getEmail())).add(user);
+            } else {
+                checkNotFrozen(current, user.getId());
+                groups.get(current.ranges().shardFor(user.getId())).add(user);
+            }
+        }
+        return sum(groups, UserDao::updateAll);
+    }
+
+    @Override
+    public int deleteAllById(Collection<? extends Long> ids) {
+        ShardMapStore.State current = state();
+        List<List<Long>> groups = groups();
+        for (Long id : ids) {
+            checkNotFrozen(current, id);
+            groups.get(current.ranges().shardFor(id)).add(id);
+        }
+        return sum(groups, UserDao::deleteAllById);
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    /**
+     * Перечитывает общую карту, не дожидаясь refreshInterval.
+     */
+    ShardMapStore.State refresh() {
+        ShardMapStore.State loaded = mapStore.load();
+        if (loaded.ranges().shardCount() != shards.size()) {
+            throw new UserException("Карта диапазонов не совпадает с количеством шардов");
+        }
+        state = loaded;
+        refreshedAt = System.nanoTime();
+        return loaded;
+    }
+
+    ShardMapStore mapStore() {
+        return mapStore;
+    }
+
+    Duration refreshInterval() {
+        return Duration.ofNanos(refreshIntervalNanos);
+    }
+
+    int shardForEmail(String email) {
+        // Адреса, отличающиеся регистром, должны попасть в один шард и упереться в его ограничение
+        int h = User.emailKey(email).hashCode() * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), shards.size());
+    }
+
+    private ShardMapStore.State state() {
+        ShardMapStore.State current = state;
+        if (mapStore != null && System.nanoTime() - refreshedAt > refreshIntervalNanos) {
+            current = refresh();
+        }
+        return current;
+    }
+
+    private UserDao<User, Long> ownerOf(long id) {
+        return shards.get(ranges().shardFor(id));
+    }
+
+    private UserDao<User, Long> writableOwner(User user) {
+        ShardMapStore.State current = state();
+        checkNotFrozen(current, user.getId());
+        int owner = current.ranges().shardFor(user.getId());
+        if (existsOnOtherShards(user.getEmail(), owner)) {
+            throw new DuplicateEmailException("Ошибка при обновлении пользователя: email уже занят: " + user.getEmail());
+        }
+        return shards.get(owner);
+    }
+
+    private boolean existsOnOtherShards(String email, int except) {
+        if (shards.size() == 1) {
+            return false;
+        }
+        return fanOutByIndex(i -> i != except && shards.get(i).existsByEmail(email)).contains(Boolean.TRUE);
+    }
+
+    /**
+     * Проверка create для пакета: каждый шард ищет у себя email, которые по хэшу попали в другие шарды.
+     * Запрос на email в каждом шарде, шарды параллельно.
+     */
+    private void checkEmailsFreeOnOtherShards(List<List<User>> groups) {
+        if (shards.size() == 1) {
+            return;
+        }
+        List<Optional<String>> taken = fanOutByIndex(i -> {
+            for (int home = 0; home < groups.size(); home++) {
+                if (home == i) {
+                    continue;
+                }
+                for (User user : groups.get(home)) {
+                    if (shards.get(i).existsByEmail(user.getEmail())) {
+                        return Optional.of(user.getEmail());
+                    }
+                }
+            }
+            return Optional.<String>empty();
+        });
+        for (Optional<String> email : taken) {
+            if (email.isPresent()) {
+                throw new DuplicateEmailException("Ошибка при пакетном сохранении пользователей: email уже занят: " + email.get());
+            }
+        }
+    }
+
+    // Быстрый отказ по карте узла; окончательную проверку делает ShardFence в транзакции шарда
+    private void checkNotFrozen(ShardMapStore.State current, long id) {
+        if (current.isFrozen(id)) {
+            throw new UserException("Пользователь с ID " + id + " переносится между шардами, повторите позже");
+        }
+    }
+
+    private List<User> owned(int shard, ShardRanges current, List<User> users) {
+        List<User> owned = new ArrayList<>(users.size());
+        for (User user : users) {
+            if (current.shardFor(user.getId()) == shard) {
+                owned.add(user);
+            }
+        }
+        return owned;
+    }
+
+    /**
+     * Первые limit строк шарда после lastId: по запросу на каждый его отрезок карты, чужие отрезки не читаются.
+     */
+    private List<User> ownedAfterId(int shard, ShardRanges current, Long lastId, int limit) {
+        List<User> owned = new ArrayList<>();
+        long from = lastId == null ? 0 : lastId + 1;
+        for (ShardRanges.Segment segment : current.segments(from, Long.MAX_VALUE)) {
+            if (segment.shard() != shard) {
+                continue;
+            }
+            int wanted = limit - owned.size();
+            List<User> page = shards.get(shard).findAfterId(segment.fromInclusive() - 1, wanted);
+            for (User user : page) {
+                if (user.getId() >= segment.toExclusive()) {
+                    break;
+                }
+                owned.add(user);
+            }
+            // Короткая страница целиком внутри отрезка: дальше у шарда строк нет
+            boolean exhausted = page.size() < wanted
+                    && (page.isEmpty() || page.getLast().getId() < segment.toExclusive());
+            if (owned.size() >= limit || exhausted) {
+                break;
+            }
+        }
+        return owned;
+    }
+
+    /**
+     * Для порядка не по ID: если чужие строки вытеснили свои из первых limit, запрос повторяется с окном,
+     * расширенным на число чужих строк.
+     */
+    private List<User> ownedTop(int shard, ShardRanges current, int limit, IntFunction<List<User>> fetch) {
+        int window = limit;
+        List<User> page = fetch.apply(window);
+        List<User> owned = owned(shard, current, page);
+        while (owned.size() < limit && page.size() == window && window < Integer.MAX_VALUE) {
+            window = (int) Math.min(Integer.MAX_VALUE, (long) window + page.size() - owned.size());
+            page = fetch.apply(window);
+            owned = owned(shard, current, page);
+        }
+        return owned.size() > limit ? owned.subList(0, limit) : owned;
+    }
+
+    private Optional<Long> ownedMaxId(int shard, ShardRanges current) {
+        Optional<Long> max = shards.get(shard).findMaxId();
+        while (max.isPresent() && current.shardFor(max.get()) != shard) {
+            max = maxIdBelow(shard, current.segmentStart(max.get()));
+        }
+        return max;
+    }
+
+    /**
+     * Последний ID шарда ниже toExclusive двоичным поиском по findAfterId: до 64 точечных запросов по индексу.
+     * Нужен, только когда верх шарда занимает чужой отрезок.
+     */
+    private Optional<Long> maxIdBelow(int shard, long toExclusive) {
+        UserDao<User, Long> dao = shards.get(shard);
+        List<User> first = dao.findAfterId(null, 1);
+        if (first.isEmpty() || first.getFirst().getId() >= toExclusive) {
+            return Optional.empty();
+        }
+        // low — существующий ID ниже toExclusive, в [high, toExclusive) ID нет
+        long low = first.getFirst().getId();
+        long high = toExclusive;
+        while (high - low > 1) {
+            long mid = low + (high - low) / 2;
+            List<User> next = dao.findAfterId(mid - 1, 1);
+            if (!next.isEmpty() && next.getFirst().getId() < high) {
+                low = next.getFirst().getId();
+            } else {
+                high = mid;
+            }
+        }
+        return Optional.of(low);
+    }
+
+    /**
+     * Строки шарда в чужих отрезках карты — копия переносимого диапазона; агрегаты шарда их уже учли.
+     * Вне переноса каждый отрезок — пустой запрос по индексу.
+     */
+    private long foreignRows(int shard, ShardRanges current, Consumer<? super User> action) {
+        long found = 0;
+        for (ShardRanges.Segment segment : current.segments(0, Long.MAX_VALUE)) {
+            if (segment.shard() != shard) {
+                found += shards.get(shard).streamRange(segment.fromInclusive(), segment.toExclusive(), action);
+            }
+        }
+        return found;
+    }
+
+    private <R> List<R> fanOutByIndex(IntFunction<R> call) {
+        if (shards.size() == 1) {
+            return List.of(call.apply(0));
+        }
+        List<Future<R>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            int shard = i;
+            futures.add(executor.submit(() -> call.apply(shard)));
+        }
+        List<R> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException ex) {
+            futures.forEach(future -> future.cancel(true));
+            if (ex.getCause() instanceof UserException userException) {
+                throw userException;
+            }
+            throw new UserException("Ошибка при запросе к шардам", ex.getCause());
+        } catch (InterruptedException ex) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new UserException("Запрос к шардам прерван", ex);
+        }
+        return results;
+    }
+
+    private <E> int sum(List<List<E>> groups, GroupWrite<E> write) {
+        int total = 0;
+        for (Integer written : fanOutByIndex(i -> groups.get(i).isEmpty() ? 0 : write.apply(shards.get(i), groups.get(i)))) {
+            total += written;
+        }
+        return total;
+    }
+
+    private <E> List<List<E>> groups() {
+        List<List<E>> groups = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            groups.add(new ArrayList<>());
+        }
+        return groups;
+    }
+
+    private static long[] sumCounts(List<long[]> parts) {
+        long[] total = parts.getFirst().clone();
+        for (int i = 1; i < parts.size(); i++) {
+            long[] part = parts.get(i);
+            for (int j = 0; j < total.length; j++) {
+                total[j] += part[j];
+            }
+        }
+        return total;
+    }
+
+    private static List<User> merge(List<List<User>> parts, Comparator<User> order, int limit) {
+        List<User> merged = new ArrayList<>();
+        parts.forEach(merged::addAll);
+        merged.sort(order);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    @FunctionalInterface
+    private interface GroupWrite<E> {
+        int apply(UserDao<User, Long> shard, List<E> group);
+    }
+}
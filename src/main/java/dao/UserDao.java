@@ -1,12 +1,34 @@
 package dao;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserDao<T, ID> {
     List<T> findAll();
+    List<T> findPage(int offset, int limit);
+    List<T> findAfterId(ID lastId, int limit);
+    List<T> findCreatedAfter(LocalDateTime lastCreatedAt, ID lastId, int limit);
+    long count();
+    long streamAll(Consumer<? super T> action);
+    long streamRange(ID fromInclusive, ID toExclusive, Consumer<? super T> action);
+    Optional<ID> findMinId();
+    Optional<ID> findMaxId();
     Optional<T> findById(ID id);
+    Optional<T> findByEmail(String email);
+    boolean existsByEmail(String email);
+    List<T> searchByUsername(String prefix, int limit);
+    List<T> searchBySimilarUsername(String query, int limit);
+    long[] ageHistogram(int bucketWidth, int buckets);
+    long[] signupsPerDay(LocalDate fromInclusive, LocalDate toExclusive);
     boolean create(T entity);
     boolean update(T entity);
+    boolean updateIfExists(T entity);
     boolean delete(ID id);
+    int createAll(Collection<? extends T> entities);
+    int updateAll(Collection<? extends T> entities);
+    int deleteAllById(Collection<? extends ID> ids);
 }
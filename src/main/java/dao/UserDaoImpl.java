@@ -2,23 +2,64 @@ package dao;
 
 import entity.User;
 import exception.UserException;
+import jakarta.persistence.SequenceGenerator;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import utils.HibernateUtil;
+import utils.SessionRouter;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 
 public class UserDaoImpl implements UserDao<User, Long> {
 
-    private static final SessionFactory sessionFactory = HibernateUtil.getSessionFactory();
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
+    private final Supplier<SessionRouter> routerSource;
+    private volatile SessionRouter router;
+    private int batchSize;
+    private volatile ShardFence shardFence;
+
+    /**
+     * SessionFactory строится при первом запросе через DAO, а не при его создании.
+     */
+    public UserDaoImpl() {
+        this.routerSource = HibernateUtil::getSessionRouter;
+    }
+
+    public UserDaoImpl(SessionFactory sessionFactory) {
+        this(SessionRouter.primaryOnly(sessionFactory));
+    }
+
+    /**
+     * Запись идет в основную БД, чтение — через {@link SessionRouter} на реплики.
+     */
+    public UserDaoImpl(SessionRouter router) {
+        this.routerSource = () -> router;
+        router();
+    }
 
 
     @Override
     public List<User> findAll() {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = router().forRead().openSession()) {
             return session.createQuery("FROM User", User.class).list();
         } catch (Exception ex) {
             throw new UserException("Ошибка при получении списка пользователей", ex);
@@ -26,9 +67,130 @@ public class UserDaoImpl implements UserDao<User, Long> {
     }
 
 
+    @Override
+    public List<User> findPage(int offset, int limit) {
+        try (Session session = router().forRead().openSession()) {
+            return session.createQuery("FROM User u ORDER BY u.id", User.class)
+                    .setFirstResult(offset)
+                    .setMaxResults(limit)
+                    .list();
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при получении страницы пользователей", ex);
+        }
+    }
+
+
+    @Override
+    public List<User> findAfterId(Long lastId, int limit) {
+        try (Session session = router().forRead().openSession()) {
+            return session.createQuery("FROM User u WHERE u.id > :lastId ORDER BY u.id", User.class)
+                    .setParameter("lastId", lastId == null ? 0L : lastId)
+                    .setMaxResults(limit)
+                    .list();
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при получении пользователей после ID: " + lastId, ex);
+        }
+    }
+
+
+    @Override
+    public List<User> findCreatedAfter(LocalDateTime lastCreatedAt, Long lastId, int limit) {
+        try (Session session = router().forRead().openSession()) {
+            if (lastCreatedAt == null) {
+                return session.createQuery("FROM User u ORDER BY u.createdAt, u.id", User.class)
+                        .setMaxResults(limit)
+                        .list();
+            }
+            return session.createQuery("""
+                            FROM User u
+                            WHERE u.createdAt > :createdAt
+                               OR (u.createdAt = :createdAt AND u.id > :lastId)
+                            ORDER BY u.createdAt, u.id""", User.class)
+                    .setParameter("createdAt", lastCreatedAt)
+                    .setParameter("lastId", lastId == null ? 0L : lastId)
+                    .setMaxResults(limit)
+                    .list();
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при получении пользователей после даты: " + lastCreatedAt, ex);
+        }
+    }
+
+
+    @Override
+    public long count() {
+        try (Session session = router().forRead().openSession()) {
+            return session.createQuery("SELECT count(u) FROM User u", Long.class).getSingleResult();
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при подсчете пользователей", ex);
+        }
+    }
+
+
+    @Override
+    public long streamAll(Consumer<? super User> action) {
+        return scroll("FROM User u ORDER BY u.id", null, null, action);
+    }
+
+
+    @Override
+    public long streamRange(Long fromInclusive, Long toExclusive, Consumer<? super User> action) {
+        return scroll("FROM User u WHERE u.id >= :from AND u.id < :to ORDER BY u.id", fromInclusive, toExclusive, action);
+    }
+
+
+    @Override
+    public Optional<Long> findMinId() {
+        try (Session session = router().forRead().openSession()) {
+            return Optional.ofNullable(session.createQuery("SELECT min(u.id) FROM User u", Long.class).getSingleResult());
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при получении минимального ID пользователя", ex);
+        }
+    }
+
+
+    @Override
+    public Optional<Long> findMaxId() {
+        try (Session session = router().forRead().openSession()) {
+            return Optional.ofNullable(session.createQuery("SELECT max(u.id) FROM User u", Long.class).getSingleResult());
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при получении максимального ID пользователя", ex);
+        }
+    }
+
+
+    private long scroll(String hql, Long from, Long to, Consumer<? super User> action) {
+        Transaction transaction = null;
+        try (Session session = router().forRead().openSession()) {
+            session.setDefaultReadOnly(true);
+            // PostgreSQL отдает строки курсором только внутри транзакции
+            transaction = session.beginTransaction();
+            var query = session.createQuery(hql, User.class).setFetchSize(STREAM_FETCH_SIZE);
+            if (from != null) {
+                query.setParameter("from", from).setParameter("to", to);
+            }
+            long processed = 0;
+            try (ScrollableResults<User> results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    action.accept(results.get());
+                    if (++processed % STREAM_FETCH_SIZE == 0) {
+                        session.clear();
+                    }
+                }
+            }
+            transaction.commit();
+            return processed;
+        } catch (Exception ex) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new UserException("Ошибка при потоковом чтении пользователей", ex);
+        }
+    }
+
+
     @Override
     public Optional<User> findById(Long id) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = router().forRead(id).openSession()) {
             return Optional.ofNullable(session.find(User.class, id));
         } catch (Exception ex) {
             throw new UserException("Ошибка при поиске пользователя по ID: " + id, ex);
@@ -36,13 +198,140 @@ public class UserDaoImpl implements UserDao<User, Long> {
     }
 
 
+    @Override
+    public Optional<User> findByEmail(String email) {
+        String key = User.emailKey(email);
+        try (Session session = router().forRead(key).openSession()) {
+            return session.createSelectionQuery("FROM User u WHERE lower(u.email) = :email", User.class)
+                    .setParameter("email", key)
+                    .uniqueResultOptional();
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при поиске пользователя по email: " + email, ex);
+        }
+    }
+
+
+    @Override
+    public boolean existsByEmail(String email) {
+        String key = User.emailKey(email);
+        try (Session session = router().forRead(key).openSession()) {
+            return session.createSelectionQuery("SELECT 1 FROM User u WHERE lower(u.email) = :email", Integer.class)
+                    .setParameter("email", key)
+                    .setMaxResults(1)
+                    .uniqueResultOptional()
+                    .isPresent();
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при проверке email: " + email, ex);
+        }
+    }
+
+
+    /**
+     * Префикс сравнивается в колляции "C": так LIKE 'prefix%' и ORDER BY username идут по индексу
+     * users_username_prefix_idx, и чтение останавливается на limit-й строке.
+     */
+    @Override
+    public List<User> searchByUsername(String prefix, int limit) {
+        try (Session session = router().forRead().openSession()) {
+            return session.createNativeQuery("""
+                            SELECT * FROM users
+                            WHERE username COLLATE "C" LIKE :pattern ESCAPE '!'
+                            ORDER BY username COLLATE "C", id""", User.class)
+                    .setParameter("pattern", likePrefix(prefix))
+                    .setMaxResults(limit)
+                    .list();
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при поиске пользователей по имени: " + prefix, ex);
+        }
+    }
+
+
+    /**
+     * Нечеткий поиск pg_trgm: % отбирает имена со сходством не ниже pg_trgm.similarity_threshold,
+     * &lt;-&gt; сортирует по расстоянию через GiST-индекс users_username_trgm_idx.
+     */
+    @Override
+    public List<User> searchBySimilarUsername(String query, int limit) {
+        try (Session session = router().forRead().openSession()) {
+            return session.createNativeQuery("""
+                            SELECT * FROM users
+                            WHERE username % :query
+                            ORDER BY username <-> :query, id""", User.class)
+                    .setParameter("query", query)
+                    .setMaxResults(limit)
+                    .list();
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при нечетком поиске пользователей по имени: " + query, ex);
+        }
+    }
+
+
+    /**
+     * Группировку делает БД: приходит по строке на каждый встреченный возраст, сущности не загружаются.
+     */
+    @Override
+    public long[] ageHistogram(int bucketWidth, int buckets) {
+        long[] histogram = new long[buckets];
+        try (Session session = router().forRead().openSession()) {
+            List<Object[]> rows = session.createNativeQuery("""
+                            SELECT age, count(*) AS total
+                            FROM users
+                            GROUP BY age""", Object[].class)
+                    .addScalar("age", Integer.class)
+                    .addScalar("total", Long.class)
+                    .list();
+            for (Object[] row : rows) {
+                // Отрицательный возраст (строки, записанные до проверки в UserValidator) попадает в первый интервал
+                int bucket = Math.max(0, Math.min((Integer) row[0] / bucketWidth, buckets - 1));
+                histogram[bucket] += (Long) row[1];
+            }
+            return histogram;
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при построении гистограммы возрастов", ex);
+        }
+    }
+
+
+    /**
+     * Диапазон дат выбирается по индексу users_created_at_id_idx, наружу — по строке на день с регистрациями.
+     */
+    @Override
+    public long[] signupsPerDay(LocalDate fromInclusive, LocalDate toExclusive) {
+        long firstDay = fromInclusive.toEpochDay();
+        long[] signups = new long[(int) Math.max(0, toExclusive.toEpochDay() - firstDay)];
+        if (signups.length == 0) {
+            return signups;
+        }
+        try (Session session = router().forRead().openSession()) {
+            List<Object[]> rows = session.createNativeQuery("""
+                            SELECT CAST(created_at AS DATE) AS signup_day, count(*) AS total
+                            FROM users
+                            WHERE created_at >= :from AND created_at < :to
+                            GROUP BY CAST(created_at AS DATE)""", Object[].class)
+                    .setParameter("from", fromInclusive.atStartOfDay())
+                    .setParameter("to", toExclusive.atStartOfDay())
+                    .addScalar("signup_day", LocalDate.class)
+                    .addScalar("total", Long.class)
+                    .list();
+            for (Object[] row : rows) {
+                signups[(int) (((LocalDate) row[0]).toEpochDay() - firstDay)] = (Long) row[1];
+            }
+            return signups;
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при подсчете регистраций по дням", ex);
+        }
+    }
+
+
     @Override
     public boolean create(User user) {
         Transaction transaction = null;
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = router().forWrite().openSession()) {
             transaction = session.beginTransaction();
             session.persist(user);
+            fence(session, user.getId());
             transaction.commit();
+            router().markWritten(user.getId(), User.emailKey(user.getEmail()));
             return true;
         } catch (Exception ex) {
             if (transaction != null && transaction.isActive()) {
@@ -56,10 +345,12 @@ public class UserDaoImpl implements UserDao<User, Long> {
     @Override
     public boolean update(User user) {
         Transaction transaction = null;
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = router().forWrite().openSession()) {
             transaction = session.beginTransaction();
-            session.merge(user);
+            User merged = session.merge(user);
+            fence(session, merged.getId());
             transaction.commit();
+            router().markWritten(user.getId(), User.emailKey(user.getEmail()));
             return true;
         } catch (Exception ex) {
             if (transaction != null && transaction.isActive()) {
@@ -70,17 +361,48 @@ public class UserDaoImpl implements UserDao<User, Long> {
     }
 
 
+    @Override
+    public boolean updateIfExists(User user) {
+        Transaction transaction = null;
+        try (Session session = router().forWrite().openSession()) {
+            transaction = session.beginTransaction();
+
+            int rowsUpdated = session.createMutationQuery("""
+                            UPDATE User u
+                            SET u.username = :username, u.email = :email, u.age = :age
+                            WHERE u.id = :id""")
+                    .setParameter("username", user.getUsername())
+                    .setParameter("email", user.getEmail())
+                    .setParameter("age", user.getAge())
+                    .setParameter("id", user.getId())
+                    .executeUpdate();
+
+            fence(session, user.getId());
+            transaction.commit();
+            router().markWritten(user.getId(), User.emailKey(user.getEmail()));
+            return rowsUpdated > 0;
+        } catch (Exception ex) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new UserException("Ошибка при обновлении пользователя", ex);
+        }
+    }
+
+
     @Override
     public boolean delete(Long id) {
         Transaction transaction = null;
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = router().forWrite().openSession()) {
             transaction = session.beginTransaction();
 
             int rowsDeleted = session.createQuery("DELETE FROM User u WHERE u.id = :id")
                     .setParameter("id", id)
                     .executeUpdate();
 
+            fence(session, id);
             transaction.commit();
+            router().markWritten(id);
             return rowsDeleted > 0;
         } catch (Exception ex) {
             if (transaction != null && transaction.isActive()) {
@@ -89,4 +411,220 @@ public class UserDaoImpl implements UserDao<User, Long> {
             throw new UserException("Ошибка при удалении пользователя", ex);
         }
     }
+
+
+    @Override
+    public int createAll(Collection<? extends User> users) {
+        if (users.isEmpty()) {
+            return 0;
+        }
+        Transaction transaction = null;
+        try (StatelessSession session = router().forWrite().openStatelessSession()) {
+            session.setJdbcBatchSize(batchSize);
+            transaction = session.beginTransaction();
+            session.insertMultiple(new ArrayList<>(users));
+            fenceUsers(session, users);
+            transaction.commit();
+            // Для пакетов помечаем только поток: тысячи ключей в окне read-your-writes не нужны
+            router().markWritten();
+            return users.size();
+        } catch (Exception ex) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new UserException("Ошибка при пакетном сохранении пользователей", ex);
+        }
+    }
+
+
+    @Override
+    public int updateAll(Collection<? extends User> users) {
+        if (users.isEmpty()) {
+            return 0;
+        }
+        Transaction transaction = null;
+        try (StatelessSession session = router().forWrite().openStatelessSession()) {
+            session.setJdbcBatchSize(batchSize);
+            transaction = session.beginTransaction();
+            session.updateMultiple(new ArrayList<>(users));
+            fenceUsers(session, users);
+            transaction.commit();
+            router().markWritten();
+            return users.size();
+        } catch (Exception ex) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new UserException("Ошибка при пакетном обновлении пользователей", ex);
+        }
+    }
+
+
+    @Override
+    public int deleteAllById(Collection<? extends Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Transaction transaction = null;
+        try (StatelessSession session = router().forWrite().openStatelessSession()) {
+            transaction = session.beginTransaction();
+
+            List<Long> chunk = new ArrayList<>(Math.min(ids.size(), DELETE_CHUNK_SIZE));
+            int rowsDeleted = 0;
+            for (Long id : ids) {
+                chunk.add(id);
+                if (chunk.size() == DELETE_CHUNK_SIZE) {
+                    rowsDeleted += deleteChunk(session, chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                rowsDeleted += deleteChunk(session, chunk);
+            }
+
+            fenceIds(session, ids);
+            transaction.commit();
+            router().markWritten();
+            return rowsDeleted;
+        } catch (Exception ex) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new UserException("Ошибка при пакетном удалении пользователей", ex);
+        }
+    }
+
+
+    /**
+     * Сдвигает последовательность ID так, чтобы первым выданным ID стал firstId (у каждого шарда свой диапазон).
+     * Pooled-оптимизатор Hibernate считает значение последовательности верхней границей блока из allocationSize ID
+     * и выдает блок от hi - allocationSize + 1 до hi. Поэтому последовательность перезапускается с
+     * hi = firstId - 1 + allocationSize, и первый ID равен firstId. Сама последовательность при этом
+     * начинается не с firstId: nextval вернет hi.
+     * Непустую таблицу не трогает: значит, диапазон уже настроен.
+     */
+    public boolean restartIdSequence(long firstId) {
+        SequenceGenerator sequence = idSequence();
+        Transaction transaction = null;
+        try (Session session = router().forWrite().openSession()) {
+            transaction = session.beginTransaction();
+            if (session.createQuery("SELECT count(u) FROM User u", Long.class).getSingleResult() > 0) {
+                transaction.commit();
+                return false;
+            }
+            session.createNativeMutationQuery("ALTER SEQUENCE " + sequence.sequenceName()
+                            + " RESTART WITH " + (firstId - 1 + sequence.allocationSize()))
+                    .executeUpdate();
+            transaction.commit();
+            return true;
+        } catch (Exception ex) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new UserException("Ошибка при настройке последовательности ID", ex);
+        }
+    }
+
+
+    /**
+     * Включает проверку {@link ShardFence} в каждой транзакции записи: DAO работает как шард.
+     */
+    public void setShardFence(ShardFence shardFence) {
+        this.shardFence = shardFence;
+    }
+
+
+    /**
+     * Верхняя граница ID, уже выданных последовательностью этой БД: все узлы получают ID блоками,
+     * и следующий блок начнется выше. Сам вызов забирает у последовательности один блок.
+     */
+    public long allocatedIdHead() {
+        SequenceGenerator sequence = idSequence();
+        try (Session session = router().forWrite().openSession()) {
+            String nextValue = session.unwrap(SharedSessionContractImplementor.class).getFactory()
+                    .getJdbcServices().getDialect().getSequenceSupport().getSequenceNextValString(sequence.sequenceName());
+            long blockEnd = session.createNativeQuery(nextValue, Long.class).getSingleResult();
+            return blockEnd - sequence.allocationSize();
+        } catch (Exception ex) {
+            throw new UserException("Ошибка при чтении последовательности ID", ex);
+        }
+    }
+
+
+    private SessionRouter router() {
+        SessionRouter current = router;
+        if (current == null) {
+            current = routerSource.get();
+            // batchSize записывается до публикации router, поэтому виден всем, кто увидел router
+            batchSize = resolveBatchSize(current.primary());
+            router = current;
+        }
+        return current;
+    }
+
+
+    private void fence(SharedSessionContract session, Long id) {
+        fenceIds(session, Collections.singletonList(id));
+    }
+
+
+    private void fenceUsers(SharedSessionContract session, Collection<? extends User> users) {
+        fenceIds(session, users.stream().map(User::getId).toList());
+    }
+
+
+    /**
+     * Откатывает транзакцию сам: к catch вызывающего метода сессия уже закрыта try-with-resources.
+     */
+    private void fenceIds(SharedSessionContract session, Collection<? extends Long> ids) {
+        ShardFence fence = shardFence;
+        if (fence == null) {
+            return;
+        }
+        try {
+            fence.check(session, ids);
+        } catch (RuntimeException ex) {
+            session.getTransaction().rollback();
+            throw ex;
+        }
+    }
+
+
+    private static SequenceGenerator idSequence() {
+        try {
+            return User.class.getDeclaredField("id").getAnnotation(SequenceGenerator.class);
+        } catch (NoSuchFieldException ex) {
+            throw new UserException("У сущности User нет поля id", ex);
+        }
+    }
+
+
+    private static String likePrefix(String prefix) {
+        StringBuilder pattern = new StringBuilder(prefix.length() + 1);
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (c == '!' || c == '%' || c == '_') {
+                pattern.append('!');
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+
+    private static int deleteChunk(StatelessSession session, List<Long> ids) {
+        return session.createMutationQuery("DELETE FROM User u WHERE u.id IN :ids")
+                .setParameterList("ids", ids)
+                .executeUpdate();
+    }
+
+
+    private static int resolveBatchSize(SessionFactory sessionFactory) {
+        Object value = sessionFactory.getProperties().get(AvailableSettings.STATEMENT_BATCH_SIZE);
+        if (value == null) {
+            return DEFAULT_BATCH_SIZE;
+        }
+        int size = Integer.parseInt(value.toString().trim());
+        return size > 0 ? size : DEFAULT_BATCH_SIZE;
+    }
 }
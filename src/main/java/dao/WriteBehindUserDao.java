@@ -0,0 +1,307 @@
+package dao;
+
+import entity.User;
+import exception.UserException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Отложенная запись: create/update/updateIfExists/delete складываются в неблокирующую очередь, а фоновый поток
+ * выполняет их в порядке поступления, когда набирается batchSize или проходит flushInterval: create — пакетом
+ * createAll, update и updateIfExists — пакетом updateAll, delete — по одному. Future завершается только после
+ * коммита. Если очередь заполнена, вызывающий ждет не дольше offerTimeout и получает {@link UserException};
+ * синхронные методы ждут подтверждения не дольше writeTimeout. Пакетные createAll/updateAll/deleteAllById
+ * сначала дожидаются записи всего, что принято раньше. После close новые записи не принимаются,
+ * а принятые до него сбрасываются. Чтения выполняются сразу через delegate.
+ */
+@Slf4j
+public class WriteBehindUserDao extends ForwardingUserDao<User, Long> implements AutoCloseable {
+
+    private static final Duration DEFAULT_WRITE_TIMEOUT = Duration.ofSeconds(30);
+
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutNanos;
+    private final long writeTimeoutNanos;
+    private final ConcurrentLinkedQueue<PendingWrite> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    // Вызовы enqueue между проверкой running и постановкой в очередь: поток сброса не завершается,
+    // пока они не закончатся, поэтому принятая запись не застрянет в очереди после close
+    private final AtomicInteger enqueuing = new AtomicInteger();
+    private final Semaphore capacity;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public WriteBehindUserDao(UserDao<User, Long> delegate, int capacity, int batchSize,
+                              Duration flushInterval, Duration offerTimeout) {
+        this(delegate, capacity, batchSize, flushInterval, offerTimeout, DEFAULT_WRITE_TIMEOUT);
+    }
+
+    public WriteBehindUserDao(UserDao<User, Long> delegate, int capacity, int batchSize,
+                              Duration flushInterval, Duration offerTimeout, Duration writeTimeout) {
+        super(delegate);
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new UserException("Емкость очереди и размер пакета должны быть положительными");
+        }
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.writeTimeoutNanos = writeTimeout.toNanos();
+        this.capacity = new Semaphore(capacity);
+        this.flusher = Thread.ofPlatform().name("user-write-behind").daemon(true).start(this::flushLoop);
+    }
+
+    public CompletableFuture<Boolean> createAsync(User user) {
+        return enqueue(WriteKind.CREATE, user, null);
+    }
+
+    public CompletableFuture<Boolean> updateAsync(User user) {
+        return enqueue(WriteKind.UPDATE, user, null);
+    }
+
+    public CompletableFuture<Boolean> updateIfExistsAsync(User user) {
+        if (user.getId() == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return enqueue(WriteKind.UPDATE_IF_EXISTS, user, null);
+    }
+
+    public CompletableFuture<Boolean> deleteAsync(Long id) {
+        return enqueue(WriteKind.DELETE, null, id);
+    }
+
+    @Override
+    public boolean create(User user) {
+        return await(createAsync(user));
+    }
+
+    @Override
+    public boolean update(User user) {
+        return await(updateAsync(user));
+    }
+
+    @Override
+    public boolean updateIfExists(User user) {
+        return await(updateIfExistsAsync(user));
+    }
+
+    @Override
+    public boolean delete(Long id) {
+        return await(deleteAsync(id));
+    }
+
+    @Override
+    public int createAll(Collection<? extends User> users) {
+        awaitQueued();
+        return delegate.createAll(users);
+    }
+
+    @Override
+    public int updateAll(Collection<? extends User> users) {
+        awaitQueued();
+        return delegate.updateAll(users);
+    }
+
+    @Override
+    public int deleteAllById(Collection<? extends Long> ids) {
+        awaitQueued();
+        return delegate.deleteAllById(ids);
+    }
+
+    public int pendingWrites() {
+        return queued.get();
+    }
+
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UserException("Прервано ожидание сброса очереди записи", ex);
+        } finally {
+            failRemaining();
+        }
+    }
+
+    /**
+     * Метка в очереди, которая завершается, когда поток сброса дошел до нее: все принятое раньше записано.
+     */
+    private void awaitQueued() {
+        CompletableFuture<Boolean> barrier = enqueue(WriteKind.BARRIER, null, null);
+        LockSupport.unpark(flusher);
+        await(barrier);
+    }
+
+    private CompletableFuture<Boolean> enqueue(WriteKind kind, User user, Long id) {
+        if (!running) {
+            throw new UserException("Очередь отложенной записи закрыта");
+        }
+        try {
+            if (!capacity.tryAcquire(offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new UserException("Очередь отложенной записи переполнена");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UserException("Прервано ожидание места в очереди записи", ex);
+        }
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        // Сначала отметка, потом проверка running; close делает наоборот. Поток сброса, увидевший
+        // running == false и enqueuing == 0, знает, что любой следующий enqueue увидит running == false
+        enqueuing.incrementAndGet();
+        try {
+            if (!running) {
+                capacity.release();
+                throw new UserException("Очередь отложенной записи закрыта");
+            }
+            queue.offer(new PendingWrite(kind, user, id, result));
+            if (queued.incrementAndGet() >= batchSize) {
+                LockSupport.unpark(flusher);
+            }
+        } finally {
+            enqueuing.decrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Поток сброса уже остановлен (штатно или из-за ошибки): оставшиеся записи не будут выполнены.
+     */
+    private void failRemaining() {
+        List<PendingWrite> batch;
+        while (!(batch = drain()).isEmpty()) {
+            batch.forEach(write -> write.result().completeExceptionally(
+                    new UserException("Очередь отложенной записи закрыта до записи пользователя")));
+        }
+    }
+
+    private void flushLoop() {
+        // Порядок чтений важен: queued увеличивается до того, как enqueuing уменьшается
+        while (running || enqueuing.get() > 0 || queued.get() > 0) {
+            if (running && queued.get() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            List<PendingWrite> batch;
+            while (!(batch = drain()).isEmpty()) {
+                flush(batch);
+            }
+        }
+    }
+
+    private List<PendingWrite> drain() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        PendingWrite write;
+        while (batch.size() < batchSize && (write = queue.poll()) != null) {
+            batch.add(write);
+        }
+        queued.addAndGet(-batch.size());
+        capacity.release(batch.size());
+        return batch;
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        int start = 0;
+        while (start < batch.size()) {
+            WriteKind kind = batch.get(start).kind();
+            int end = start;
+            while (end < batch.size() && batch.get(end).kind() == kind) {
+                end++;
+            }
+            flushRun(kind, batch.subList(start, end));
+            start = end;
+        }
+    }
+
+    private void flushRun(WriteKind kind, List<PendingWrite> run) {
+        if (kind == WriteKind.BARRIER) {
+            run.forEach(write -> write.result().complete(true));
+            return;
+        }
+        if (kind != WriteKind.DELETE && flushBatch(kind, run)) {
+            return;
+        }
+        for (PendingWrite write : run) {
+            try {
+                write.result().complete(switch (kind) {
+                    case CREATE -> {
+                        write.user().setId(null);
+                        yield delegate.create(write.user());
+                    }
+                    case UPDATE -> delegate.update(write.user());
+                    case UPDATE_IF_EXISTS -> delegate.updateIfExists(write.user());
+                    case DELETE -> delegate.delete(write.id());
+                    case BARRIER -> true;
+                });
+            } catch (RuntimeException ex) {
+                write.result().completeExceptionally(ex);
+            }
+        }
+    }
+
+    /**
+     * false — пакет отклонен или updateAll не сказал, каких строк не было: операции повторяются по одной.
+     * Повтор уже примененного updateIfExists ничего не меняет, а откаченный пакет не оставляет следов.
+     */
+    private boolean flushBatch(WriteKind kind, List<PendingWrite> run) {
+        List<User> users = new ArrayList<>(run.size());
+        for (PendingWrite write : run) {
+            users.add(write.user());
+        }
+        try {
+            int written = kind == WriteKind.CREATE ? delegate.createAll(users) : delegate.updateAll(users);
+            if (kind == WriteKind.UPDATE_IF_EXISTS && written != users.size()) {
+                return false;
+            }
+            run.forEach(write -> write.result().complete(true));
+            return true;
+        } catch (RuntimeException ex) {
+            log.warn("Пакет отложенной записи из {} операций отклонен, повторяем по одной: {}", run.size(), ex.getMessage());
+            return false;
+        }
+    }
+
+    private boolean await(CompletableFuture<Boolean> result) {
+        try {
+            return result.get(writeTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof UserException userException) {
+                throw userException;
+            }
+            throw new UserException("Ошибка отложенной записи пользователя", ex.getCause());
+        } catch (TimeoutException ex) {
+            throw new UserException("Запись не подтверждена за " + TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos)
+                    + " мс, результат неизвестен", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UserException("Прервано ожидание отложенной записи", ex);
+        }
+    }
+
+    private enum WriteKind {
+        CREATE,
+        UPDATE,
+        UPDATE_IF_EXISTS,
+        DELETE,
+        BARRIER
+    }
+
+    private record PendingWrite(WriteKind kind, User user, Long id, CompletableFuture<Boolean> result) {
+    }
+}
@@ -0,0 +1,7 @@
+package exception;
+
+public class DuplicateEmailException extends UserException {
+    public DuplicateEmailException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package exception;
+
+public class UserNotFoundException extends UserException {
+    public UserNotFoundException(Long id) {
+        super("Пользователь с ID " + id + " не найден");
+    }
+}
@@ -0,0 +1,22 @@
+package exporter;
+
+import exception.UserException;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+public enum ExportFormat {
+    CSV,
+    NDJSON;
+
+    public static ExportFormat fromPath(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new UserException("Неизвестный формат файла: " + path.getFileName());
+    }
+}
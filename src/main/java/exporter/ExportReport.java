@@ -0,0 +1,8 @@
+package exporter;
+
+public record ExportReport(long rows, long bytes, int parts, long elapsedMillis) {
+
+    public double rowsPerSecond() {
+        return elapsedMillis == 0 ? rows : rows * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,148 @@
+package exporter;
+
+import exception.UserException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import service.UserService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выгрузка таблицы users в CSV/NDJSON. Строки читаются forward-only курсором и пишутся в файл по мере чтения.
+ * При parts > 1 диапазон ID делится на части, каждая выгружается в свой файл параллельно,
+ * после чего части склеиваются через {@link FileChannel#transferTo}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class UserExporter {
+
+    private final UserService userService;
+
+    public ExportReport export(Path target, int parts) {
+        if (parts <= 0) {
+            throw new UserException("Количество частей выгрузки должно быть положительным");
+        }
+        ExportFormat format = ExportFormat.fromPath(target);
+        long startedAt = System.nanoTime();
+
+        Optional<Long> minId = userService.getMinUserId();
+        Optional<Long> maxId = userService.getMaxUserId();
+        List<long[]> ranges = (minId.isEmpty() || maxId.isEmpty())
+                ? List.of()
+                : split(minId.get(), maxId.get() + 1, parts);
+
+        long rows;
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            if (ranges.size() <= 1) {
+                rows = exportRanges(out, format, ranges, true);
+            } else {
+                rows = exportInParallel(out, target, format, ranges);
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            ExportReport report = new ExportReport(rows, out.size(), Math.max(1, ranges.size()), elapsedMillis);
+            log.info("Выгрузка {} завершена: строк {}, байт {}, частей {}, {} строк/с",
+                    target.getFileName(), report.rows(), report.bytes(), report.parts(),
+                    Math.round(report.rowsPerSecond()));
+            return report;
+        } catch (IOException | UncheckedIOException ex) {
+            throw new UserException("Ошибка записи файла выгрузки " + target, ex);
+        }
+    }
+
+    private long exportInParallel(FileChannel out, Path target, ExportFormat format, List<long[]> ranges)
+            throws IOException {
+        List<Path> partFiles = new ArrayList<>(ranges.size());
+        ExecutorService executor = Executors.newFixedThreadPool(ranges.size());
+        try {
+            List<Future<Long>> futures = new ArrayList<>(ranges.size());
+            for (int i = 0; i < ranges.size(); i++) {
+                Path partFile = target.resolveSibling(target.getFileName() + ".part" + i);
+                partFiles.add(partFile);
+                long[] range = ranges.get(i);
+                futures.add(executor.submit(() -> {
+                    try (FileChannel part = FileChannel.open(partFile, StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                        return exportRanges(part, format, List.of(range), false);
+                    }
+                }));
+            }
+
+            long rows = 0;
+            for (Future<Long> future : futures) {
+                rows += future.get();
+            }
+
+            try (UserRowWriter header = new UserRowWriter(out, format)) {
+                header.writeHeader();
+            }
+            for (Path partFile : partFiles) {
+                try (FileChannel part = FileChannel.open(partFile, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = part.size();
+                    while (position < size) {
+                        position += part.transferTo(position, size - position, out);
+                    }
+                }
+            }
+            return rows;
+        } catch (ExecutionException ex) {
+            throw new UserException("Ошибка при параллельной выгрузке пользователей", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UserException("Выгрузка пользователей прервана", ex);
+        } finally {
+            executor.shutdownNow();
+            for (Path partFile : partFiles) {
+                Files.deleteIfExists(partFile);
+            }
+        }
+    }
+
+    private long exportRanges(FileChannel channel, ExportFormat format, List<long[]> ranges, boolean withHeader)
+            throws IOException {
+        long rows = 0;
+        try (UserRowWriter writer = new UserRowWriter(channel, format)) {
+            if (withHeader) {
+                writer.writeHeader();
+            }
+            for (long[] range : ranges) {
+                rows += userService.streamUsersInRange(range[0], range[1], user -> {
+                    try {
+                        writer.write(user);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+        }
+        return rows;
+    }
+
+    static List<long[]> split(long fromInclusive, long toExclusive, int parts) {
+        long width = toExclusive - fromInclusive;
+        int count = (int) Math.max(1, Math.min(parts, width));
+        List<long[]> ranges = new ArrayList<>(count);
+        long step = width / count;
+        long start = fromInclusive;
+        for (int i = 0; i < count; i++) {
+            long end = i == count - 1 ? toExclusive : start + step;
+            ranges.add(new long[]{start, end});
+            start = end;
+        }
+        return ranges;
+    }
+}
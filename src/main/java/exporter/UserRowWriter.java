@@ -0,0 +1,120 @@
+package exporter;
+
+import entity.User;
+import utils.UserJson;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Кодирует строки выгрузки в переиспользуемый direct-буфер и сбрасывает его в канал целиком,
+ * без промежуточных String/byte[] на каждую запись.
+ */
+final class UserRowWriter implements AutoCloseable {
+
+    static final String CSV_HEADER = "id,username,email,age,created_at\n";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ExportFormat format;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder row = new StringBuilder(256);
+    private long bytesWritten;
+
+    UserRowWriter(FileChannel channel, ExportFormat format) {
+        this.channel = channel;
+        this.format = format;
+    }
+
+    void writeHeader() throws IOException {
+        if (format == ExportFormat.CSV) {
+            row.setLength(0);
+            row.append(CSV_HEADER);
+            encodeRow();
+        }
+    }
+
+    void write(User user) throws IOException {
+        row.setLength(0);
+        switch (format) {
+            case CSV -> appendCsv(user);
+            case NDJSON -> UserJson.write(user, row);
+        }
+        row.append('\n');
+        encodeRow();
+    }
+
+    long bytesWritten() {
+        return bytesWritten + buffer.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+    }
+
+    private void appendCsv(User user) {
+        row.append(user.getId()).append(',');
+        appendCsvField(user.getUsername());
+        row.append(',');
+        appendCsvField(user.getEmail());
+        row.append(',').append(user.getAge()).append(',');
+        if (user.getCreatedAt() != null) {
+            row.append(user.getCreatedAt());
+        }
+    }
+
+    private void appendCsvField(String value) {
+        if (value == null) {
+            return;
+        }
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    private void encodeRow() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(row);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
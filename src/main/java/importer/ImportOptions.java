@@ -0,0 +1,17 @@
+package importer;
+
+import exception.UserException;
+
+public record ImportOptions(int parserThreads, int chunkSize, int queueCapacity, int batchSize) {
+
+    public ImportOptions {
+        if (parserThreads <= 0 || chunkSize <= 0 || queueCapacity <= 0 || batchSize <= 0) {
+            throw new UserException("Параметры импорта должны быть положительными");
+        }
+    }
+
+    public static ImportOptions defaults() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        return new ImportOptions(threads, 1_000, threads * 2, 1_000);
+    }
+}
@@ -0,0 +1,8 @@
+package importer;
+
+public record ImportReport(long totalRows, long importedRows, long rejectedRows, long elapsedMillis) {
+
+    public double rowsPerSecond() {
+        return elapsedMillis == 0 ? totalRows : totalRows * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,272 @@
+package importer;
+
+import dao.UserDao;
+import entity.User;
+import exception.UserException;
+import lombok.extern.slf4j.Slf4j;
+import service.UserService;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Потоковый импорт пользователей из CSV/NDJSON.
+ * Чтение -> разбор и валидация в пуле потоков -> пакетная запись через {@link UserDao}.
+ * Между стадиями стоят ограниченные очереди, поэтому медленная запись притормаживает чтение файла.
+ */
+@Slf4j
+public class UserImportPipeline {
+
+    private static final long POLL_MILLIS = 100;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final RawChunk END_OF_INPUT = new RawChunk(-1, List.of());
+    private static final ParsedChunk END_OF_PARSING = new ParsedChunk(List.of(), List.of());
+
+    private final UserService userService;
+    private final UserDao<User, Long> userDao;
+    private final ImportOptions options;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    public UserImportPipeline(UserService userService) {
+        this(userService, ImportOptions.defaults());
+    }
+
+    public UserImportPipeline(UserService userService, ImportOptions options) {
+        this.userService = userService;
+        this.userDao = userService.userDao();
+        this.options = options;
+    }
+
+    public ImportReport run(Path source, Path errorFile) {
+        ImportFormat format = ImportFormat.fromPath(source);
+        BlockingQueue<RawChunk> rawQueue = new ArrayBlockingQueue<>(options.queueCapacity());
+        BlockingQueue<ParsedChunk> parsedQueue = new ArrayBlockingQueue<>(options.queueCapacity());
+        ExecutorService workers = Executors.newFixedThreadPool(options.parserThreads() + 1);
+        long startedAt = System.nanoTime();
+
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+             BufferedWriter errors = Files.newBufferedWriter(errorFile, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < options.parserThreads(); i++) {
+                workers.execute(() -> guarded(() -> parseLoop(format, rawQueue, parsedQueue)));
+            }
+            Future<long[]> writer = workers.submit(() -> writeLoop(parsedQueue, errors, startedAt));
+
+            long totalRows = readLoop(reader, format, rawQueue);
+            long[] written = writer.get();
+
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            ImportReport report = new ImportReport(totalRows, written[0], written[1], elapsedMillis);
+            log.info("Импорт {} завершен: строк {}, загружено {}, отклонено {}, {} строк/с",
+                    source.getFileName(), report.totalRows(), report.importedRows(), report.rejectedRows(),
+                    Math.round(report.rowsPerSecond()));
+            return report;
+        } catch (IOException ex) {
+            throw new UserException("Ошибка чтения файла импорта " + source, ex);
+        } catch (ExecutionException ex) {
+            throw new UserException("Ошибка при импорте пользователей", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UserException("Импорт пользователей прерван", ex);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private long readLoop(BufferedReader reader, ImportFormat format, BlockingQueue<RawChunk> rawQueue)
+            throws IOException, InterruptedException {
+        long lineNumber = 0;
+        long totalRows = 0;
+        long chunkStart = 1;
+        List<String> lines = new ArrayList<>(options.chunkSize());
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1 && format == ImportFormat.CSV && UserRowParser.isCsvHeader(line)) {
+                chunkStart = 2;
+                continue;
+            }
+            lines.add(line);
+            if (lines.size() == options.chunkSize()) {
+                put(rawQueue, new RawChunk(chunkStart, lines));
+                totalRows += lines.size();
+                chunkStart = lineNumber + 1;
+                lines = new ArrayList<>(options.chunkSize());
+            }
+        }
+        if (!lines.isEmpty()) {
+            put(rawQueue, new RawChunk(chunkStart, lines));
+            totalRows += lines.size();
+        }
+        for (int i = 0; i < options.parserThreads(); i++) {
+            put(rawQueue, END_OF_INPUT);
+        }
+        return totalRows;
+    }
+
+    private void parseLoop(ImportFormat format, BlockingQueue<RawChunk> rawQueue,
+                           BlockingQueue<ParsedChunk> parsedQueue) throws InterruptedException {
+        while (true) {
+            RawChunk chunk = take(rawQueue);
+            if (chunk == END_OF_INPUT) {
+                put(parsedQueue, END_OF_PARSING);
+                return;
+            }
+            List<ParsedRow> rows = new ArrayList<>(chunk.lines().size());
+            List<String> rejects = new ArrayList<>();
+            long lineNumber = chunk.firstLine();
+            for (String line : chunk.lines()) {
+                if (!line.isBlank()) {
+                    try {
+                        User user = UserRowParser.parse(format, line);
+                        userService.validateUser(user);
+                        rows.add(new ParsedRow(lineNumber, user));
+                    } catch (UserException | ArithmeticException ex) {
+                        rejects.add(reject(lineNumber, ex.getMessage(), line));
+                    }
+                }
+                lineNumber++;
+            }
+            put(parsedQueue, new ParsedChunk(rows, rejects));
+        }
+    }
+
+    private long[] writeLoop(BlockingQueue<ParsedChunk> parsedQueue, BufferedWriter errors, long startedAt)
+            throws InterruptedException, IOException {
+        try {
+            long imported = 0;
+            long rejected = 0;
+            int finishedParsers = 0;
+            long lastReport = System.nanoTime();
+            List<ParsedRow> pending = new ArrayList<>(options.batchSize());
+
+            while (finishedParsers < options.parserThreads()) {
+                ParsedChunk chunk = take(parsedQueue);
+                if (chunk == END_OF_PARSING) {
+                    finishedParsers++;
+                    continue;
+                }
+                for (String reject : chunk.rejects()) {
+                    errors.write(reject);
+                    errors.newLine();
+                }
+                rejected += chunk.rejects().size();
+
+                for (ParsedRow row : chunk.rows()) {
+                    pending.add(row);
+                    if (pending.size() == options.batchSize()) {
+                        int written = flush(pending, errors);
+                        imported += written;
+                        rejected += pending.size() - written;
+                        pending.clear();
+                    }
+                }
+
+                long now = System.nanoTime();
+                if (now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                    lastReport = now;
+                    double seconds = (now - startedAt) / 1e9;
+                    log.info("Импорт: загружено {}, отклонено {}, {} строк/с",
+                            imported, rejected, Math.round((imported + rejected) / seconds));
+                }
+            }
+            if (!pending.isEmpty()) {
+                int written = flush(pending, errors);
+                imported += written;
+                rejected += pending.size() - written;
+            }
+            return new long[]{imported, rejected};
+        } catch (InterruptedException | IOException | RuntimeException | Error ex) {
+            failure.compareAndSet(null, ex);
+            throw ex;
+        }
+    }
+
+    private int flush(List<ParsedRow> rows, BufferedWriter errors) throws IOException {
+        List<User> users = new ArrayList<>(rows.size());
+        for (ParsedRow row : rows) {
+            users.add(row.user());
+        }
+        try {
+            return userDao.createAll(users);
+        } catch (UserException batchFailure) {
+            log.warn("Пакет из {} строк отклонен БД, повторяем построчно: {}", rows.size(), batchFailure.getMessage());
+        }
+
+        int written = 0;
+        for (ParsedRow row : rows) {
+            row.user().setId(null);
+            try {
+                userDao.create(row.user());
+                written++;
+            } catch (UserException ex) {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                errors.write(reject(row.lineNumber(), cause.getMessage(), String.valueOf(row.user())));
+                errors.newLine();
+            }
+        }
+        return written;
+    }
+
+    private <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+        while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkFailure();
+        }
+    }
+
+    private <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+        T item;
+        while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            checkFailure();
+        }
+        return item;
+    }
+
+    private void checkFailure() {
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new UserException("Импорт остановлен из-за ошибки в соседней стадии", cause);
+        }
+    }
+
+    private void guarded(InterruptibleTask task) {
+        try {
+            task.run();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable ex) {
+            failure.compareAndSet(null, ex);
+        }
+    }
+
+    private static String reject(long lineNumber, String reason, String raw) {
+        return lineNumber + ";" + reason + ";" + raw;
+    }
+
+    @FunctionalInterface
+    private interface InterruptibleTask {
+        void run() throws InterruptedException;
+    }
+
+    private record RawChunk(long firstLine, List<String> lines) {
+    }
+
+    private record ParsedRow(long lineNumber, User user) {
+    }
+
+    private record ParsedChunk(List<ParsedRow> rows, List<String> rejects) {
+    }
+}
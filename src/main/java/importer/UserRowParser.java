@@ -0,0 +1,78 @@
+package importer;
+
+import entity.User;
+import exception.UserException;
+import utils.UserJson;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class UserRowParser {
+
+    private static final int CSV_COLUMNS = 3;
+
+    private UserRowParser() {
+    }
+
+    static boolean isCsvHeader(String line) {
+        return line.regionMatches(true, 0, "username", 0, "username".length());
+    }
+
+    static User parse(ImportFormat format, String line) {
+        return switch (format) {
+            case CSV -> parseCsv(line);
+            case NDJSON -> UserJson.parse(line);
+        };
+    }
+
+    private static User parseCsv(String line) {
+        List<String> columns = splitCsv(line);
+        if (columns.size() != CSV_COLUMNS) {
+            throw new UserException("Ожидалось " + CSV_COLUMNS + " колонки (username,email,age), получено " + columns.size());
+        }
+        int age;
+        try {
+            age = Integer.parseInt(columns.get(2).trim());
+        } catch (NumberFormatException ex) {
+            throw new UserException("Некорректный возраст: " + columns.get(2));
+        }
+        return User.builder()
+                .username(columns.get(0).trim())
+                .email(columns.get(1).trim())
+                .age(age)
+                .build();
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> columns = new ArrayList<>(CSV_COLUMNS);
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new UserException("Незакрытая кавычка в строке CSV");
+        }
+        columns.add(current.toString());
+        return columns;
+    }
+}
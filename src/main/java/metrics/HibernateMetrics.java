@@ -0,0 +1,45 @@
+package metrics;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import utils.ConnectionPoolStats;
+import utils.HibernateUtil;
+
+/**
+ * Датчики статистики Hibernate и пула соединений. Статистика Hibernate включается здесь же,
+ * без генерации при каждом запросе: значения читаются только при выгрузке метрик.
+ */
+public final class HibernateMetrics {
+
+    private HibernateMetrics() {
+    }
+
+    public static void bind(MetricsRegistry registry, SessionFactory sessionFactory) {
+        Statistics stats = sessionFactory.getStatistics();
+        stats.setStatisticsEnabled(true);
+        registry.gauge("hibernate.sessions_opened", stats::getSessionOpenCount);
+        registry.gauge("hibernate.sessions_closed", stats::getSessionCloseCount);
+        registry.gauge("hibernate.transactions", stats::getTransactionCount);
+        registry.gauge("hibernate.statements_prepared", stats::getPrepareStatementCount);
+        registry.gauge("hibernate.entity_loads", stats::getEntityLoadCount);
+        registry.gauge("hibernate.entity_fetches", stats::getEntityFetchCount);
+        registry.gauge("hibernate.entity_inserts", stats::getEntityInsertCount);
+        registry.gauge("hibernate.entity_updates", stats::getEntityUpdateCount);
+        registry.gauge("hibernate.entity_deletes", stats::getEntityDeleteCount);
+        registry.gauge("hibernate.queries_executed", stats::getQueryExecutionCount);
+        registry.gauge("hibernate.query_max_millis", stats::getQueryExecutionMaxTime);
+        registry.gauge("hibernate.natural_id_queries", stats::getNaturalIdQueryExecutionCount);
+        registry.gauge("hibernate.natural_id_cache_hits", stats::getNaturalIdCacheHitCount);
+        registry.gauge("hibernate.natural_id_cache_misses", stats::getNaturalIdCacheMissCount);
+        registry.gauge("hibernate.second_level_cache_hits", stats::getSecondLevelCacheHitCount);
+        registry.gauge("hibernate.second_level_cache_misses", stats::getSecondLevelCacheMissCount);
+    }
+
+    public static void bindPool(MetricsRegistry registry) {
+        registry.gauge("pool.active", () -> HibernateUtil.getPoolStats().map(ConnectionPoolStats::active).orElse(0));
+        registry.gauge("pool.idle", () -> HibernateUtil.getPoolStats().map(ConnectionPoolStats::idle).orElse(0));
+        registry.gauge("pool.pending", () -> HibernateUtil.getPoolStats().map(ConnectionPoolStats::pending).orElse(0));
+        registry.gauge("pool.acquire_timeouts",
+                () -> HibernateUtil.getPoolStats().map(ConnectionPoolStats::acquireTimeouts).orElse(0L));
+    }
+}
@@ -0,0 +1,23 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * Метрики в JMX (jconsole, VisualVM): счетчики и перцентили по операциям, значения датчиков и дамп в формате Prometheus.
+ */
+public interface MetricsMXBean {
+
+    Map<String, Long> getCounts();
+
+    Map<String, Long> getErrors();
+
+    Map<String, Double> getMeanMillis();
+
+    Map<String, Double> getP99Millis();
+
+    Map<String, Long> getGauges();
+
+    String getPrometheusText();
+
+    void reset();
+}
@@ -0,0 +1,172 @@
+package metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Реестр таймеров операций и датчиков. Таймеры создаются один раз и хранятся в полях вызывающего кода,
+ * поэтому на горячем пути нет поиска по имени. Наружу метрики отдаются через JMX ({@link #registerMBean})
+ * и текстом в формате Prometheus ({@link #writePrometheus}).
+ */
+@Slf4j
+public final class MetricsRegistry implements MetricsMXBean {
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+    private static final String OBJECT_NAME = "user-service:type=Metrics";
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final ConcurrentSkipListMap<String, OperationTimer> timers = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public OperationTimer timer(String name) {
+        return timers.computeIfAbsent(name, OperationTimer::new);
+    }
+
+    /**
+     * Датчик читается только при выгрузке метрик. Имя — через точку, например "hibernate.sessions_opened".
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public List<TimerSnapshot> snapshot() {
+        List<TimerSnapshot> snapshots = new ArrayList<>(timers.size());
+        for (OperationTimer timer : timers.values()) {
+            snapshots.add(timer.snapshot());
+        }
+        return snapshots;
+    }
+
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException ex) {
+            log.warn("Не удалось зарегистрировать MBean метрик: {}", ex.getMessage());
+        }
+    }
+
+    public void writePrometheus(Appendable out) throws IOException {
+        List<TimerSnapshot> snapshots = snapshot();
+
+        out.append("# TYPE user_operation_seconds summary\n");
+        for (TimerSnapshot timer : snapshots) {
+            if (timer.count() == 0) {
+                continue;
+            }
+            quantile(out, timer.name(), "0.5", timer.p50Nanos());
+            quantile(out, timer.name(), "0.9", timer.p90Nanos());
+            quantile(out, timer.name(), "0.99", timer.p99Nanos());
+            quantile(out, timer.name(), "0.999", timer.p999Nanos());
+            out.append("user_operation_seconds_sum{op=\"").append(timer.name()).append("\"} ")
+                    .append(seconds(timer.meanNanos() * timer.count())).append('\n');
+            out.append("user_operation_seconds_count{op=\"").append(timer.name()).append("\"} ")
+                    .append(Long.toString(timer.count())).append('\n');
+        }
+
+        out.append("# TYPE user_operation_errors_total counter\n");
+        for (TimerSnapshot timer : snapshots) {
+            for (Map.Entry<String, Long> error : timer.errorsByCause().entrySet()) {
+                out.append("user_operation_errors_total{op=\"").append(timer.name())
+                        .append("\",cause=\"").append(error.getKey()).append("\"} ")
+                        .append(Long.toString(error.getValue())).append('\n');
+            }
+        }
+
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            String name = prometheusName(gauge.getKey());
+            out.append("# TYPE ").append(name).append(" gauge\n");
+            out.append(name).append(' ').append(Long.toString(gauge.getValue().getAsLong())).append('\n');
+        }
+    }
+
+    @Override
+    public String getPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        try {
+            writePrometheus(text);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return text.toString();
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        snapshot().forEach(timer -> counts.put(timer.name(), timer.count()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        Map<String, Long> errors = new TreeMap<>();
+        snapshot().forEach(timer -> errors.put(timer.name(), timer.errors()));
+        return errors;
+    }
+
+    @Override
+    public Map<String, Double> getMeanMillis() {
+        Map<String, Double> means = new TreeMap<>();
+        snapshot().forEach(timer -> means.put(timer.name(), timer.meanNanos() / NANOS_PER_MILLI));
+        return means;
+    }
+
+    @Override
+    public Map<String, Double> getP99Millis() {
+        Map<String, Double> p99 = new TreeMap<>();
+        snapshot().forEach(timer -> p99.put(timer.name(), timer.p99Nanos() / NANOS_PER_MILLI));
+        return p99;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new TreeMap<>();
+        gauges.forEach((name, value) -> values.put(name, value.getAsLong()));
+        return values;
+    }
+
+    @Override
+    public void reset() {
+        timers.values().forEach(OperationTimer::reset);
+    }
+
+    private static void quantile(Appendable out, String op, String quantile, long nanos) throws IOException {
+        out.append("user_operation_seconds{op=\"").append(op).append("\",quantile=\"").append(quantile)
+                .append("\"} ").append(seconds(nanos)).append('\n');
+    }
+
+    private static String seconds(double nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / NANOS_PER_SECOND);
+    }
+
+    private static String prometheusName(String name) {
+        StringBuilder sb = new StringBuilder("user_");
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : '_');
+        }
+        return sb.toString();
+    }
+}
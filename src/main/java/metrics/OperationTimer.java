@@ -0,0 +1,89 @@
+package metrics;
+
+import exception.UserException;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Таймер одной операции: задержки в наносекундах пишутся в HDR-гистограмму, ошибки считаются по причине.
+ * Запись ({@link #stop}) не аллоцирует и не блокирует: {@link Recorder} пишет в заранее выделенный массив,
+ * а читатель забирает накопленное при {@link #snapshot}. Диапазон — до часа с точностью около 1%.
+ * <pre>
+ * long start = System.nanoTime();
+ * try {
+ *     return work();
+ * } catch (RuntimeException ex) {
+ *     throw timer.failed(ex);
+ * } finally {
+ *     timer.stop(start);
+ * }
+ * </pre>
+ */
+public final class OperationTimer {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final String name;
+    private final Recorder recorder = new Recorder(1, HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    private final Histogram total = new Histogram(1, HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    private final ConcurrentHashMap<Class<?>, LongAdder> errors = new ConcurrentHashMap<>();
+    private Histogram interval;
+
+    OperationTimer(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void stop(long startNanos) {
+        recorder.recordValue(Math.min(Math.max(System.nanoTime() - startNanos, 0), HIGHEST_TRACKABLE_NANOS));
+    }
+
+    /**
+     * Считает ошибку по причине: для {@link UserException} — по классу исходного исключения (ошибка БД,
+     * драйвера), для ошибок валидации без причины — по классу самого исключения. Возвращает ex для throw.
+     */
+    public RuntimeException failed(RuntimeException ex) {
+        Class<?> cause = ex instanceof UserException && ex.getCause() != null
+                ? ex.getCause().getClass()
+                : ex.getClass();
+        LongAdder counter = errors.get(cause);
+        if (counter == null) {
+            counter = errors.computeIfAbsent(cause, key -> new LongAdder());
+        }
+        counter.increment();
+        return ex;
+    }
+
+    public synchronized TimerSnapshot snapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        Map<String, Long> errorsByCause = new TreeMap<>();
+        errors.forEach((cause, count) -> errorsByCause.put(cause.getName(), count.sum()));
+        return new TimerSnapshot(
+                name,
+                total.getTotalCount(),
+                total.getMean(),
+                total.getValueAtPercentile(50),
+                total.getValueAtPercentile(90),
+                total.getValueAtPercentile(99),
+                total.getValueAtPercentile(99.9),
+                total.getMaxValue(),
+                errorsByCause);
+    }
+
+    public synchronized void reset() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.reset();
+        errors.clear();
+    }
+}
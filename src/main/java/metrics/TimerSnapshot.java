@@ -0,0 +1,22 @@
+package metrics;
+
+import java.util.Map;
+
+public record TimerSnapshot(String name,
+                            long count,
+                            double meanNanos,
+                            long p50Nanos,
+                            long p90Nanos,
+                            long p99Nanos,
+                            long p999Nanos,
+                            long maxNanos,
+                            Map<String, Long> errorsByCause) {
+
+    public long errors() {
+        long total = 0;
+        for (long count : errorsByCause.values()) {
+            total += count;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,109 @@
+package service;
+
+import entity.User;
+import exception.UserException;
+import utils.HibernateUtil;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Асинхронный фасад над {@link UserService}. Каждая операция выполняется в отдельном виртуальном потоке,
+ * а семафор не пускает к БД больше запросов, чем соединений в пуле: остальные ждут разрешения,
+ * не занимая соединение и платформенный поток.
+ */
+public class AsyncUserService implements AutoCloseable {
+
+    private final UserService userService;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    public AsyncUserService(UserService userService) {
+        this(userService, HibernateUtil.getMaxPoolSize());
+    }
+
+    public AsyncUserService(UserService userService, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new UserException("Лимит параллельных запросов должен быть положительным");
+        }
+        this.userService = userService;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    public CompletableFuture<Optional<User>> getUserById(Long id) {
+        return submit(() -> userService.getUserById(id));
+    }
+
+    public CompletableFuture<Optional<User>> getUserByEmail(String email) {
+        return submit(() -> userService.getUserByEmail(email));
+    }
+
+    public CompletableFuture<Boolean> saveUser(User user) {
+        return submit(() -> userService.saveUser(user));
+    }
+
+    public CompletableFuture<Boolean> updateUser(User user) {
+        return submit(() -> userService.updateUser(user));
+    }
+
+    public CompletableFuture<Boolean> deleteUser(Long id) {
+        return submit(() -> userService.deleteUser(id));
+    }
+
+    public CompletableFuture<Integer> saveUsers(Collection<User> users) {
+        return submit(() -> userService.saveUsers(users));
+    }
+
+    public CompletableFuture<List<User>> getAllUsers() {
+        return submit(userService::getAllUsers);
+    }
+
+    public CompletableFuture<List<User>> getUsersPage(int page, int size) {
+        return submit(() -> userService.getUsersPage(page, size));
+    }
+
+    public CompletableFuture<List<User>> getUsersAfterId(Long lastId, int size) {
+        return submit(() -> userService.getUsersAfterId(lastId, size));
+    }
+
+    public CompletableFuture<List<User>> getUsersCreatedAfter(LocalDateTime lastCreatedAt, Long lastId, int size) {
+        return submit(() -> userService.getUsersCreatedAfter(lastCreatedAt, lastId, size));
+    }
+
+    public CompletableFuture<Long> countUsers() {
+        return submit(userService::countUsers);
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new UserException("Запрос прерван в ожидании соединения", ex);
+            }
+            try {
+                return operation.get();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+}
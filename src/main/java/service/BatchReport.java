@@ -0,0 +1,9 @@
+package service;
+
+public record BatchReport(long operations, long created, long updated, long deleted, long failed, long batches,
+                          long elapsedMillis) {
+
+    public double operationsPerSecond() {
+        return elapsedMillis == 0 ? operations : operations * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,279 @@
+package service;
+
+import entity.User;
+import exception.UserException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Неинтерактивный режим: команды читаются из файла или stdin, по одной на строку.
+ * <pre>
+ * create &lt;username&gt; &lt;email&gt; &lt;age&gt;
+ * update &lt;id&gt; &lt;username&gt; &lt;email&gt; &lt;age&gt;
+ * delete &lt;id&gt;
+ * # комментарий
+ * </pre>
+ * Подряд идущие команды одного типа собираются в пакет и уходят одним вызовом saveUsers/updateUsers/deleteUsers.
+ * Если БД отклонила пакет, он повторяется по одной команде, чтобы найти и пропустить ошибочные строки.
+ */
+@Slf4j
+public class UserBatchRunner {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final UserService userService;
+    private final int batchSize;
+
+    private final List<Command> pending = new ArrayList<>();
+    private Operation pendingOperation;
+    private long created;
+    private long updated;
+    private long deleted;
+    private long failed;
+    private long batches;
+
+    public UserBatchRunner(UserService userService) {
+        this(userService, DEFAULT_BATCH_SIZE);
+    }
+
+    public UserBatchRunner(UserService userService, int batchSize) {
+        if (batchSize <= 0) {
+            throw new UserException("Размер пакета должен быть положительным");
+        }
+        this.userService = userService;
+        this.batchSize = batchSize;
+    }
+
+    public BatchReport run(Reader input) {
+        reset();
+        long startedAt = System.nanoTime();
+        long operations = 0;
+        long lineNumber = 0;
+        BufferedReader reader = input instanceof BufferedReader buffered ? buffered : new BufferedReader(input);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                Tokenizer tokens = new Tokenizer(line);
+                String keyword = tokens.next();
+                if (keyword == null || keyword.startsWith("#")) {
+                    continue;
+                }
+                operations++;
+                try {
+                    Operation operation = Operation.of(keyword);
+                    Command command = parse(operation, tokens, lineNumber);
+                    if (operation != pendingOperation || pending.size() == batchSize) {
+                        flush();
+                        pendingOperation = operation;
+                    }
+                    pending.add(command);
+                } catch (UserException | NumberFormatException ex) {
+                    reject(lineNumber, ex.getMessage());
+                }
+            }
+            flush();
+        } catch (IOException ex) {
+            throw new UserException("Ошибка чтения команд на строке " + (lineNumber + 1), ex);
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        BatchReport report = new BatchReport(operations, created, updated, deleted, failed, batches, elapsedMillis);
+        log.info("Пакетный режим завершен: команд {}, создано {}, обновлено {}, удалено {}, ошибок {}, пакетов {}, {} мс, {} команд/с",
+                report.operations(), report.created(), report.updated(), report.deleted(), report.failed(),
+                report.batches(), report.elapsedMillis(), Math.round(report.operationsPerSecond()));
+        return report;
+    }
+
+    private void reset() {
+        pending.clear();
+        pendingOperation = null;
+        created = 0;
+        updated = 0;
+        deleted = 0;
+        failed = 0;
+        batches = 0;
+    }
+
+    private Command parse(Operation operation, Tokenizer tokens, long lineNumber) {
+        Command command = switch (operation) {
+            case CREATE -> new Command(lineNumber, user(null, tokens), 0);
+            case UPDATE -> new Command(lineNumber, user(tokens.nextLong(), tokens), 0);
+            case DELETE -> new Command(lineNumber, null, tokens.nextLong());
+        };
+        if (tokens.next() != null) {
+            throw new UserException("Лишние аргументы команды " + operation.keyword);
+        }
+        if (command.user() != null) {
+            userService.validateUser(command.user());
+        } else if (command.id() <= 0) {
+            throw new UserException("Некорректный ID пользователя");
+        }
+        return command;
+    }
+
+    private static User user(Long id, Tokenizer tokens) {
+        return User.builder()
+                .id(id)
+                .username(tokens.required("username"))
+                .email(tokens.required("email"))
+                .age(tokens.nextInt())
+                .build();
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        batches++;
+        try {
+            applyBatch();
+        } catch (UserException batchFailure) {
+            log.warn("Пакет {} из {} команд отклонен, повторяем по одной: {}",
+                    pendingOperation.keyword, pending.size(), batchFailure.getMessage());
+            pending.forEach(this::applySingle);
+        }
+        pending.clear();
+    }
+
+    private void applyBatch() {
+        switch (pendingOperation) {
+            case CREATE -> created += userService.saveUsers(users());
+            case UPDATE -> updated += userService.updateUsers(users());
+            case DELETE -> {
+                List<Long> ids = new ArrayList<>(pending.size());
+                pending.forEach(command -> ids.add(command.id()));
+                deleted += userService.deleteUsers(ids);
+            }
+        }
+    }
+
+    private void applySingle(Command command) {
+        try {
+            switch (pendingOperation) {
+                case CREATE -> {
+                    command.user().setId(null);
+                    userService.saveUser(command.user());
+                    created++;
+                }
+                case UPDATE -> {
+                    userService.updateUser(command.user());
+                    updated++;
+                }
+                case DELETE -> {
+                    userService.deleteUser(command.id());
+                    deleted++;
+                }
+            }
+        } catch (UserException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            reject(command.lineNumber(), cause.getMessage());
+        }
+    }
+
+    private List<User> users() {
+        List<User> users = new ArrayList<>(pending.size());
+        pending.forEach(command -> users.add(command.user()));
+        return users;
+    }
+
+    private void reject(long lineNumber, String reason) {
+        failed++;
+        log.warn("Строка {}: {}", lineNumber, reason);
+    }
+
+    private enum Operation {
+        CREATE("create"), UPDATE("update"), DELETE("delete");
+
+        private final String keyword;
+
+        Operation(String keyword) {
+            this.keyword = keyword;
+        }
+
+        static Operation of(String keyword) {
+            return switch (keyword.toLowerCase(Locale.ROOT)) {
+                case "create" -> CREATE;
+                case "update" -> UPDATE;
+                case "delete" -> DELETE;
+                default -> throw new UserException("Неизвестная команда: " + keyword);
+            };
+        }
+    }
+
+    private record Command(long lineNumber, User user, long id) {
+    }
+
+    /**
+     * Разбор строки по пробелам без регулярных выражений; числа читаются прямо из строки, без промежуточных подстрок.
+     */
+    static final class Tokenizer {
+
+        private final String line;
+        private int position;
+
+        Tokenizer(String line) {
+            this.line = line;
+        }
+
+        String next() {
+            int start = skipWhitespace();
+            if (start == line.length()) {
+                return null;
+            }
+            int end = tokenEnd(start);
+            position = end;
+            return line.substring(start, end);
+        }
+
+        String required(String name) {
+            String token = next();
+            if (token == null) {
+                throw new UserException("Не указан аргумент " + name);
+            }
+            return token;
+        }
+
+        long nextLong() {
+            int start = skipWhitespace();
+            if (start == line.length()) {
+                throw new UserException("Не указан ID пользователя");
+            }
+            int end = tokenEnd(start);
+            position = end;
+            return Long.parseLong(line, start, end, 10);
+        }
+
+        int nextInt() {
+            int start = skipWhitespace();
+            if (start == line.length()) {
+                throw new UserException("Не указан возраст");
+            }
+            int end = tokenEnd(start);
+            position = end;
+            return Integer.parseInt(line, start, end, 10);
+        }
+
+        private int skipWhitespace() {
+            while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+                position++;
+            }
+            return position;
+        }
+
+        private int tokenEnd(int start) {
+            int end = start;
+            while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+                end++;
+            }
+            return end;
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package service;
 
 import entity.User;
+import exporter.UserExporter;
+import importer.ImportReport;
+import importer.UserImportPipeline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-
+import metrics.MetricsRegistry;
+import metrics.OperationTimer;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
@@ -12,6 +22,13 @@ import java.util.Scanner;
 @Slf4j
 public class UserMenuManager {
 
+    private static final int LISTING_BUFFER_SIZE = 64 * 1024;
+    private static final int SEARCH_LIMIT = 20;
+    private static final int AGE_BUCKET_WIDTH = 10;
+    private static final int AGE_BUCKETS = 10;
+    private static final int SIGNUP_REPORT_DAYS = 30;
+    private static final OperationTimer ACTION_TIMER = MetricsRegistry.global().timer("menu.action");
+
     private final Scanner scanner;
     private final UserService userService;
     private boolean running = true;
@@ -21,15 +38,26 @@ public class UserMenuManager {
             try {
                 printMenu();
                 int choice = getIntInput();
-
-                switch (choice) {
-                    case 1 -> createUser();
-                    case 2 -> findUserById();
-                    case 3 -> findAllUsers();
-                    case 4 -> updateUser();
-                    case 5 -> deleteUser();
-                    case 0 -> running = false;
-                    default -> log.warn("Неверный выбор, попробуйте снова.");
+                long start = System.nanoTime();
+                try {
+                    switch (choice) {
+                        case 1 -> createUser();
+                        case 2 -> findUserById();
+                        case 3 -> findAllUsers();
+                        case 4 -> updateUser();
+                        case 5 -> deleteUser();
+                        case 6 -> importUsers();
+                        case 7 -> exportUsers();
+                        case 8 -> showMetrics();
+                        case 9 -> searchUsers();
+                        case 10 -> showStatistics();
+                        case 0 -> running = false;
+                        default -> log.warn("Неверный выбор, попробуйте снова.");
+                    }
+                } catch (RuntimeException ex) {
+                    throw ACTION_TIMER.failed(ex);
+                } finally {
+                    ACTION_TIMER.stop(start);
                 }
             } catch (Exception ex) {
                 log.error(ex.getMessage(), ex);
@@ -44,6 +72,11 @@ public class UserMenuManager {
         System.out.println("3. Показать всех пользователей");
         System.out.println("4. Обновить пользователя");
         System.out.println("5. Удалить пользователя");
+        System.out.println("6. Импортировать пользователей из файла (CSV/NDJSON)");
+        System.out.println("7. Выгрузить пользователей в файл (CSV/NDJSON)");
+        System.out.println("8. Показать метрики");
+        System.out.println("9. Найти пользователей по имени");
+        System.out.println("10. Показать статистику пользователей");
         System.out.println("0. Выход");
         System.out.print("Выберите действие: ");
     }
@@ -91,10 +124,30 @@ public class UserMenuManager {
         );
     }
 
+    /**
+     * Список выводится напрямую в буферизованный поток, а не через логгер: на большой таблице
+     * построчная запись в лог упирается в диск.
+     */
     private void findAllUsers() {
-        List<User> users = userService.getAllUsers();
-        log.info("Список пользователей\n");
-        users.forEach(user -> log.info(user.toString()));
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, System.out.charset()), LISTING_BUFFER_SIZE), false);
+        out.println("Список пользователей");
+        long total = userService.streamAllUsers(user -> writeUser(out, user));
+        out.flush();
+        if (total == 0) {
+            log.warn("В системе пока нет пользователей");
+        } else {
+            log.info("Выведено пользователей: {}", total);
+        }
+    }
+
+    private static void writeUser(PrintWriter out, User user) {
+        out.append(String.valueOf(user.getId())).append(" | ")
+                .append(user.getUsername()).append(" | ")
+                .append(user.getEmail()).append(" | ")
+                .append(String.valueOf(user.getAge())).append(" | ")
+                .append(String.valueOf(user.getCreatedAt()))
+                .println();
     }
 
     private void updateUser() {
@@ -133,4 +186,67 @@ public class UserMenuManager {
         }
     }
 
+    private void importUsers() {
+        System.out.print("Путь к файлу импорта: ");
+        Path source = Path.of(scanner.nextLine().trim());
+        Path errors = Path.of(source + ".errors");
+
+        ImportReport report = new UserImportPipeline(userService).run(source, errors);
+        if (report.rejectedRows() > 0) {
+            log.warn("Отклонено строк: {}, подробности в {}", report.rejectedRows(), errors);
+        }
+    }
+
+    private void exportUsers() {
+        System.out.print("Путь к файлу выгрузки (.csv или .ndjson): ");
+        Path target = Path.of(scanner.nextLine().trim());
+        new UserExporter(userService).export(target, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Сначала поиск по началу имени; если совпадений нет — по похожим именам, чтобы находить и с опечаткой.
+     */
+    private void searchUsers() {
+        System.out.print("Начало имени или имя с опечаткой: ");
+        String query = scanner.nextLine().trim();
+
+        List<User> users = userService.searchUsers(query, SEARCH_LIMIT);
+        if (users.isEmpty()) {
+            users = userService.searchSimilarUsers(query, SEARCH_LIMIT);
+            if (users.isEmpty()) {
+                log.warn("Пользователи с именем, похожим на {}, не найдены", query);
+                return;
+            }
+            log.info("Имен, начинающихся с {}, нет, похожие:", query);
+        }
+        users.forEach(u -> log.info("Найден пользователь {}", u));
+    }
+
+    /**
+     * Все цифры считаются агрегатами в хранилище, пользователи в память не загружаются.
+     */
+    private void showStatistics() {
+        log.info("Всего пользователей: {}", userService.countUsers());
+
+        long[] ages = userService.getAgeHistogram(AGE_BUCKET_WIDTH, AGE_BUCKETS);
+        for (int i = 0; i < ages.length; i++) {
+            int from = i * AGE_BUCKET_WIDTH;
+            String range = i == ages.length - 1 ? from + "+" : from + "-" + (from + AGE_BUCKET_WIDTH - 1);
+            log.info("Возраст {}: {}", range, ages[i]);
+        }
+
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(SIGNUP_REPORT_DAYS - 1);
+        long[] signups = userService.getSignupsPerDay(from, today.plusDays(1));
+        for (int i = 0; i < signups.length; i++) {
+            if (signups[i] > 0) {
+                log.info("Регистраций {}: {}", from.plusDays(i), signups[i]);
+            }
+        }
+    }
+
+    private void showMetrics() {
+        System.out.print(MetricsRegistry.global().getPrometheusText());
+    }
+
 }
\ No newline at end of file
@@ -3,68 +3,406 @@ package service;
 import dao.UserDao;
 import entity.User;
 import exception.UserException;
+import exception.UserNotFoundException;
+import metrics.MetricsRegistry;
+import metrics.OperationTimer;
+import utils.QueryBudget;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.Predicate;
+import java.util.function.Consumer;
 
 public record UserService(UserDao<User, Long> userDao) {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_HISTOGRAM_BUCKETS = 1000;
+    public static final int MAX_REPORT_DAYS = 3660;
+
+    // Сколько SQL-запросов допускается на операцию: чтение — один запрос с запасом,
+    // запись — выборка из последовательности и сама запись, пакет — по два запроса на каждые BATCH_CHUNK строк
+    private static final int READ_BUDGET = 2;
+    private static final int WRITE_BUDGET = 3;
+    private static final int BATCH_CHUNK = 50;
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.global();
+    private static final OperationTimer GET_ALL_USERS_TIMER = METRICS.timer("service.getAllUsers");
+    private static final OperationTimer GET_USERS_PAGE_TIMER = METRICS.timer("service.getUsersPage");
+    private static final OperationTimer GET_USERS_AFTER_ID_TIMER = METRICS.timer("service.getUsersAfterId");
+    private static final OperationTimer GET_USERS_CREATED_AFTER_TIMER = METRICS.timer("service.getUsersCreatedAfter");
+    private static final OperationTimer STREAM_ALL_USERS_TIMER = METRICS.timer("service.streamAllUsers");
+    private static final OperationTimer STREAM_USERS_IN_RANGE_TIMER = METRICS.timer("service.streamUsersInRange");
+    private static final OperationTimer GET_MIN_USER_ID_TIMER = METRICS.timer("service.getMinUserId");
+    private static final OperationTimer GET_MAX_USER_ID_TIMER = METRICS.timer("service.getMaxUserId");
+    private static final OperationTimer COUNT_USERS_TIMER = METRICS.timer("service.countUsers");
+    private static final OperationTimer GET_USER_BY_ID_TIMER = METRICS.timer("service.getUserById");
+    private static final OperationTimer GET_USER_BY_EMAIL_TIMER = METRICS.timer("service.getUserByEmail");
+    private static final OperationTimer EXISTS_BY_EMAIL_TIMER = METRICS.timer("service.existsByEmail");
+    private static final OperationTimer SEARCH_USERS_TIMER = METRICS.timer("service.searchUsers");
+    private static final OperationTimer SEARCH_SIMILAR_USERS_TIMER = METRICS.timer("service.searchSimilarUsers");
+    private static final OperationTimer GET_AGE_HISTOGRAM_TIMER = METRICS.timer("service.getAgeHistogram");
+    private static final OperationTimer GET_SIGNUPS_PER_DAY_TIMER = METRICS.timer("service.getSignupsPerDay");
+    private static final OperationTimer SAVE_USER_TIMER = METRICS.timer("service.saveUser");
+    private static final OperationTimer UPDATE_USER_TIMER = METRICS.timer("service.updateUser");
+    private static final OperationTimer DELETE_USER_TIMER = METRICS.timer("service.deleteUser");
+    private static final OperationTimer SAVE_USERS_TIMER = METRICS.timer("service.saveUsers");
+    private static final OperationTimer UPDATE_USERS_TIMER = METRICS.timer("service.updateUsers");
+    private static final OperationTimer DELETE_USERS_TIMER = METRICS.timer("service.deleteUsers");
+
     public List<User> getAllUsers() {
-        List<User> users = userDao.findAll();
-        if (users.isEmpty()) {
-            throw new UserException("В системе пока нет пользователей");
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.getAllUsers", READ_BUDGET)) {
+            List<User> users = userDao.findAll();
+            if (users.isEmpty()) {
+                throw new UserException("В системе пока нет пользователей");
+            }
+            return users;
+        } catch (RuntimeException ex) {
+            throw GET_ALL_USERS_TIMER.failed(ex);
+        } finally {
+            GET_ALL_USERS_TIMER.stop(start);
+        }
+    }
+
+    public List<User> getUsersPage(int page, int size) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.getUsersPage", READ_BUDGET)) {
+            if (page < 0) {
+                throw new UserException("Некорректный номер страницы");
+            }
+            validatePageSize(size);
+            return userDao.findPage(Math.multiplyExact(page, size), size);
+        } catch (RuntimeException ex) {
+            throw GET_USERS_PAGE_TIMER.failed(ex);
+        } finally {
+            GET_USERS_PAGE_TIMER.stop(start);
+        }
+    }
+
+    public List<User> getUsersAfterId(Long lastId, int size) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.getUsersAfterId", READ_BUDGET)) {
+            validatePageSize(size);
+            return userDao.findAfterId(lastId, size);
+        } catch (RuntimeException ex) {
+            throw GET_USERS_AFTER_ID_TIMER.failed(ex);
+        } finally {
+            GET_USERS_AFTER_ID_TIMER.stop(start);
+        }
+    }
+
+    public List<User> getUsersCreatedAfter(LocalDateTime lastCreatedAt, Long lastId, int size) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.getUsersCreatedAfter", READ_BUDGET)) {
+            validatePageSize(size);
+            return userDao.findCreatedAfter(lastCreatedAt, lastId, size);
+        } catch (RuntimeException ex) {
+            throw GET_USERS_CREATED_AFTER_TIMER.failed(ex);
+        } finally {
+            GET_USERS_CREATED_AFTER_TIMER.stop(start);
+        }
+    }
+
+    public long streamAllUsers(Consumer<? super User> action) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.streamAllUsers", READ_BUDGET)) {
+            if (action == null) {
+                throw new UserException("Обработчик пользователей не может быть null");
+            }
+            return userDao.streamAll(action);
+        } catch (RuntimeException ex) {
+            throw STREAM_ALL_USERS_TIMER.failed(ex);
+        } finally {
+            STREAM_ALL_USERS_TIMER.stop(start);
+        }
+    }
+
+    public long streamUsersInRange(long fromInclusive, long toExclusive, Consumer<? super User> action) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.streamUsersInRange", READ_BUDGET)) {
+            if (action == null) {
+                throw new UserException("Обработчик пользователей не может быть null");
+            }
+            if (fromInclusive > toExclusive) {
+                throw new UserException("Некорректный диапазон ID: " + fromInclusive + ".." + toExclusive);
+            }
+            return userDao.streamRange(fromInclusive, toExclusive, action);
+        } catch (RuntimeException ex) {
+            throw STREAM_USERS_IN_RANGE_TIMER.failed(ex);
+        } finally {
+            STREAM_USERS_IN_RANGE_TIMER.stop(start);
+        }
+    }
+
+    public Optional<Long> getMinUserId() {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.getMinUserId", READ_BUDGET)) {
+            return userDao.findMinId();
+        } catch (RuntimeException ex) {
+            throw GET_MIN_USER_ID_TIMER.failed(ex);
+        } finally {
+            GET_MIN_USER_ID_TIMER.stop(start);
+        }
+    }
+
+    public Optional<Long> getMaxUserId() {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.getMaxUserId", READ_BUDGET)) {
+            return userDao.findMaxId();
+        } catch (RuntimeException ex) {
+            throw GET_MAX_USER_ID_TIMER.failed(ex);
+        } finally {
+            GET_MAX_USER_ID_TIMER.stop(start);
+        }
+    }
+
+    public long countUsers() {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.countUsers", READ_BUDGET)) {
+            return userDao.count();
+        } catch (RuntimeException ex) {
+            throw COUNT_USERS_TIMER.failed(ex);
+        } finally {
+            COUNT_USERS_TIMER.stop(start);
         }
-        return users;
     }
 
     public Optional<User> getUserById(Long id) {
-        if (id == null || id <= 0) {
-            throw new UserException("Некорректный ID пользователя");
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.getUserById", READ_BUDGET)) {
+            if (id == null || id <= 0) {
+                throw new UserException("Некорректный ID пользователя");
+            }
+            return userDao.findById(id);
+        } catch (RuntimeException ex) {
+            throw GET_USER_BY_ID_TIMER.failed(ex);
+        } finally {
+            GET_USER_BY_ID_TIMER.stop(start);
+        }
+    }
+
+    public Optional<User> getUserByEmail(String email) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.getUserByEmail", READ_BUDGET)) {
+            validateEmailArgument(email);
+            return userDao.findByEmail(email);
+        } catch (RuntimeException ex) {
+            throw GET_USER_BY_EMAIL_TIMER.failed(ex);
+        } finally {
+            GET_USER_BY_EMAIL_TIMER.stop(start);
+        }
+    }
+
+    public boolean existsByEmail(String email) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.existsByEmail", READ_BUDGET)) {
+            validateEmailArgument(email);
+            return userDao.existsByEmail(email);
+        } catch (RuntimeException ex) {
+            throw EXISTS_BY_EMAIL_TIMER.failed(ex);
+        } finally {
+            EXISTS_BY_EMAIL_TIMER.stop(start);
+        }
+    }
+
+    /**
+     * Пользователи, чье имя начинается с prefix (с учетом регистра), по возрастанию имени.
+     */
+    public List<User> searchUsers(String prefix, int limit) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.searchUsers", READ_BUDGET)) {
+            validateSearchArgument(prefix);
+            validatePageSize(limit);
+            return userDao.searchByUsername(prefix, limit);
+        } catch (RuntimeException ex) {
+            throw SEARCH_USERS_TIMER.failed(ex);
+        } finally {
+            SEARCH_USERS_TIMER.stop(start);
+        }
+    }
+
+    /**
+     * Пользователи с похожим именем (сходство по триграммам), от самых похожих.
+     */
+    public List<User> searchSimilarUsers(String query, int limit) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.searchSimilarUsers", READ_BUDGET)) {
+            validateSearchArgument(query);
+            validatePageSize(limit);
+            return userDao.searchBySimilarUsername(query, limit);
+        } catch (RuntimeException ex) {
+            throw SEARCH_SIMILAR_USERS_TIMER.failed(ex);
+        } finally {
+            SEARCH_SIMILAR_USERS_TIMER.stop(start);
+        }
+    }
+
+    /**
+     * Число пользователей по возрасту: элемент i — возраст от i * bucketWidth до (i + 1) * bucketWidth,
+     * последний элемент собирает всех старше.
+     */
+    public long[] getAgeHistogram(int bucketWidth, int buckets) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.getAgeHistogram", READ_BUDGET)) {
+            if (bucketWidth <= 0) {
+                throw new UserException("Ширина интервала возраста должна быть положительной");
+            }
+            if (buckets <= 0 || buckets > MAX_HISTOGRAM_BUCKETS) {
+                throw new UserException("Число интервалов должно быть от 1 до " + MAX_HISTOGRAM_BUCKETS);
+            }
+            return userDao.ageHistogram(bucketWidth, buckets);
+        } catch (RuntimeException ex) {
+            throw GET_AGE_HISTOGRAM_TIMER.failed(ex);
+        } finally {
+            GET_AGE_HISTOGRAM_TIMER.stop(start);
+        }
+    }
+
+    /**
+     * Число регистраций по дням created_at: элемент i — день fromInclusive + i.
+     */
+    public long[] getSignupsPerDay(LocalDate fromInclusive, LocalDate toExclusive) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.getSignupsPerDay", READ_BUDGET)) {
+            if (fromInclusive == null || toExclusive == null || !fromInclusive.isBefore(toExclusive)) {
+                throw new UserException("Некорректный период: " + fromInclusive + ".." + toExclusive);
+            }
+            if (toExclusive.toEpochDay() - fromInclusive.toEpochDay() > MAX_REPORT_DAYS) {
+                throw new UserException("Период отчета не может быть длиннее " + MAX_REPORT_DAYS + " дней");
+            }
+            return userDao.signupsPerDay(fromInclusive, toExclusive);
+        } catch (RuntimeException ex) {
+            throw GET_SIGNUPS_PER_DAY_TIMER.failed(ex);
+        } finally {
+            GET_SIGNUPS_PER_DAY_TIMER.stop(start);
         }
-        return userDao.findById(id);
     }
 
     public boolean saveUser(User user) {
-        validateUser(user);
-        return userDao.create(user);
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.saveUser", WRITE_BUDGET)) {
+            validateUser(user);
+            return userDao.create(user);
+        } catch (RuntimeException ex) {
+            throw SAVE_USER_TIMER.failed(ex);
+        } finally {
+            SAVE_USER_TIMER.stop(start);
+        }
     }
 
     public boolean updateUser(User user) {
-        validateUser(user);
-        if (userNotExist(user.getId())) {
-            throw new UserException("Пользователь с ID " + user.getId() + " не найден");
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.updateUser", WRITE_BUDGET)) {
+            validateUser(user);
+            if (user.getId() == null || !userDao.updateIfExists(user)) {
+                throw new UserNotFoundException(user.getId());
+            }
+            return true;
+        } catch (RuntimeException ex) {
+            throw UPDATE_USER_TIMER.failed(ex);
+        } finally {
+            UPDATE_USER_TIMER.stop(start);
         }
-        return userDao.update(user);
     }
 
     public boolean deleteUser(Long id) {
-        if (userNotExist(id)) {
-            throw new UserException("Пользователь с ID " + id + " не найден");
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.deleteUser", WRITE_BUDGET)) {
+            if (id == null || !userDao.delete(id)) {
+                throw new UserNotFoundException(id);
+            }
+            return true;
+        } catch (RuntimeException ex) {
+            throw DELETE_USER_TIMER.failed(ex);
+        } finally {
+            DELETE_USER_TIMER.stop(start);
         }
-        return userDao.delete(id);
     }
 
-    private void validateUser(User user) {
-        if (user == null) {
-            throw new UserException("Пользователь не может быть null");
+    public int saveUsers(Collection<User> users) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.saveUsers", batchBudget(users))) {
+            validateBatch(users);
+            users.forEach(this::validateUser);
+            return userDao.createAll(users);
+        } catch (RuntimeException ex) {
+            throw SAVE_USERS_TIMER.failed(ex);
+        } finally {
+            SAVE_USERS_TIMER.stop(start);
         }
-        if (user.getUsername().isEmpty()) {
-            throw new UserException("Имя пользователя обязательно");
+    }
+
+    public int updateUsers(Collection<User> users) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.updateUsers", batchBudget(users))) {
+            validateBatch(users);
+            for (User user : users) {
+                validateUser(user);
+                if (user.getId() == null) {
+                    throw new UserNotFoundException(null);
+                }
+            }
+            return userDao.updateAll(users);
+        } catch (RuntimeException ex) {
+            throw UPDATE_USERS_TIMER.failed(ex);
+        } finally {
+            UPDATE_USERS_TIMER.stop(start);
         }
-        Predicate<String> isValidEmail = new Predicate<String>() {
-            private static final String EMAIL_PATTERN = "^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$";
-            @Override
-            public boolean test(String email) {
-                return email != null && email.matches(EMAIL_PATTERN);
+    }
+
+    public int deleteUsers(Collection<Long> ids) {
+        long start = System.nanoTime();
+        try (QueryBudget.Scope ignored = QueryBudget.open("service.deleteUsers", batchBudget(ids))) {
+            validateBatch(ids);
+            for (Long id : ids) {
+                if (id == null || id <= 0) {
+                    throw new UserException("Некорректный ID пользователя");
+                }
             }
-        };
-        if (!isValidEmail.test(user.getEmail())) {
+            return userDao.deleteAllById(ids);
+        } catch (RuntimeException ex) {
+            throw DELETE_USERS_TIMER.failed(ex);
+        } finally {
+            DELETE_USERS_TIMER.stop(start);
+        }
+    }
+
+    private static int batchBudget(Collection<?> batch) {
+        // Пустой пакет отклоняется validateBatch уже внутри бюджета операции
+        int size = batch == null ? 0 : batch.size();
+        return QueryBudget.forBatch(size, BATCH_CHUNK, 2, WRITE_BUDGET);
+    }
+
+    private void validateBatch(Collection<?> batch) {
+        if (batch == null || batch.isEmpty()) {
+            throw new UserException("Пакет пользователей не может быть пустым");
+        }
+    }
+
+    public void validateUser(User user) {
+        int violations = UserValidator.validate(user);
+        if (violations != 0) {
+            throw new UserException(UserValidator.describe(violations));
+        }
+    }
+
+    private void validateEmailArgument(String email) {
+        if (email == null || email.isBlank()) {
             throw new UserException("Некорректный адрес электронной почты");
         }
     }
 
-    private boolean userNotExist(Long id) {
-        return id == null || userDao.findById(id).isEmpty();
+    private void validateSearchArgument(String query) {
+        if (query == null || query.isBlank()) {
+            throw new UserException("Строка поиска не может быть пустой");
+        }
+    }
+
+    private void validatePageSize(int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new UserException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
     }
 }
\ No newline at end of file
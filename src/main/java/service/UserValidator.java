@@ -0,0 +1,150 @@
+package service;
+
+import entity.User;
+import jakarta.persistence.Column;
+
+/**
+ * Проверка пользователя за один проход. Нарушения собираются в битовую маску,
+ * тексты ошибок для всех комбинаций подготовлены заранее, поэтому валидный пользователь
+ * проверяется без единой аллокации.
+ */
+public final class UserValidator {
+
+    public static final int USER_NULL = 1;
+    public static final int USERNAME_REQUIRED = 1 << 1;
+    public static final int USERNAME_TOO_LONG = 1 << 2;
+    public static final int EMAIL_INVALID = 1 << 3;
+    public static final int EMAIL_TOO_LONG = 1 << 4;
+    public static final int AGE_REQUIRED = 1 << 5;
+    public static final int AGE_NEGATIVE = 1 << 6;
+
+    static final int USERNAME_MAX_LENGTH = columnLength("username");
+    static final int EMAIL_MAX_LENGTH = columnLength("email");
+
+    private static final String[] RULE_MESSAGES = {
+            "Пользователь не может быть null",
+            "Имя пользователя обязательно",
+            "Имя пользователя не должно быть длиннее " + USERNAME_MAX_LENGTH + " символов",
+            "Некорректный адрес электронной почты",
+            "Адрес электронной почты не должен быть длиннее " + EMAIL_MAX_LENGTH + " символов",
+            "Возраст пользователя обязателен",
+            "Возраст пользователя не может быть отрицательным"
+    };
+    private static final String[] MESSAGES = buildMessages();
+
+    private UserValidator() {
+    }
+
+    public static int validate(User user) {
+        if (user == null) {
+            return USER_NULL;
+        }
+        int violations = 0;
+
+        String username = user.getUsername();
+        if (username == null || username.isEmpty()) {
+            violations |= USERNAME_REQUIRED;
+        } else if (username.length() > USERNAME_MAX_LENGTH) {
+            violations |= USERNAME_TOO_LONG;
+        }
+
+        String email = user.getEmail();
+        if (!isValidEmail(email)) {
+            violations |= EMAIL_INVALID;
+        }
+        if (email != null && email.length() > EMAIL_MAX_LENGTH) {
+            violations |= EMAIL_TOO_LONG;
+        }
+
+        if (user.getAge() == null) {
+            violations |= AGE_REQUIRED;
+        } else if (user.getAge() < 0) {
+            violations |= AGE_NEGATIVE;
+        }
+        return violations;
+    }
+
+    public static String describe(int violations) {
+        return MESSAGES[violations & (MESSAGES.length - 1)];
+    }
+
+    /**
+     * Ручная реализация шаблона {@code ^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\.[a-zA-Z]{2,}$}.
+     */
+    static boolean isValidEmail(String email) {
+        if (email == null) {
+            return false;
+        }
+        int length = email.length();
+        int at = -1;
+        for (int i = 0; i < length; i++) {
+            char c = email.charAt(i);
+            if (c == '@') {
+                at = i;
+                break;
+            }
+            if (!isLocalChar(c)) {
+                return false;
+            }
+        }
+        if (at <= 0) {
+            return false;
+        }
+
+        int lastDot = -1;
+        for (int i = at + 1; i < length; i++) {
+            char c = email.charAt(i);
+            if (c == '.') {
+                lastDot = i;
+            } else if (!isLetterOrDigit(c) && c != '-') {
+                return false;
+            }
+        }
+        if (lastDot < at + 2 || length - lastDot - 1 < 2) {
+            return false;
+        }
+        for (int i = lastDot + 1; i < length; i++) {
+            if (!isLetter(email.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLocalChar(char c) {
+        return isLetterOrDigit(c) || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return isLetter(c) || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static String[] buildMessages() {
+        String[] messages = new String[1 << RULE_MESSAGES.length];
+        for (int mask = 1; mask < messages.length; mask++) {
+            StringBuilder sb = new StringBuilder();
+            for (int rule = 0; rule < RULE_MESSAGES.length; rule++) {
+                if ((mask & (1 << rule)) != 0) {
+                    if (!sb.isEmpty()) {
+                        sb.append("; ");
+                    }
+                    sb.append(RULE_MESSAGES[rule]);
+                }
+            }
+            messages[mask] = sb.toString();
+        }
+        return messages;
+    }
+
+    private static int columnLength(String field) {
+        try {
+            return User.class.getDeclaredField(field).getAnnotation(Column.class).length();
+        } catch (NoSuchFieldException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package utils;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Копит время получения соединения из пула. Hikari вызывает трекер на каждом getConnection,
+ * поэтому здесь только счетчики без аллокаций.
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAccumulator maxAcquireNanos = new LongAccumulator(Long::max, 0);
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquireCount.increment();
+                acquireNanos.add(elapsedAcquiredNanos);
+                maxAcquireNanos.accumulate(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    public long acquireCount() {
+        return acquireCount.sum();
+    }
+
+    public long timeouts() {
+        return timeouts.sum();
+    }
+
+    public double avgAcquireMicros() {
+        long count = acquireCount.sum();
+        return count == 0 ? 0.0 : acquireNanos.sum() / 1_000.0 / count;
+    }
+
+    public double maxAcquireMicros() {
+        return maxAcquireNanos.get() / 1_000.0;
+    }
+}
@@ -0,0 +1,12 @@
+package utils;
+
+public record ConnectionPoolStats(int active,
+                                  int idle,
+                                  int total,
+                                  int pending,
+                                  int maxPoolSize,
+                                  long acquireCount,
+                                  long acquireTimeouts,
+                                  double avgAcquireMicros,
+                                  double maxAcquireMicros) {
+}
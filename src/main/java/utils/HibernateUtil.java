@@ -1,28 +1,236 @@
 package utils;
 
-import lombok.Getter;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.MetadataSources;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.service.ServiceRegistry;
 
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
+
+/**
+ * Основная БД настраивается в hibernate.cfg.xml. Реплики для чтения задаются списком JDBC URL через запятую
+ * в hibernate.replica.urls (можно системным свойством); учетные данные и настройки пула — как у основной БД.
+ * hibernate.replica.strategy: round_robin | least_loaded, hibernate.replica.read_your_writes_millis — окно,
+ * в течение которого записанные данные читаются с основной БД.
+ * Дополнительные шарды — hibernate.shard.urls, основная БД всегда шард 0; схемой каждого шарда
+ * управляет он сам.
+ * hibernate.slow_statement_millis — порог, после которого SQL-запрос логируется как медленный
+ * (отрицательное значение отключает замер запросов и {@link QueryBudget}).
+ * SessionFactory строится при первом обращении, а не при загрузке класса. hibernate.fast_start=true — быстрый
+ * старт для коротких запусков: схема не создается (hibernate.fast_start.schema_action: none | validate),
+ * метаданные JDBC при загрузке не читаются.
+ * Схема основной БД и шардов создается миграциями {@link SchemaMigrator} до построения SessionFactory,
+ * Hibernate ее только проверяет. hibernate.migrate=false отключает миграции (при быстром старте они отключены).
+ */
 public class HibernateUtil {
-    @Getter
-    private static  SessionFactory sessionFactory;
+    private static final String HIKARI_PREFIX = "hibernate.hikari.";
+    private static final String MAXIMUM_POOL_SIZE = "maximumPoolSize";
+    // Значение HikariCP по умолчанию
+    private static final int DEFAULT_MAXIMUM_POOL_SIZE = 10;
+    private static final String REPLICA_URLS = "hibernate.replica.urls";
+    private static final String REPLICA_STRATEGY = "hibernate.replica.strategy";
+    private static final String READ_YOUR_WRITES_MILLIS = "hibernate.replica.read_your_writes_millis";
+    private static final long DEFAULT_READ_YOUR_WRITES_MILLIS = 2_000;
+    private static final String SHARD_URLS = "hibernate.shard.urls";
+    private static final String SLOW_STATEMENT_MILLIS = "hibernate.slow_statement_millis";
+    private static final long DEFAULT_SLOW_STATEMENT_MILLIS = 200;
+    private static final String FAST_START = "hibernate.fast_start";
+    private static final String FAST_START_SCHEMA_ACTION = "hibernate.fast_start.schema_action";
+    private static final String MIGRATE = "hibernate.migrate";
+
+    private static volatile SessionFactory sessionFactory;
+    private static volatile Duration bootDuration = Duration.ZERO;
+    private static HikariDataSource dataSource;
+    private static SessionRouter sessionRouter;
+    private static final List<HikariDataSource> extraDataSources = new ArrayList<>();
+    private static final List<SessionFactory> extraSessionFactories = new ArrayList<>();
+    private static final List<SessionFactory> shardSessionFactories = new ArrayList<>();
+    private static final ConnectionPoolMetrics poolMetrics = new ConnectionPoolMetrics();
+    private static final List<AutoCloseable> beforeShutdown = new CopyOnWriteArrayList<>();
+    private static final List<Consumer<SessionFactory>> onInitialized = new ArrayList<>();
 
-    static {
+    public static SessionFactory getSessionFactory() {
+        SessionFactory current = sessionFactory;
+        if (current == null) {
+            synchronized (HibernateUtil.class) {
+                if (sessionFactory == null) {
+                    initialize();
+                    onInitialized.forEach(action -> action.accept(sessionFactory));
+                    onInitialized.clear();
+                }
+                current = sessionFactory;
+            }
+        }
+        return current;
+    }
+
+    public static boolean isInitialized() {
+        return sessionFactory != null;
+    }
+
+    /**
+     * Выполняет action, когда SessionFactory будет построена, или сразу, если она уже есть. Построение не запускает.
+     */
+    public static void whenInitialized(Consumer<SessionFactory> action) {
+        synchronized (HibernateUtil.class) {
+            if (sessionFactory == null) {
+                onInitialized.add(action);
+                return;
+            }
+        }
+        action.accept(sessionFactory);
+    }
+
+    /**
+     * Сколько заняло построение SessionFactory (вместе с репликами и шардами); ноль, если она еще не строилась.
+     */
+    public static Duration getBootDuration() {
+        return bootDuration;
+    }
+
+    private static void initialize() {
+        long startedAt = System.nanoTime();
+        SessionFactory primary = null;
         try {
-            ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
-                    .configure()
-                    .build();
-            sessionFactory = new MetadataSources(serviceRegistry).buildMetadata().buildSessionFactory();
+            StandardServiceRegistryBuilder registryBuilder = configure();
+            Map<String, Object> settings = new HashMap<>(registryBuilder.getSettings());
+            dataSource = createDataSource(settings, String.valueOf(settings.get(AvailableSettings.JAKARTA_JDBC_URL)), "");
+            migrate(settings, dataSource);
+            ServiceRegistry serviceRegistry = applyDataSource(registryBuilder, dataSource).build();
+            primary = new MetadataSources(serviceRegistry).buildMetadata().buildSessionFactory();
+            sessionRouter = createSessionRouter(settings, primary);
+            createShards(settings);
+            // Публикуется последней: потоки, видящие sessionFactory без блокировки, видят и реплики с шардами
+            bootDuration = Duration.ofNanos(System.nanoTime() - startedAt);
+            sessionFactory = primary;
         } catch (Throwable ex) {
-            throw new ExceptionInInitializerError("Ошибка инициализации SessionFactory: " + ex);
+            extraSessionFactories.forEach(SessionFactory::close);
+            extraDataSources.forEach(HikariDataSource::close);
+            extraSessionFactories.clear();
+            extraDataSources.clear();
+            shardSessionFactories.clear();
+            if (primary != null) {
+                primary.close();
+            }
+            if (dataSource != null) {
+                dataSource.close();
+                dataSource = null;
+            }
+            throw new IllegalStateException("Ошибка инициализации SessionFactory: " + ex, ex);
+        }
+    }
+
+    private static StandardServiceRegistryBuilder configure() {
+        StandardServiceRegistryBuilder registryBuilder = new StandardServiceRegistryBuilder().configure();
+        if (isFastStart(registryBuilder.getSettings())) {
+            registryBuilder.applySetting(AvailableSettings.HBM2DDL_AUTO,
+                    registryBuilder.getSettings().getOrDefault(FAST_START_SCHEMA_ACTION, "none"));
+            // Диалект задан явно, поэтому подключаться к БД за ее метаданными при загрузке не нужно
+            registryBuilder.applySetting(AvailableSettings.ALLOW_METADATA_ON_BOOT, false);
+        }
+        return registryBuilder;
+    }
+
+    private static boolean isFastStart(Map<String, Object> settings) {
+        return Boolean.parseBoolean(String.valueOf(settings.getOrDefault(FAST_START, "false")));
+    }
+
+    private static void migrate(Map<String, Object> settings, DataSource pool) {
+        if (Boolean.parseBoolean(String.valueOf(settings.getOrDefault(MIGRATE, !isFastStart(settings))))) {
+            new SchemaMigrator(pool).migrate();
+        }
+    }
+
+    public static Optional<ConnectionPoolStats> getPoolStats() {
+        if (dataSource == null || dataSource.isClosed()) {
+            return Optional.empty();
+        }
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return Optional.of(new ConnectionPoolStats(
+                pool.getActiveConnections(),
+                pool.getIdleConnections(),
+                pool.getTotalConnections(),
+                pool.getThreadsAwaitingConnection(),
+                dataSource.getMaximumPoolSize(),
+                poolMetrics.acquireCount(),
+                poolMetrics.timeouts(),
+                poolMetrics.avgAcquireMicros(),
+                poolMetrics.maxAcquireMicros()));
+    }
+
+    /**
+     * Маршрутизатор чтения/записи. Если SessionFactory подменили (тесты), возвращается маршрутизатор без реплик.
+     */
+    public static SessionRouter getSessionRouter() {
+        SessionFactory current = getSessionFactory();
+        return sessionRouter != null && sessionRouter.primary() == current
+                ? sessionRouter
+                : SessionRouter.primaryOnly(current);
+    }
+
+    /**
+     * SessionFactory всех шардов, основная БД — первая.
+     */
+    public static List<SessionFactory> getShardSessionFactories() {
+        List<SessionFactory> shards = new ArrayList<>(shardSessionFactories.size() + 1);
+        shards.add(getSessionFactory());
+        shards.addAll(shardSessionFactories);
+        return shards;
+    }
+
+    /**
+     * Размер пула основной БД. До построения SessionFactory берется из настроек: пул ради этого не создается.
+     */
+    public static int getMaxPoolSize() {
+        HikariDataSource pool = dataSource;
+        if (pool != null) {
+            return pool.getMaximumPoolSize();
         }
+        return Integer.parseInt(hikariProperties(configure().getSettings())
+                .getProperty(MAXIMUM_POOL_SIZE, String.valueOf(DEFAULT_MAXIMUM_POOL_SIZE)));
+    }
+
+    /**
+     * Регистрирует ресурс, который нужно закрыть до SessionFactory (например, очередь отложенной записи).
+     * Ресурсы закрываются в обратном порядке регистрации.
+     */
+    public static void closeBeforeShutdown(AutoCloseable resource) {
+        beforeShutdown.add(resource);
     }
 
     public static void shutdown() {
+        RuntimeException resourceFailure = null;
+        for (int i = beforeShutdown.size() - 1; i >= 0; i--) {
+            try {
+                beforeShutdown.get(i).close();
+            } catch (Exception ex) {
+                if (resourceFailure == null) {
+                    resourceFailure = new RuntimeException("Ошибка при закрытии ресурса перед SessionFactory", ex);
+                }
+            }
+        }
+        beforeShutdown.clear();
+        for (SessionFactory extra : extraSessionFactories) {
+            if (!extra.isClosed()) {
+                extra.close();
+            }
+        }
+        extraDataSources.forEach(HikariDataSource::close);
         if (sessionFactory != null && !sessionFactory.isClosed()) {
             try {
                 getSessionFactory().close();
@@ -30,5 +238,103 @@ public class HibernateUtil {
                 throw new RuntimeException("Ошибка при закрытии SessionFactory", ex);
             }
         }
+        if (dataSource != null && !dataSource.isClosed()) {
+            dataSource.close();
+        }
+        if (resourceFailure != null) {
+            throw resourceFailure;
+        }
+    }
+
+    private static SessionRouter createSessionRouter(Map<String, Object> settings, SessionFactory primary) {
+        Object urls = settings.get(REPLICA_URLS);
+        if (urls == null || String.valueOf(urls).isBlank()) {
+            return SessionRouter.primaryOnly(primary);
+        }
+        List<SessionRouter.Replica> replicas = new ArrayList<>();
+        for (String url : String.valueOf(urls).split(",")) {
+            HikariDataSource replicaDataSource = createDataSource(settings, url.trim(), "-replica-" + replicas.size());
+            // Схемой управляет только основная БД, реплика получает ее через репликацию
+            SessionFactory replicaSessionFactory = buildSessionFactory(replicaDataSource, "none");
+            HikariPoolMXBean pool = replicaDataSource.getHikariPoolMXBean();
+            replicas.add(new SessionRouter.Replica(replicaSessionFactory,
+                    () -> pool.getActiveConnections() + pool.getThreadsAwaitingConnection()));
+        }
+        SessionRouter.Strategy strategy = SessionRouter.Strategy.valueOf(
+                String.valueOf(settings.getOrDefault(REPLICA_STRATEGY, "round_robin")).toUpperCase(Locale.ROOT));
+        long windowMillis = Long.parseLong(String.valueOf(
+                settings.getOrDefault(READ_YOUR_WRITES_MILLIS, DEFAULT_READ_YOUR_WRITES_MILLIS)));
+        return new SessionRouter(primary, replicas, strategy, Duration.ofMillis(windowMillis));
+    }
+
+    private static void createShards(Map<String, Object> settings) {
+        Object urls = settings.get(SHARD_URLS);
+        if (urls == null || String.valueOf(urls).isBlank()) {
+            return;
+        }
+        for (String url : String.valueOf(urls).split(",")) {
+            HikariDataSource shardDataSource = createDataSource(settings, url.trim(),
+                    "-shard-" + (shardSessionFactories.size() + 1));
+            shardSessionFactories.add(buildSessionFactory(shardDataSource, null));
+        }
+    }
+
+    private static SessionFactory buildSessionFactory(HikariDataSource extraDataSource, String schemaAction) {
+        extraDataSources.add(extraDataSource);
+        StandardServiceRegistryBuilder registryBuilder = configure();
+        if (schemaAction != null) {
+            registryBuilder.applySetting(AvailableSettings.HBM2DDL_AUTO, schemaAction);
+        } else {
+            migrate(registryBuilder.getSettings(), extraDataSource);
+        }
+        applyDataSource(registryBuilder, extraDataSource);
+        SessionFactory extraSessionFactory = new MetadataSources(registryBuilder.build())
+                .buildMetadata()
+                .buildSessionFactory();
+        extraSessionFactories.add(extraSessionFactory);
+        return extraSessionFactory;
+    }
+
+    /**
+     * Учетные данные уже переданы пулу. Если оставить их в настройках, Hibernate вызовет
+     * getConnection(user, password), который HikariCP не поддерживает.
+     */
+    private static StandardServiceRegistryBuilder applyDataSource(StandardServiceRegistryBuilder registryBuilder,
+                                                                  HikariDataSource pool) {
+        Map<String, Object> settings = registryBuilder.getSettings();
+        settings.remove(AvailableSettings.JAKARTA_JDBC_USER);
+        settings.remove(AvailableSettings.JAKARTA_JDBC_PASSWORD);
+        return registryBuilder.applySetting(AvailableSettings.JAKARTA_NON_JTA_DATASOURCE, timed(settings, pool));
+    }
+
+    private static DataSource timed(Map<String, Object> settings, DataSource pool) {
+        long thresholdMillis = Long.parseLong(String.valueOf(
+                settings.getOrDefault(SLOW_STATEMENT_MILLIS, DEFAULT_SLOW_STATEMENT_MILLIS)));
+        return thresholdMillis < 0 ? pool : new StatementTimingDataSource(pool, Duration.ofMillis(thresholdMillis));
+    }
+
+    private static Properties hikariProperties(Map<String, Object> settings) {
+        Properties poolProperties = new Properties();
+        settings.forEach((key, value) -> {
+            if (key.startsWith(HIKARI_PREFIX)) {
+                poolProperties.setProperty(key.substring(HIKARI_PREFIX.length()), String.valueOf(value));
+            }
+        });
+        return poolProperties;
+    }
+
+    private static HikariDataSource createDataSource(Map<String, Object> settings, String url, String poolSuffix) {
+        HikariConfig config = new HikariConfig(hikariProperties(settings));
+        config.setDriverClassName(String.valueOf(settings.get(AvailableSettings.JAKARTA_JDBC_DRIVER)));
+        config.setJdbcUrl(url);
+        if (config.getPoolName() != null) {
+            config.setPoolName(config.getPoolName() + poolSuffix);
+        }
+        config.setUsername(String.valueOf(settings.get(AvailableSettings.JAKARTA_JDBC_USER)));
+        config.setPassword(String.valueOf(settings.get(AvailableSettings.JAKARTA_JDBC_PASSWORD)));
+        if (poolSuffix.isEmpty()) {
+            config.setMetricsTrackerFactory(poolMetrics);
+        }
+        return new HikariDataSource(config);
     }
 }
@@ -0,0 +1,133 @@
+package utils;
+
+import exception.UserException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Locale;
+
+/**
+ * Бюджет SQL-запросов на одну операцию сервиса. Выполненные запросы считает {@link StatementTimingDataSource}
+ * в счетчике текущего потока; операция запоминает его значение в начале и сверяет разницу с бюджетом в конце.
+ * Так ловится N+1: запрос на каждый элемент списка вместо одного на пакет.
+ * <pre>
+ * try (QueryBudget.Scope ignored = QueryBudget.open("service.saveUser", 3)) {
+ *     ...
+ * }
+ * </pre>
+ * Режим задается системным свойством user.queryBudget: off | warn (по умолчанию) | fail.
+ * В режиме fail бюджет открытой операции проверяется перед каждым коммитом транзакции, поэтому превышение
+ * откатывает запись, а не сообщается об ошибке уже сохраненной операции (вызывающий повторил бы ее и создал дубликат).
+ * После коммита превышение только логируется.
+ * Запросы, выполненные в других потоках (рассылка по шардам), в бюджет операции не попадают.
+ */
+@Slf4j
+public final class QueryBudget {
+
+    public enum Mode { OFF, WARN, FAIL }
+
+    private static final ThreadLocal<long[]> STATEMENTS = ThreadLocal.withInitial(() -> new long[1]);
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+    private static volatile Mode mode = Mode.valueOf(
+            System.getProperty("user.queryBudget", "warn").toUpperCase(Locale.ROOT));
+
+    private QueryBudget() {
+    }
+
+    public static Mode mode() {
+        return mode;
+    }
+
+    public static void setMode(Mode newMode) {
+        mode = newMode;
+    }
+
+    /**
+     * Число запросов, выполненных текущим потоком с момента его запуска.
+     */
+    public static long mark() {
+        return STATEMENTS.get()[0];
+    }
+
+    public static void check(String operation, long mark, int budget) {
+        check(operation, mark, budget, mode == Mode.FAIL);
+    }
+
+    /**
+     * Открывает бюджет операции в текущем потоке; проверка — при коммите и в {@link Scope#close()}.
+     */
+    public static Scope open(String operation, int budget) {
+        Scope scope = new Scope(operation, mark(), budget, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Бюджет пакетной операции: не больше perChunk запросов на каждые chunkSize элементов и постоянная добавка.
+     */
+    public static int forBatch(int size, int chunkSize, int perChunk, int extra) {
+        int chunks = (size + chunkSize - 1) / chunkSize;
+        return chunks * perChunk + extra;
+    }
+
+    static void statementExecuted() {
+        STATEMENTS.get()[0]++;
+    }
+
+    /**
+     * Вызывается {@link StatementTimingDataSource} перед Connection.commit(): исключение не дает транзакции
+     * закоммититься, Hibernate откатывает ее.
+     */
+    static void beforeCommit() {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            return;
+        }
+        if (mode == Mode.FAIL) {
+            check(scope.operation, scope.mark, scope.budget, true);
+        }
+        for (Scope open = scope; open != null; open = open.outer) {
+            open.committed = true;
+        }
+    }
+
+    private static void check(String operation, long mark, int budget, boolean fail) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        long executed = mark() - mark;
+        if (executed <= budget) {
+            return;
+        }
+        String message = String.format("Операция %s выполнила %d SQL-запросов при бюджете %d", operation, executed, budget);
+        if (fail) {
+            throw new UserException(message);
+        }
+        log.warn(message);
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final String operation;
+        private final long mark;
+        private final int budget;
+        private final Scope outer;
+        private boolean committed;
+
+        private Scope(String operation, long mark, int budget, Scope outer) {
+            this.operation = operation;
+            this.mark = mark;
+            this.budget = budget;
+            this.outer = outer;
+        }
+
+        @Override
+        public void close() {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+            check(operation, mark, budget, mode == Mode.FAIL && !committed);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package utils;
+
+import exception.UserException;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Версионные миграции схемы вместо hbm2ddl create-drop. Скрипты V&lt;номер&gt;__&lt;описание&gt;.sql лежат
+ * в classpath и применяются по порядку; примененные записываются в schema_version вместе с контрольной суммой,
+ * и изменение уже примененного скрипта останавливает запуск.
+ * Скрипт с первой строкой "-- migration: nontransactional" выполняется без транзакции, по одному оператору, —
+ * так можно строить индексы CREATE INDEX CONCURRENTLY, не блокируя запись. Такой скрипт обязан быть
+ * идемпотентным: при сбое на середине выполненные операторы остаются, в schema_version ничего не пишется,
+ * и следующий запуск выполняет скрипт с начала. Поэтому каждому CREATE INDEX CONCURRENTLY предшествует
+ * DROP INDEX CONCURRENTLY IF EXISTS — он же убирает INVALID-индекс, оставшийся от прерванной постройки.
+ * Разбор скрипта понимает комментарии и строки в одинарных кавычках, но не $$-блоки PostgreSQL.
+ */
+@Slf4j
+public class SchemaMigrator {
+
+    public static final String DEFAULT_LOCATION = "db/migration";
+    public static final List<String> DEFAULT_SCRIPTS = List.of(
+            "V1__create_users_table.sql",
+            "V2__users_created_at_and_username_indexes.sql",
+            "V3__users_email_case_insensitive_unique.sql",
+            "V4__users_username_search_indexes.sql",
+            "V5__shard_map.sql");
+
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final String NON_TRANSACTIONAL = "-- migration: nontransactional";
+    // Несколько экземпляров приложения могут стартовать одновременно: миграции применяет только один
+    private static final long ADVISORY_LOCK_KEY = 0x7573657273L;
+    private static final Duration DEFAULT_LOCK_TIMEOUT = Duration.ofMinutes(5);
+    private static final long LOCK_RETRY_MILLIS = 500;
+
+    private final DataSource dataSource;
+    private final String location;
+    private final List<String> scripts;
+    private final Duration lockTimeout;
+
+    public SchemaMigrator(DataSource dataSource) {
+        this(dataSource, DEFAULT_LOCATION, DEFAULT_SCRIPTS);
+    }
+
+    public SchemaMigrator(DataSource dataSource, String location, List<String> scripts) {
+        this(dataSource, location, scripts, DEFAULT_LOCK_TIMEOUT);
+    }
+
+    SchemaMigrator(DataSource dataSource, String location, List<String> scripts, Duration lockTimeout) {
+        this.dataSource = dataSource;
+        this.location = location;
+        this.scripts = scripts;
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Применяет недостающие миграции и возвращает их число.
+     */
+    public int migrate() {
+        List<Migration> migrations = load();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean postgres = "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+            if (postgres) {
+                acquireLock(connection);
+            }
+            try {
+                createHistoryTable(connection);
+                Map<Integer, Long> applied = appliedChecksums(connection);
+                int count = 0;
+                for (Migration migration : migrations) {
+                    Long checksum = applied.get(migration.version());
+                    if (checksum == null) {
+                        apply(connection, migration);
+                        count++;
+                    } else if (checksum != migration.checksum()) {
+                        throw new UserException("Миграция " + migration.name() + " изменена после применения");
+                    }
+                }
+                return count;
+            } finally {
+                if (postgres) {
+                    releaseLock(connection);
+                }
+            }
+        } catch (SQLException ex) {
+            throw new UserException("Ошибка миграции схемы БД", ex);
+        }
+    }
+
+    private List<Migration> load() {
+        List<Migration> migrations = new ArrayList<>(scripts.size());
+        int previousVersion = 0;
+        for (String name : scripts) {
+            Matcher matcher = SCRIPT_NAME.matcher(name);
+            if (!matcher.matches()) {
+                throw new UserException("Некорректное имя миграции: " + name);
+            }
+            int version = Integer.parseInt(matcher.group(1));
+            if (version <= previousVersion) {
+                throw new UserException("Миграции должны идти по возрастанию версий: " + name);
+            }
+            previousVersion = version;
+            byte[] bytes = read(location + "/" + name);
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            String script = new String(bytes, StandardCharsets.UTF_8);
+            migrations.add(new Migration(version, matcher.group(2).replace('_', ' '), name, crc.getValue(),
+                    !script.stripLeading().startsWith(NON_TRANSACTIONAL), split(script)));
+        }
+        return migrations;
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        long startedAt = System.nanoTime();
+        if (migration.transactional()) {
+            connection.setAutoCommit(false);
+            try {
+                execute(connection, migration);
+                record(connection, migration, startedAt);
+                connection.commit();
+            } catch (SQLException | RuntimeException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } else {
+            try {
+                execute(connection, migration);
+            } catch (SQLException | RuntimeException ex) {
+                log.warn("Миграция {} без транзакции прервана, выполненные операторы не откатываются; "
+                        + "при следующем запуске скрипт выполнится с начала", migration.name());
+                throw ex;
+            }
+            record(connection, migration, startedAt);
+        }
+        log.info("Применена миграция {} за {} мс", migration.name(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private static void execute(Connection connection, Migration migration) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : migration.statements()) {
+                try {
+                    statement.execute(sql);
+                } catch (SQLException ex) {
+                    throw new SQLException("Миграция " + migration.name() + ": " + ex.getMessage(), ex.getSQLState(), ex);
+                }
+            }
+        }
+    }
+
+    private static void createHistoryTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS schema_version (
+                        version          INTEGER      NOT NULL PRIMARY KEY,
+                        description      VARCHAR(200) NOT NULL,
+                        checksum         BIGINT       NOT NULL,
+                        installed_at     TIMESTAMP    NOT NULL,
+                        execution_millis BIGINT       NOT NULL
+                    )""");
+        }
+    }
+
+    private static Map<Integer, Long> appliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rows.next()) {
+                applied.put(rows.getInt(1), rows.getLong(2));
+            }
+        }
+        return applied;
+    }
+
+    private static void record(Connection connection, Migration migration, long startedAt) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("""
+                INSERT INTO schema_version (version, description, checksum, installed_at, execution_millis)
+                VALUES (?, ?, ?, CURRENT_TIMESTAMP, ?)""")) {
+            insert.setInt(1, migration.version());
+            insert.setString(2, migration.description());
+            insert.setLong(3, migration.checksum());
+            insert.setLong(4, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Блокировка берется опросом pg_try_advisory_lock, а не ожиданием в pg_advisory_lock: ждущий сеанс держал бы
+     * открытый снимок, а CREATE INDEX CONCURRENTLY у владельца блокировки ждет завершения всех снимков — взаимная
+     * блокировка. Между попытками у соединения нет открытого запроса.
+     */
+    private void acquireLock(Connection connection) throws SQLException {
+        long deadline = System.nanoTime() + lockTimeout.toNanos();
+        boolean waiting = false;
+        while (!tryLock(connection)) {
+            if (System.nanoTime() - deadline >= 0) {
+                throw new UserException("Не удалось дождаться блокировки миграций за " + lockTimeout.toSeconds() + " с");
+            }
+            if (!waiting) {
+                log.info("Миграции применяет другой экземпляр, ждем блокировку");
+                waiting = true;
+            }
+            try {
+                Thread.sleep(LOCK_RETRY_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new UserException("Ожидание блокировки миграций прервано", ex);
+            }
+        }
+    }
+
+    private static boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement lock = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            lock.setLong(1, ADVISORY_LOCK_KEY);
+            try (ResultSet result = lock.executeQuery()) {
+                return result.next() && result.getBoolean(1);
+            }
+        }
+    }
+
+    private static void releaseLock(Connection connection) throws SQLException {
+        try (PreparedStatement unlock = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            unlock.setLong(1, ADVISORY_LOCK_KEY);
+            unlock.execute();
+        }
+    }
+
+    private static byte[] read(String resource) {
+        try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new UserException("Не найден скрипт миграции: " + resource);
+            }
+            return in.readAllBytes();
+        } catch (IOException ex) {
+            throw new UserException("Ошибка чтения скрипта миграции: " + resource, ex);
+        }
+    }
+
+    /**
+     * Делит скрипт на операторы по ';' вне строк и комментариев; комментарии отбрасываются.
+     */
+    static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int length = script.length();
+        int i = 0;
+        while (i < length) {
+            char c = script.charAt(i);
+            if (c == '-' && i + 1 < length && script.charAt(i + 1) == '-') {
+                while (i < length && script.charAt(i) != '\n') {
+                    i++;
+                }
+                continue;
+            }
+            if (c == '/' && i + 1 < length && script.charAt(i + 1) == '*') {
+                int end = script.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                continue;
+            }
+            if (c == '\'') {
+                int end = i + 1;
+                while (end < length && (script.charAt(end) != '\'' || end + 1 < length && script.charAt(end + 1) == '\'')) {
+                    end += script.charAt(end) == '\'' ? 2 : 1;
+                }
+                current.append(script, i, Math.min(end + 1, length));
+                i = end + 1;
+                continue;
+            }
+            if (c == ';') {
+                addStatement(statements, current);
+            } else {
+                current.append(c);
+            }
+            i++;
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String sql = current.toString().strip();
+        if (!sql.isEmpty()) {
+            statements.add(sql);
+        }
+        current.setLength(0);
+    }
+
+    private record Migration(int version, String description, String name, long checksum, boolean transactional,
+                             List<String> statements) {
+    }
+}
@@ -0,0 +1,129 @@
+package utils;
+
+import org.hibernate.SessionFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Маршрутизация сессий: запись всегда идет в основную БД, чтение — в реплики.
+ * Реплика выбирается по кругу или по наименьшей нагрузке (активные соединения + ожидающие потоки пула).
+ * Чтобы пользователь сразу видел свою запись, после записи в течение окна readYourWrites на основную БД
+ * уходят все чтения этого потока, а также чтения записанного ключа (ID или email) из любого потока.
+ */
+public final class SessionRouter {
+
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    public enum Strategy {
+        ROUND_ROBIN,
+        LEAST_LOADED
+    }
+
+    public record Replica(SessionFactory sessionFactory, IntSupplier load) {
+    }
+
+    private final SessionFactory primary;
+    private final List<Replica> replicas;
+    private final Strategy strategy;
+    private final long windowNanos;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ConcurrentHashMap<Object, Long> recentWrites = new ConcurrentHashMap<>();
+    private final ThreadLocal<long[]> lastThreadWrite = ThreadLocal.withInitial(() -> new long[]{System.nanoTime()});
+
+    public SessionRouter(SessionFactory primary, List<Replica> replicas, Strategy strategy, Duration readYourWrites) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.strategy = strategy;
+        this.windowNanos = readYourWrites.toNanos();
+    }
+
+    public static SessionRouter primaryOnly(SessionFactory primary) {
+        return new SessionRouter(primary, List.of(), Strategy.ROUND_ROBIN, Duration.ZERO);
+    }
+
+    public SessionFactory primary() {
+        return primary;
+    }
+
+    public List<Replica> replicas() {
+        return replicas;
+    }
+
+    public SessionFactory forWrite() {
+        return primary;
+    }
+
+    public SessionFactory forRead() {
+        if (replicas.isEmpty() || wroteRecently()) {
+            return primary;
+        }
+        return selectReplica();
+    }
+
+    /**
+     * Чтение по ключу: если этот ID или email недавно записывался, читаем с основной БД.
+     */
+    public SessionFactory forRead(Object key) {
+        if (replicas.isEmpty() || wroteRecently()) {
+            return primary;
+        }
+        if (key != null) {
+            Long deadline = recentWrites.get(key);
+            if (deadline != null) {
+                if (System.nanoTime() - deadline < 0) {
+                    return primary;
+                }
+                recentWrites.remove(key, deadline);
+            }
+        }
+        return selectReplica();
+    }
+
+    public void markWritten(Object... keys) {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + windowNanos;
+        lastThreadWrite.get()[0] = deadline;
+        for (Object key : keys) {
+            if (key != null) {
+                recentWrites.put(key, deadline);
+            }
+        }
+        if (recentWrites.size() > PURGE_THRESHOLD) {
+            long now = System.nanoTime();
+            recentWrites.values().removeIf(expiresAt -> now - expiresAt >= 0);
+        }
+    }
+
+    private boolean wroteRecently() {
+        long deadline = lastThreadWrite.get()[0];
+        return System.nanoTime() - deadline < 0;
+    }
+
+    private SessionFactory selectReplica() {
+        if (replicas.size() == 1) {
+            return replicas.getFirst().sessionFactory();
+        }
+        if (strategy == Strategy.ROUND_ROBIN) {
+            return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size())).sessionFactory();
+        }
+        // При равной нагрузке начинаем с разных реплик, чтобы не нагружать всегда первую
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        Replica best = null;
+        int bestLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            int load = replica.load().getAsInt();
+            if (load < bestLoad) {
+                best = replica;
+                bestLoad = load;
+            }
+        }
+        return best.sessionFactory();
+    }
+}
@@ -0,0 +1,241 @@
+package utils;
+
+import lombok.extern.slf4j.Slf4j;
+import metrics.MetricsRegistry;
+import metrics.OperationTimer;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Обертка над пулом соединений, которая замеряет каждый выполненный SQL-запрос. Время пишется в таймер
+ * "jdbc.statement", запрос засчитывается в {@link QueryBudget} текущего потока, а запросы дольше порога
+ * логируются с формой параметров: типы и длины строк, без самих значений. Перед коммитом сверяется
+ * бюджет открытой операции.
+ * Заменяет show_sql и DEBUG-логирование org.hibernate.SQL, которые синхронно пишут каждый запрос.
+ */
+@Slf4j
+public final class StatementTimingDataSource implements DataSource {
+
+    private static final OperationTimer STATEMENT_TIMER = MetricsRegistry.global().timer("jdbc.statement");
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+    private static final Object NULL_BIND = new Object();
+    private static final long NANOS_PER_MILLI = 1_000_000;
+
+    private final DataSource delegate;
+    private final long slowThresholdNanos;
+
+    public StatementTimingDataSource(DataSource delegate, Duration slowThreshold) {
+        this.delegate = delegate;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(delegate.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(delegate.getConnection(username, password));
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+    /**
+     * Форма параметров для лога: "[Long, String(12), null]". Значения не выводятся — в них персональные данные.
+     */
+    static String bindShape(Object[] binds, int count) {
+        StringBuilder shape = new StringBuilder("[");
+        for (int i = 1; i <= count; i++) {
+            if (i > 1) {
+                shape.append(", ");
+            }
+            Object value = i < binds.length ? binds[i] : null;
+            if (value == null) {
+                shape.append('?');
+            } else if (value == NULL_BIND) {
+                shape.append("null");
+            } else if (value instanceof CharSequence text) {
+                shape.append("String(").append(text.length()).append(')');
+            } else if (value instanceof byte[] bytes) {
+                shape.append("byte[").append(bytes.length).append(']');
+            } else {
+                shape.append(value.getClass().getSimpleName());
+            }
+        }
+        return shape.append(']').toString();
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(StatementTimingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static boolean isIdentityMethod(Method method) {
+        return method.getDeclaringClass() == Object.class && !"toString".equals(method.getName());
+    }
+
+    private static Object identity(Object proxy, Method method, Object[] args) {
+        return "equals".equals(method.getName()) ? proxy == args[0] : System.identityHashCode(proxy);
+    }
+
+    private static Object invokeDelegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isIdentityMethod(method)) {
+                return identity(proxy, method, args);
+            }
+            if ("commit".equals(method.getName())) {
+                QueryBudget.beforeCommit();
+            }
+            Object result = invokeDelegate(connection, method, args);
+            if (result instanceof Statement statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                return Proxy.newProxyInstance(StatementTimingDataSource.class.getClassLoader(),
+                        new Class<?>[]{method.getReturnType()}, new StatementHandler(statement, sql, proxy));
+            }
+            return result;
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private final Object connectionProxy;
+        private String sql;
+        private Object[] binds = new Object[8];
+        private int bindCount;
+        private int batchRows;
+
+        private StatementHandler(Statement statement, String sql, Object connectionProxy) {
+            this.statement = statement;
+            this.sql = sql;
+            this.connectionProxy = connectionProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isIdentityMethod(method)) {
+                return identity(proxy, method, args);
+            }
+            String name = method.getName();
+            if (EXECUTE_METHODS.contains(name)) {
+                return execute(method, args, name);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bind(index, "setNull".equals(name) || args[1] == null ? NULL_BIND : args[1]);
+            } else if ("clearParameters".equals(name)) {
+                Arrays.fill(binds, null);
+                bindCount = 0;
+            } else if ("addBatch".equals(name)) {
+                batchRows++;
+                if (args != null && args.length == 1 && args[0] instanceof String text) {
+                    sql = text;
+                }
+            } else if ("getConnection".equals(name)) {
+                return connectionProxy;
+            }
+            return invokeDelegate(statement, method, args);
+        }
+
+        private Object execute(Method method, Object[] args, String name) throws Throwable {
+            String executed = args != null && args.length > 0 && args[0] instanceof String text ? text : sql;
+            long start = System.nanoTime();
+            try {
+                return invokeDelegate(statement, method, args);
+            } finally {
+                STATEMENT_TIMER.stop(start);
+                QueryBudget.statementExecuted();
+                long elapsed = System.nanoTime() - start;
+                boolean batch = name.endsWith("Batch");
+                if (elapsed >= slowThresholdNanos) {
+                    logSlow(executed, elapsed, batch);
+                }
+                if (batch) {
+                    batchRows = 0;
+                }
+            }
+        }
+
+        private void logSlow(String executed, long elapsedNanos, boolean batch) {
+            String shape = bindShape(binds, bindCount);
+            if (batch) {
+                log.warn("Медленный SQL-запрос: {} мс, пакет из {} строк, {} параметры {}",
+                        elapsedNanos / NANOS_PER_MILLI, batchRows, executed, shape);
+            } else {
+                log.warn("Медленный SQL-запрос: {} мс, {} параметры {}",
+                        elapsedNanos / NANOS_PER_MILLI, executed, shape);
+            }
+        }
+
+        private void bind(int index, Object value) {
+            if (index >= binds.length) {
+                binds = Arrays.copyOf(binds, Math.max(index + 1, binds.length * 2));
+            }
+            binds[index] = value;
+            bindCount = Math.max(bindCount, index);
+        }
+    }
+}
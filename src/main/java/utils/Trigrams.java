@@ -0,0 +1,80 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Триграммы строки по правилам pg_trgm: регистр не учитывается, слова — последовательности букв и цифр,
+ * каждое слово дополняется двумя пробелами спереди и одним сзади. Сходство — доля общих триграмм
+ * от объединения, как у similarity() и оператора % в PostgreSQL, поэтому хранилище в памяти
+ * и шардированный DAO ранжируют результаты так же, как БД.
+ * Триграмма упакована в long (три char по 16 бит), набор — отсортированный массив без повторов.
+ */
+public final class Trigrams {
+
+    // Значение pg_trgm.similarity_threshold по умолчанию
+    public static final double DEFAULT_THRESHOLD = 0.3;
+
+    private Trigrams() {
+    }
+
+    public static long[] of(String text) {
+        int length = text.length();
+        // Слово из n символов дает n + 1 триграмму
+        long[] trigrams = new long[2 * length + 1];
+        int count = 0;
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (start == i) {
+                break;
+            }
+            char first = ' ';
+            char second = ' ';
+            for (int j = start; j <= i; j++) {
+                char third = j < i ? Character.toLowerCase(text.charAt(j)) : ' ';
+                trigrams[count++] = (long) first << 32 | (long) second << 16 | third;
+                first = second;
+                second = third;
+            }
+        }
+        Arrays.sort(trigrams, 0, count);
+        int unique = 0;
+        for (int j = 0; j < count; j++) {
+            if (unique == 0 || trigrams[unique - 1] != trigrams[j]) {
+                trigrams[unique++] = trigrams[j];
+            }
+        }
+        return Arrays.copyOf(trigrams, unique);
+    }
+
+    public static double similarity(long[] left, long[] right) {
+        if (left.length == 0 || right.length == 0) {
+            return 0;
+        }
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                shared++;
+                i++;
+                j++;
+            }
+        }
+        return (double) shared / (left.length + right.length - shared);
+    }
+
+    public static double similarity(String left, String right) {
+        return similarity(of(left), of(right));
+    }
+}
@@ -0,0 +1,224 @@
+package utils;
+
+import entity.User;
+import exception.UserException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+public final class UserJson {
+
+    private UserJson() {
+    }
+
+    public static void write(User user, Appendable out) {
+        try {
+            out.append("{\"id\":").append(String.valueOf(user.getId()));
+            out.append(",\"username\":");
+            writeString(user.getUsername(), out);
+            out.append(",\"email\":");
+            writeString(user.getEmail(), out);
+            out.append(",\"age\":").append(String.valueOf(user.getAge()));
+            out.append(",\"createdAt\":");
+            writeString(user.getCreatedAt() == null ? null : user.getCreatedAt().toString(), out);
+            out.append('}');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public static String toJson(User user) {
+        StringBuilder sb = new StringBuilder(128);
+        write(user, sb);
+        return sb.toString();
+    }
+
+    public static User parse(CharSequence json) {
+        return new Reader(json).readUser();
+    }
+
+    private static void writeString(String value, Appendable out) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    private static final class Reader {
+        private final CharSequence json;
+        private int pos;
+
+        private Reader(CharSequence json) {
+            this.json = json;
+        }
+
+        private User readUser() {
+            User user = new User();
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return user;
+            }
+            while (true) {
+                skipWhitespace();
+                String field = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                switch (field) {
+                    case "id" -> user.setId(readLong());
+                    case "username" -> user.setUsername(readString());
+                    case "email" -> user.setEmail(readString());
+                    case "age" -> {
+                        Long age = readLong();
+                        user.setAge(age == null ? null : Math.toIntExact(age));
+                    }
+                    default -> skipValue();
+                }
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw error("ожидалась ',' или '}'");
+                }
+            }
+            skipWhitespace();
+            if (pos != json.length()) {
+                throw error("лишние символы после объекта");
+            }
+            return user;
+        }
+
+        private String readString() {
+            if (tryLiteral("null")) {
+                return null;
+            }
+            expect('"');
+            StringBuilder sb = null;
+            int start = pos;
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb == null ? json.subSequence(start, pos - 1).toString() : sb.toString();
+                }
+                if (c == '\\') {
+                    if (sb == null) {
+                        sb = new StringBuilder().append(json, start, pos - 1);
+                    }
+                    char escaped = next();
+                    switch (escaped) {
+                        case '"', '\\', '/' -> sb.append(escaped);
+                        case 'n' -> sb.append('\n');
+                        case 'r' -> sb.append('\r');
+                        case 't' -> sb.append('\t');
+                        case 'b' -> sb.append('\b');
+                        case 'f' -> sb.append('\f');
+                        case 'u' -> {
+                            if (pos + 4 > json.length()) {
+                                throw error("обрезанная escape-последовательность");
+                            }
+                            sb.append((char) Integer.parseInt(json.subSequence(pos, pos + 4).toString(), 16));
+                            pos += 4;
+                        }
+                        default -> throw error("неизвестная escape-последовательность");
+                    }
+                } else if (sb != null) {
+                    sb.append(c);
+                }
+            }
+        }
+
+        private Long readLong() {
+            if (tryLiteral("null")) {
+                return null;
+            }
+            int start = pos;
+            if (peek() == '-') {
+                pos++;
+            }
+            while (pos < json.length() && Character.isDigit(json.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("ожидалось число");
+            }
+            return Long.parseLong(json, start, pos, 10);
+        }
+
+        private void skipValue() {
+            char c = peek();
+            if (c == '"') {
+                readString();
+                return;
+            }
+            if (c == '{' || c == '[') {
+                throw error("вложенные значения не поддерживаются");
+            }
+            while (pos < json.length() && ",}".indexOf(json.charAt(pos)) < 0
+                    && !Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean tryLiteral(String literal) {
+            int end = pos + literal.length();
+            if (end <= json.length() && literal.contentEquals(json.subSequence(pos, end))) {
+                pos = end;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= json.length()) {
+                throw error("неожиданный конец строки");
+            }
+            return json.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("ожидался символ '" + expected + "'");
+            }
+        }
+
+        private UserException error(String reason) {
+            return new UserException("Некорректный JSON (позиция " + pos + "): " + reason);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+-- Таблица пользователей в том виде, в котором ее раньше создавал hbm2ddl.
+-- IF NOT EXISTS: БД, созданная прежним create-drop, принимается как есть.
+-- Шаг последовательности равен allocationSize сущности User: Hibernate выдает ID пачками по 50.
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS users (
+    id         BIGINT       NOT NULL,
+    username   VARCHAR(15)  NOT NULL,
+    email      VARCHAR(25)  NOT NULL,
+    age        INTEGER      NOT NULL,
+    created_at TIMESTAMP(6),
+    CONSTRAINT users_pkey PRIMARY KEY (id),
+    CONSTRAINT users_email_key UNIQUE (email)
+);
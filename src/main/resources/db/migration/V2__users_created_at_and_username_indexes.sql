@@ -0,0 +1,10 @@
+-- migration: nontransactional
+-- CONCURRENTLY не блокирует запись в таблицу, но не работает внутри транзакции.
+-- Если прошлая попытка прервалась, от нее мог остаться INVALID-индекс: удаляем и строим заново.
+
+-- Keyset-пагинация findCreatedAfter: ORDER BY created_at, id
+DROP INDEX CONCURRENTLY IF EXISTS users_created_at_id_idx;
+CREATE INDEX CONCURRENTLY users_created_at_id_idx ON users (created_at, id);
+
+DROP INDEX CONCURRENTLY IF EXISTS users_username_idx;
+CREATE INDEX CONCURRENTLY users_username_idx ON users (username);
@@ -0,0 +1,5 @@
+-- migration: nontransactional
+-- Ivan@Mail.ru и ivan@mail.ru — один адрес. Если в таблице уже есть такие дубликаты,
+-- миграция упадет, и их нужно разобрать вручную до следующего запуска.
+DROP INDEX CONCURRENTLY IF EXISTS users_email_lower_key;
+CREATE UNIQUE INDEX CONCURRENTLY users_email_lower_key ON users (lower(email));
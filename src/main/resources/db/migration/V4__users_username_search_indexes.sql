@@ -0,0 +1,13 @@
+-- migration: nontransactional
+-- Поиск по имени: префиксный searchByUsername и нечеткий searchBySimilarUsername.
+-- CREATE EXTENSION требует прав владельца БД; без них расширение pg_trgm ставит администратор заранее.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- LIKE 'prefix%' ... ORDER BY username, id LIMIT n: в колляции "C" все имена с префиксом лежат в индексе подряд
+-- и уже в нужном порядке, поэтому чтение останавливается на n-й строке, сколько бы имен ни подходило
+DROP INDEX CONCURRENTLY IF EXISTS users_username_prefix_idx;
+CREATE INDEX CONCURRENTLY users_username_prefix_idx ON users (username COLLATE "C", id);
+
+-- username % :query ORDER BY username <-> :query: GiST, в отличие от GIN, отдает строки по возрастанию расстояния
+DROP INDEX CONCURRENTLY IF EXISTS users_username_trgm_idx;
+CREATE INDEX CONCURRENTLY users_username_trgm_idx ON users USING gist (username gist_trgm_ops);
@@ -0,0 +1,11 @@
+-- Карта диапазонов ID -> шард (текстовый вид ShardRanges) и диапазон, замороженный на время переноса.
+-- Копия лежит в каждом шарде: узлы читают карту из основной БД, а запись в шард сверяет ID с копией
+-- этого шарда в своей же транзакции. Строка одна, ее вставляет первый узел, запущенный с шардами.
+CREATE TABLE IF NOT EXISTS shard_map (
+    id          SMALLINT PRIMARY KEY CHECK (id = 1),
+    version     BIGINT NOT NULL,
+    ranges      TEXT   NOT NULL,
+    frozen_from BIGINT,
+    frozen_to   BIGINT,
+    CHECK ((frozen_from IS NULL) = (frozen_to IS NULL))
+);
@@ -0,0 +1,189 @@
+package api;
+
+import dao.UserDao;
+import entity.User;
+import exception.DuplicateEmailException;
+import exception.UserException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import service.UserService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserHttpServerTest {
+
+    @Mock
+    private UserDao<User, Long> userDao;
+
+    private UserHttpServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        HttpServerOptions options = new HttpServerOptions(0, 64, 1024, 100, 30, 100);
+        server = new UserHttpServer(new UserService(userDao), options);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        client.close();
+    }
+
+    @Test
+    @DisplayName("GET /users/{id}: возвращает пользователя в JSON")
+    void getUser_shouldReturnJson() throws Exception {
+        when(userDao.findById(1L)).thenReturn(Optional.of(createUser(1L)));
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/users/1")).GET());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"id\":1,\"username\":\"Arslan\",\"email\":\"ismailov@yandex.ru\",\"age\":30,\"createdAt\":null}",
+                response.body());
+    }
+
+    @Test
+    @DisplayName("GET /users/{id}: отвечает 404, если пользователь не найден")
+    void getUser_shouldReturn404_whenMissing() throws Exception {
+        when(userDao.findById(2L)).thenReturn(Optional.empty());
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/users/2")).GET());
+
+        assertEquals(404, response.statusCode());
+    }
+
+    @Test
+    @DisplayName("GET /users: отдает страницу по курсору")
+    void listUsers_shouldStreamPage() throws Exception {
+        when(userDao.findAfterId(10L, 2)).thenReturn(List.of(createUser(11L), createUser(12L)));
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/users?afterId=10&size=2")).GET());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("[{\"id\":11,"));
+        assertTrue(response.body().contains("},{\"id\":12,"));
+    }
+
+    @Test
+    @DisplayName("POST /users: 400 для невалидного пользователя, DAO не вызывается")
+    void createUser_shouldReturn400_whenInvalid() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/users"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"Arslan\",\"email\":\"bad\",\"age\":30}")));
+
+        assertEquals(400, response.statusCode());
+        assertTrue(response.body().contains("Некорректный адрес электронной почты"));
+        verifyNoInteractions(userDao);
+    }
+
+    @Test
+    @DisplayName("POST /users: занятый email — 409, нарушение ограничения таблицы — 400, прочие ошибки БД — 500")
+    void createUser_shouldMapDatabaseErrorsToStatus() throws Exception {
+        when(userDao.create(any(User.class)))
+                .thenThrow(new UserException("Ошибка при сохранении пользователя", new SQLException("duplicate key", "23505")))
+                .thenThrow(new DuplicateEmailException("Ошибка при сохранении пользователя: email уже занят: ismailov@yandex.ru"))
+                .thenThrow(new UserException("Ошибка при сохранении пользователя", new SQLException("null value", "23502")))
+                .thenThrow(new UserException("Ошибка при сохранении пользователя", new SQLException("connection refused", "08001")));
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri("/users"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"Arslan\",\"email\":\"ismailov@yandex.ru\",\"age\":30}"));
+
+        assertEquals(409, send(request).statusCode());
+        assertEquals(409, send(request).statusCode());
+        assertEquals(400, send(request).statusCode());
+        assertEquals(500, send(request).statusCode());
+    }
+
+    @Test
+    @DisplayName("GET /users: ошибка после отправки заголовков обрывает ответ, а не шлет заголовки второй раз")
+    void listUsers_shouldCutResponse_whenFailingAfterHeaders() throws Exception {
+        List<User> failing = new AbstractList<>() {
+            @Override
+            public User get(int index) {
+                if (index == 1) {
+                    throw new UserException("Ошибка при чтении пользователей", new IllegalStateException());
+                }
+                return createUser(11L);
+            }
+
+            @Override
+            public int size() {
+                return 2;
+            }
+        };
+        when(userDao.findAfterId(10L, 2)).thenReturn(failing);
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/users?afterId=10&size=2")).GET());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("[{\"id\":11,"));
+        assertFalse(response.body().endsWith("]"));
+    }
+
+    @Test
+    @DisplayName("POST /users: 413, если тело больше лимита")
+    void createUser_shouldReturn413_whenBodyTooLarge() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/users"))
+                .POST(HttpRequest.BodyPublishers.ofString("x".repeat(2048))));
+
+        assertEquals(413, response.statusCode());
+        verifyNoInteractions(userDao);
+    }
+
+    @Test
+    @DisplayName("DELETE /users/{id}: 204 при удалении и 404 для отсутствующего")
+    void deleteUser_shouldMapResultToStatus() throws Exception {
+        when(userDao.delete(1L)).thenReturn(true);
+        when(userDao.delete(2L)).thenReturn(false);
+
+        assertEquals(204, send(HttpRequest.newBuilder(uri("/users/1")).DELETE()).statusCode());
+        assertEquals(404, send(HttpRequest.newBuilder(uri("/users/2")).DELETE()).statusCode());
+    }
+
+    @Test
+    @DisplayName("PUT /users/{id}: берет ID из пути")
+    void updateUser_shouldUseIdFromPath() throws Exception {
+        when(userDao.updateIfExists(any(User.class))).thenReturn(true);
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/users/5"))
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"id\":99,\"username\":\"Arslan\",\"email\":\"ismailov@yandex.ru\",\"age\":31}")));
+
+        assertEquals(200, response.statusCode());
+        verify(userDao).updateIfExists(argThat(user -> user.getId() == 5L && user.getAge() == 31));
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.port() + path);
+    }
+
+    private User createUser(Long id) {
+        return User.builder()
+                .id(id)
+                .username("Arslan")
+                .email("ismailov@yandex.ru")
+                .age(30)
+                .build();
+    }
+}
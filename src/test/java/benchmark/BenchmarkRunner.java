@@ -0,0 +1,41 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Запускает JMH-бенчмарки для каждого количества потоков и сохраняет результаты в JSON,
+ * чтобы их можно было сравнивать между коммитами.
+ * Аргументы: регулярное выражение бенчмарков, список потоков через запятую, каталог результатов.
+ * С -Dbenchmark.gc=true дополнительно включается GC-профайлер (скорость аллокаций на операцию).
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+        String[] threadCounts = (args.length > 1 ? args[1] : "1").split(",");
+        Path outputDir = Path.of(args.length > 2 ? args[2] : "target/jmh");
+        Files.createDirectories(outputDir);
+
+        for (String threads : threadCounts) {
+            int threadCount = Integer.parseInt(threads.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(outputDir.resolve("jmh-threads-" + threadCount + ".json").toString());
+            if (Boolean.getBoolean("benchmark.gc")) {
+                options.addProfiler(GCProfiler.class);
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
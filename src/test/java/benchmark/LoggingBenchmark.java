@@ -0,0 +1,122 @@
+package benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.util.FileSize;
+import entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность вывода списка пользователей построчно:
+ * sync — прежняя схема, синхронный FILE с flush после каждой строки;
+ * async — AsyncAppender перед FILE с буферизованной записью (как в logback.xml);
+ * writer — буферизованный PrintWriter, как теперь выводит список меню.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss} %-5level [%thread] %logger{36} - %msg%n";
+
+    @Param({"sync", "async", "writer"})
+    public String mode;
+
+    private final User user = User.builder()
+            .id(42L)
+            .username("Arslan")
+            .email("ismailov@yandex.ru")
+            .age(30)
+            .createdAt(LocalDateTime.of(2025, 1, 1, 12, 0))
+            .build();
+
+    private Path logFile;
+    private LoggerContext context;
+    private Logger logger;
+    private PrintWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        logFile = Files.createTempFile("logging-benchmark", ".log");
+        if ("writer".equals(mode)) {
+            writer = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(Files.newOutputStream(logFile), StandardCharsets.UTF_8), 64 * 1024));
+            return;
+        }
+        context = new LoggerContext();
+        boolean async = "async".equals(mode);
+        Appender<ILoggingEvent> appender = fileAppender(!async);
+        if (async) {
+            AsyncAppender asyncAppender = new AsyncAppender();
+            asyncAppender.setContext(context);
+            asyncAppender.setQueueSize(8192);
+            asyncAppender.addAppender(appender);
+            asyncAppender.start();
+            appender = asyncAppender;
+        }
+        logger = context.getLogger("benchmark");
+        logger.setAdditive(false);
+        logger.addAppender(appender);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+        if (context != null) {
+            context.stop();
+        }
+        Files.deleteIfExists(logFile);
+    }
+
+    @Benchmark
+    public void listUser() {
+        if (writer != null) {
+            writer.append(String.valueOf(user.getId())).append(" | ")
+                    .append(user.getUsername()).append(" | ")
+                    .append(user.getEmail()).append(" | ")
+                    .append(String.valueOf(user.getAge())).append(" | ")
+                    .append(String.valueOf(user.getCreatedAt()))
+                    .println();
+        } else {
+            logger.info("{}", user);
+        }
+    }
+
+    private FileAppender<ILoggingEvent> fileAppender(boolean immediateFlush) {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+
+        FileAppender<ILoggingEvent> appender = new FileAppender<>();
+        appender.setContext(context);
+        appender.setFile(logFile.toString());
+        appender.setEncoder(encoder);
+        appender.setImmediateFlush(immediateFlush);
+        if (!immediateFlush) {
+            appender.setBufferSize(FileSize.valueOf("256KB"));
+        }
+        appender.start();
+        return appender;
+    }
+}
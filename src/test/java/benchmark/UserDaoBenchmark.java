@@ -0,0 +1,129 @@
+package benchmark;
+
+import dao.InMemoryUserDao;
+import dao.UserDao;
+import dao.UserDaoImpl;
+import entity.User;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import testutils.HibernateUtilForBenchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserDaoBenchmark {
+
+    private static final int POPULATE_BATCH = 1_000;
+
+    @Param({"1000", "10000", "100000"})
+    private int tableSize;
+
+    @Param({"h2", "memory"})
+    private String engine;
+
+    private SessionFactory sessionFactory;
+    private UserDao<User, Long> userDao;
+    private final AtomicLong emailSequence = new AtomicLong();
+    private long minId;
+    private long maxId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("memory".equals(engine)) {
+            userDao = new InMemoryUserDao();
+        } else {
+            sessionFactory = HibernateUtilForBenchmarks.openInMemory("dao_bench_" + tableSize);
+            userDao = new UserDaoImpl(sessionFactory);
+        }
+
+        List<User> batch = new ArrayList<>(POPULATE_BATCH);
+        for (int i = 0; i < tableSize; i++) {
+            batch.add(newUser());
+            if (batch.size() == POPULATE_BATCH) {
+                userDao.createAll(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            userDao.createAll(batch);
+        }
+        minId = userDao.findMinId().orElseThrow();
+        maxId = userDao.findMaxId().orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Benchmark
+    public void findById(Blackhole blackhole) {
+        blackhole.consume(userDao.findById(randomId()));
+    }
+
+    @Benchmark
+    public void findAll(Blackhole blackhole) {
+        blackhole.consume(userDao.findAll());
+    }
+
+    @Benchmark
+    public boolean create() {
+        return userDao.create(newUser());
+    }
+
+    @Benchmark
+    public boolean update() {
+        long id = randomId();
+        return userDao.update(User.builder()
+                .id(id)
+                .username("upd" + (id % 1000))
+                .email("seed" + id + "@bench.io")
+                .age(30)
+                .build());
+    }
+
+    @Benchmark
+    public boolean delete(DeleteTarget target) {
+        return userDao.delete(target.id);
+    }
+
+    /**
+     * Перед каждым вызовом delete создает отдельную строку, чтобы удаление всегда находило запись.
+     */
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+        private long id;
+
+        @Setup(Level.Invocation)
+        public void prepare(UserDaoBenchmark benchmark) {
+            User user = benchmark.newUser();
+            benchmark.userDao.create(user);
+            id = user.getId();
+        }
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(minId, maxId + 1);
+    }
+
+    private User newUser() {
+        long n = emailSequence.incrementAndGet();
+        return User.builder()
+                .username("bench" + (n % 100_000))
+                .email("seed" + n + "@bench.io")
+                .age(18 + (int) (n % 60))
+                .build();
+    }
+}
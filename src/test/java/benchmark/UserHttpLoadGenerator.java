@@ -0,0 +1,124 @@
+package benchmark;
+
+import api.HttpServerOptions;
+import api.UserHttpServer;
+import dao.UserDaoImpl;
+import entity.User;
+import org.hibernate.SessionFactory;
+import service.UserService;
+import testutils.HibernateUtilForBenchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный нагрузочный прогон HTTP API на H2: поднимает сервер, заполняет таблицу и отправляет смесь
+ * запросов (80% GET по ID, 10% страница списка, 10% создание) с заданной параллельностью.
+ * Печатает p50/p99 задержки и запросы в секунду.
+ * Аргументы: число запросов (50000), параллельность (256), размер таблицы (10000).
+ */
+public class UserHttpLoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int tableSize = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        try (SessionFactory sessionFactory = HibernateUtilForBenchmarks.openInMemory("http_load");
+             UserHttpServer server = new UserHttpServer(new UserService(new UserDaoImpl(sessionFactory)),
+                     HttpServerOptions.fromSystemProperties().withPort(0));
+             HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build()) {
+            UserDaoImpl seedDao = new UserDaoImpl(sessionFactory);
+            List<User> seed = new ArrayList<>(tableSize);
+            for (int i = 0; i < tableSize; i++) {
+                seed.add(User.builder().username("load" + i).email("load" + i + "@bench.io").age(30).build());
+            }
+            seedDao.createAll(seed);
+            long minId = seedDao.findMinId().orElseThrow();
+            long maxId = seedDao.findMaxId().orElseThrow();
+
+            server.start();
+            String base = "http://localhost:" + server.port() + "/users";
+
+            run(client, base, Math.min(requests, 5_000), concurrency, minId, maxId, new AtomicLong());
+            long[] latencies = new long[requests];
+            long started = System.nanoTime();
+            int errors = run(client, base, requests, concurrency, minId, maxId, new AtomicLong(1_000_000), latencies);
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            Arrays.sort(latencies);
+            System.out.printf("Запросов: %d, параллельность: %d, ошибок: %d%n", requests, concurrency, errors);
+            System.out.printf("p50: %.2f мс, p99: %.2f мс, max: %.2f мс%n",
+                    percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                    latencies[latencies.length - 1] / 1e6);
+            System.out.printf("Пропускная способность: %.0f запросов/с%n", requests / seconds);
+        }
+    }
+
+    private static void run(HttpClient client, String base, int requests, int concurrency,
+                            long minId, long maxId, AtomicLong emailSequence) throws InterruptedException {
+        run(client, base, requests, concurrency, minId, maxId, emailSequence, new long[requests]);
+    }
+
+    private static int run(HttpClient client, String base, int requests, int concurrency, long minId, long maxId,
+                           AtomicLong emailSequence, long[] latencies) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger errors = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                inFlight.acquire();
+                int index = i;
+                executor.execute(() -> {
+                    try {
+                        HttpRequest request = nextRequest(base, minId, maxId, emailSequence);
+                        long start = System.nanoTime();
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        latencies[index] = System.nanoTime() - start;
+                        if (response.statusCode() >= 500) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception ex) {
+                        errors.incrementAndGet();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        return errors.get();
+    }
+
+    private static HttpRequest nextRequest(String base, long minId, long maxId, AtomicLong emailSequence) {
+        int roll = ThreadLocalRandom.current().nextInt(100);
+        if (roll < 80) {
+            long id = ThreadLocalRandom.current().nextLong(minId, maxId + 1);
+            return HttpRequest.newBuilder(URI.create(base + "/" + id)).GET().build();
+        }
+        if (roll < 90) {
+            long afterId = ThreadLocalRandom.current().nextLong(minId, maxId + 1);
+            return HttpRequest.newBuilder(URI.create(base + "?afterId=" + afterId + "&size=20")).GET().build();
+        }
+        long n = emailSequence.incrementAndGet();
+        String body = "{\"username\":\"new" + (n % 100_000) + "\",\"email\":\"n" + n + "@bench.io\",\"age\":25}";
+        return HttpRequest.newBuilder(URI.create(base))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,47 @@
+package benchmark;
+
+import entity.User;
+import exception.UserException;
+import org.openjdk.jmh.annotations.*;
+import service.UserService;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserServiceBenchmark {
+
+    private final UserService userService = new UserService(null);
+
+    private final User validUser = User.builder()
+            .username("Arslan")
+            .email("ismailov@yandex.ru")
+            .age(30)
+            .build();
+
+    private final User invalidUser = User.builder()
+            .username("Arslan")
+            .email("ismailov05.ru")
+            .age(30)
+            .build();
+
+    @Benchmark
+    public User validateValidUser() {
+        userService.validateUser(validUser);
+        return validUser;
+    }
+
+    @Benchmark
+    public String validateInvalidUser() {
+        try {
+            userService.validateUser(invalidUser);
+            return null;
+        } catch (UserException ex) {
+            return ex.getMessage();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package dao;
+
+import entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import utils.CacheStats;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CachingUserDaoTest {
+
+    @Mock
+    private UserDao<User, Long> delegate;
+
+    private CachingUserDao cachingDao;
+
+    @BeforeEach
+    void setUp() {
+        cachingDao = new CachingUserDao(delegate, 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    @DisplayName("findById: повторный запрос обслуживается из кэша")
+    void findById_shouldHitCacheOnRepeatedLookup() {
+        when(delegate.findById(1L)).thenReturn(Optional.of(createUser(1L)));
+
+        Optional<User> first = cachingDao.findById(1L);
+        Optional<User> second = cachingDao.findById(1L);
+
+        assertEquals(first, second);
+        verify(delegate, times(1)).findById(1L);
+        CacheStats stats = cachingDao.cacheStats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    @DisplayName("findById: изменения возвращенного объекта не попадают в кэш")
+    void findById_shouldReturnDefensiveCopy() {
+        when(delegate.findById(1L)).thenReturn(Optional.of(createUser(1L)));
+
+        cachingDao.findById(1L).orElseThrow().setUsername("Changed");
+
+        assertEquals("Arslan", cachingDao.findById(1L).orElseThrow().getUsername());
+    }
+
+    @Test
+    @DisplayName("update/delete: сбрасывают запись в кэше")
+    void writes_shouldInvalidateCachedEntry() {
+        User user = createUser(1L);
+        when(delegate.findById(1L)).thenReturn(Optional.of(user));
+        when(delegate.update(user)).thenReturn(true);
+        when(delegate.delete(1L)).thenReturn(true);
+
+        cachingDao.findById(1L);
+        cachingDao.update(user);
+        cachingDao.findById(1L);
+        cachingDao.delete(1L);
+        cachingDao.findById(1L);
+
+        verify(delegate, times(3)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("findById: отсутствующий пользователь не кэшируется")
+    void findById_shouldNotCacheMisses() {
+        when(delegate.findById(2L)).thenReturn(Optional.empty());
+
+        cachingDao.findById(2L);
+        cachingDao.findById(2L);
+
+        verify(delegate, times(2)).findById(2L);
+        assertEquals(0, cachingDao.cacheStats().size());
+    }
+
+    @Test
+    @DisplayName("findById/delete: null ID уходит в DAO мимо кэша")
+    void nullId_shouldBypassCache() {
+        when(delegate.findById(null)).thenReturn(Optional.empty());
+        when(delegate.delete(null)).thenReturn(false);
+
+        assertTrue(cachingDao.findById(null).isEmpty());
+        assertFalse(cachingDao.delete(null));
+
+        assertEquals(0, cachingDao.cacheStats().size());
+    }
+
+    @Test
+    @DisplayName("findByEmail: повторный поиск по email не обращается к DAO")
+    void findByEmail_shouldHitNaturalIdCache() {
+        when(delegate.findByEmail("ismailov@yandex.ru")).thenReturn(Optional.of(createUser(1L)));
+
+        cachingDao.findByEmail("ismailov@yandex.ru");
+        Optional<User> second = cachingDao.findByEmail("ismailov@yandex.ru");
+
+        assertTrue(second.isPresent());
+        assertTrue(cachingDao.existsByEmail("ismailov@yandex.ru"));
+        verify(delegate, times(1)).findByEmail("ismailov@yandex.ru");
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    @DisplayName("findByEmail: после обновления пользователя email снова ищется в DAO")
+    void findByEmail_shouldMissAfterUpdate() {
+        User user = createUser(1L);
+        when(delegate.findByEmail("ismailov@yandex.ru")).thenReturn(Optional.of(user));
+        when(delegate.update(user)).thenReturn(true);
+
+        cachingDao.findByEmail("ismailov@yandex.ru");
+        cachingDao.update(user);
+        cachingDao.findByEmail("ismailov@yandex.ru");
+
+        verify(delegate, times(2)).findByEmail("ismailov@yandex.ru");
+    }
+
+    @Test
+    @DisplayName("findById: значение, загруженное до параллельного update, не остается в кэше")
+    void findById_shouldNotCacheValueLoadedBeforeConcurrentUpdate() throws Exception {
+        User stale = createUser(1L);
+        User fresh = createUser(1L);
+        fresh.setUsername("Updated");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch updated = new CountDownLatch(1);
+        when(delegate.findById(1L))
+                .thenAnswer(invocation -> {
+                    loading.countDown();
+                    assertTrue(updated.await(5, TimeUnit.SECONDS));
+                    return Optional.of(stale);
+                })
+                .thenReturn(Optional.of(fresh));
+        when(delegate.update(fresh)).thenReturn(true);
+
+        CompletableFuture<Optional<User>> load = CompletableFuture.supplyAsync(() -> cachingDao.findById(1L));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        cachingDao.update(fresh);
+        updated.countDown();
+
+        assertEquals("Arslan", load.get(5, TimeUnit.SECONDS).orElseThrow().getUsername());
+        assertEquals("Updated", cachingDao.findById(1L).orElseThrow().getUsername());
+        verify(delegate, times(2)).findById(1L);
+    }
+
+    private User createUser(Long id) {
+        return User.builder()
+                .id(id)
+                .username("Arslan")
+                .email("ismailov@yandex.ru")
+                .age(30)
+                .build();
+    }
+}
@@ -0,0 +1,292 @@
+package dao;
+
+import entity.User;
+import exception.UserException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import service.UserService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryUserDaoTest {
+
+    private InMemoryUserDao userDao;
+
+    @BeforeEach
+    void setUp() {
+        userDao = new InMemoryUserDao();
+    }
+
+    @Test
+    @DisplayName("create: выдает последовательные ID и заполняет дату создания")
+    void create_shouldAssignSequentialIds() {
+        User first = createUser("a@mail.ru");
+        User second = createUser("b@mail.ru");
+
+        userDao.create(first);
+        userDao.create(second);
+
+        assertEquals(1L, first.getId());
+        assertEquals(2L, second.getId());
+        assertNotNull(first.getCreatedAt());
+        assertEquals(2, userDao.count());
+    }
+
+    @Test
+    @DisplayName("create: повторный email отклоняется")
+    void create_shouldRejectDuplicateEmail() {
+        userDao.create(createUser("a@mail.ru"));
+
+        assertThrows(UserException.class, () -> userDao.create(createUser("a@mail.ru")));
+        assertEquals(1, userDao.count());
+    }
+
+    @Test
+    @DisplayName("email сравнивается без учета регистра: поиск, проверка и уникальность")
+    void email_shouldBeCaseInsensitive() {
+        User user = createUser("Ivan@Mail.ru");
+        userDao.create(user);
+
+        assertEquals(user.getId(), userDao.findByEmail("ivan@mail.ru").orElseThrow().getId());
+        assertTrue(userDao.existsByEmail("IVAN@MAIL.RU"));
+        assertThrows(UserException.class, () -> userDao.create(createUser("ivan@mail.ru")));
+
+        user.setEmail("ivan@mail.ru");
+        assertTrue(userDao.updateIfExists(user));
+        assertEquals("ivan@mail.ru", userDao.findByEmail("IVAN@mail.ru").orElseThrow().getEmail());
+        assertEquals(1, userDao.count());
+    }
+
+    @Test
+    @DisplayName("findById: возвращает копию, изменения которой не попадают в хранилище")
+    void findById_shouldReturnDefensiveCopy() {
+        User user = createUser("a@mail.ru");
+        userDao.create(user);
+
+        userDao.findById(user.getId()).orElseThrow().setUsername("Changed");
+        user.setUsername("Changed");
+
+        assertEquals("Arslan", userDao.findById(user.getId()).orElseThrow().getUsername());
+    }
+
+    @Test
+    @DisplayName("updateIfExists: меняет email и переносит индекс")
+    void updateIfExists_shouldMoveEmailIndex() {
+        User user = createUser("a@mail.ru");
+        userDao.create(user);
+        user.setEmail("new@mail.ru");
+
+        assertTrue(userDao.updateIfExists(user));
+        assertFalse(userDao.existsByEmail("a@mail.ru"));
+        assertEquals(user.getId(), userDao.findByEmail("new@mail.ru").orElseThrow().getId());
+        assertFalse(userDao.updateIfExists(User.builder().id(99L).email("x@mail.ru").build()));
+    }
+
+    @Test
+    @DisplayName("updateIfExists: email другого пользователя занять нельзя")
+    void updateIfExists_shouldRejectForeignEmail() {
+        User first = createUser("a@mail.ru");
+        User second = createUser("b@mail.ru");
+        userDao.create(first);
+        userDao.create(second);
+        second.setEmail("a@mail.ru");
+
+        assertThrows(UserException.class, () -> userDao.updateIfExists(second));
+        assertEquals(second.getId(), userDao.findByEmail("b@mail.ru").orElseThrow().getId());
+    }
+
+    @Test
+    @DisplayName("delete: освобождает email, повторное удаление возвращает false")
+    void delete_shouldReleaseEmail() {
+        User user = createUser("a@mail.ru");
+        userDao.create(user);
+
+        assertTrue(userDao.delete(user.getId()));
+        assertFalse(userDao.delete(user.getId()));
+        assertFalse(userDao.existsByEmail("a@mail.ru"));
+        assertEquals(0, userDao.count());
+    }
+
+    @Test
+    @DisplayName("findAfterId/findPage: порядок по ID, удаленные пропускаются")
+    void keysetAndOffsetPages_shouldSkipDeletedIds() {
+        for (int i = 0; i < 10; i++) {
+            userDao.create(createUser("u" + i + "@mail.ru"));
+        }
+        userDao.deleteAllById(List.of(2L, 3L, 7L));
+
+        assertEquals(List.of(1L, 4L, 5L), ids(userDao.findAfterId(null, 3)));
+        assertEquals(List.of(6L, 8L, 9L), ids(userDao.findAfterId(5L, 3)));
+        assertEquals(List.of(5L, 6L), ids(userDao.findPage(2, 2)));
+        assertEquals(1L, userDao.findMinId().orElseThrow());
+        assertEquals(10L, userDao.findMaxId().orElseThrow());
+        assertEquals(3, userDao.streamRange(4L, 8L, user -> { }));
+    }
+
+    @Test
+    @DisplayName("findAfterId/streamRange/findMinId: идут по живым ID, а не по всему диапазону выданных")
+    void idOrderedReads_shouldUseLiveIdIndex() {
+        InMemoryUserDao sparse = new InMemoryUserDao(1_000_000_000L);
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            User user = createUser("s" + i + "@mail.ru");
+            sparse.create(user);
+            created.add(user.getId());
+        }
+        sparse.deleteAllById(created.subList(1, created.size() - 1));
+        long first = created.getFirst();
+        long last = created.getLast();
+
+        assertEquals(List.of(first, last), ids(sparse.findPage(0, 10)));
+        assertEquals(List.of(last), ids(sparse.findAfterId(first, 10)));
+        assertEquals(first, sparse.findMinId().orElseThrow());
+        assertEquals(last, sparse.findMaxId().orElseThrow());
+        assertEquals(2, sparse.streamAll(user -> { }));
+        assertEquals(0, sparse.streamRange(last, first, user -> { }));
+    }
+
+    @Test
+    @DisplayName("findCreatedAfter: сортировка по дате создания, затем по ID")
+    void findCreatedAfter_shouldOrderByCreatedAtThenId() {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        for (int i = 0; i < 5; i++) {
+            User user = createUser("u" + i + "@mail.ru");
+            user.setCreatedAt(base.minusDays(i % 3));
+            userDao.create(user);
+        }
+
+        List<User> firstPage = userDao.findCreatedAfter(null, null, 2);
+        assertEquals(List.of(3L, 2L), ids(firstPage));
+        User last = firstPage.getLast();
+        assertEquals(List.of(5L, 1L, 4L), ids(userDao.findCreatedAfter(last.getCreatedAt(), last.getId(), 10)));
+    }
+
+    @Test
+    @DisplayName("create: параллельные вставки не теряют записей и не дублируют ID")
+    void create_shouldBeSafeUnderConcurrentWrites() throws Exception {
+        int threads = 8;
+        int perThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        userDao.create(createUser("t" + thread + "n" + i + "@mail.ru"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, userDao.count());
+        assertEquals(threads * perThread, userDao.streamAll(user -> { }));
+    }
+
+    @Test
+    @DisplayName("UserService: работает поверх хранилища в памяти без моков")
+    void userService_shouldWorkOnTopOfInMemoryDao() {
+        UserService userService = new UserService(userDao);
+        User user = createUser("ismailov@yandex.ru");
+
+        userService.saveUser(user);
+        user.setAge(31);
+        userService.updateUser(user);
+
+        assertEquals(31, userService.getUserByEmail("ismailov@yandex.ru").orElseThrow().getAge());
+        userService.deleteUser(user.getId());
+        assertEquals(0, userService.countUsers());
+    }
+
+    @Test
+    @DisplayName("searchByUsername: префикс по индексу имен, индекс следует за обновлением и удалением")
+    void searchByUsername_shouldFollowWrites() {
+        User arslan = createUser("a@mail.ru", "Arslan");
+        User arsen = createUser("b@mail.ru", "Arsen");
+        User aslan = createUser("c@mail.ru", "Aslan");
+        User second = createUser("d@mail.ru", "Arslan");
+        List.of(arslan, arsen, aslan, second).forEach(userDao::create);
+
+        assertEquals(List.of(arsen.getId(), arslan.getId(), second.getId()), ids(userDao.searchByUsername("Ars", 10)));
+        assertEquals(List.of(arsen.getId()), ids(userDao.searchByUsername("Ars", 1)));
+        assertEquals(List.of(), userDao.searchByUsername("ars", 10));
+
+        arsen.setUsername("Iba");
+        userDao.updateIfExists(arsen);
+        userDao.delete(second.getId());
+
+        assertEquals(List.of(arslan.getId()), ids(userDao.searchByUsername("Ars", 10)));
+        assertEquals(List.of(arsen.getId()), ids(userDao.searchByUsername("I", 10)));
+    }
+
+    @Test
+    @DisplayName("searchBySimilarUsername: имена с опечаткой по убыванию сходства триграмм")
+    void searchBySimilarUsername_shouldRankByTrigramSimilarity() {
+        User arslan = createUser("a@mail.ru", "Arslan");
+        User arslanbek = createUser("b@mail.ru", "Arslanbek");
+        User iba = createUser("c@mail.ru", "Iba");
+        List.of(arslan, arslanbek, iba).forEach(userDao::create);
+
+        assertEquals(List.of(arslan.getId(), arslanbek.getId()), ids(userDao.searchBySimilarUsername("arslam", 10)));
+        assertEquals(List.of(arslan.getId()), ids(userDao.searchBySimilarUsername("Arslan", 1)));
+        assertEquals(List.of(), userDao.searchBySimilarUsername("Zzz", 10));
+    }
+
+    @Test
+    @DisplayName("ageHistogram/signupsPerDay: агрегаты по всем сегментам, последний интервал возраста открыт")
+    void analytics_shouldAggregateAcrossSegments() {
+        LocalDate day = LocalDate.of(2026, 1, 10);
+        int[] ages = {5, 18, 19, 30, 42, 95, 120};
+        for (int i = 0; i < 40; i++) {
+            User user = createUser("u" + i + "@mail.ru");
+            user.setAge(ages[i % ages.length]);
+            user.setCreatedAt(day.plusDays(i % 3).atTime(23, 59));
+            userDao.create(user);
+        }
+
+        assertArrayEquals(new long[]{6, 12, 0, 6, 6, 10}, userDao.ageHistogram(10, 6));
+        assertArrayEquals(new long[]{0, 14, 13, 13, 0}, userDao.signupsPerDay(day.minusDays(1), day.plusDays(4)));
+        assertArrayEquals(new long[]{13}, userDao.signupsPerDay(day.plusDays(1), day.plusDays(2)));
+    }
+
+    @Test
+    @DisplayName("ageHistogram: строка с отрицательным возрастом попадает в первый интервал, а не роняет отчет")
+    void ageHistogram_shouldClampNegativeAge() {
+        User negative = createUser("a@mail.ru");
+        negative.setAge(-15);
+        userDao.create(negative);
+        userDao.create(createUser("b@mail.ru"));
+
+        assertArrayEquals(new long[]{1, 0, 0, 1}, userDao.ageHistogram(10, 4));
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).toList();
+    }
+
+    private User createUser(String email) {
+        return createUser(email, "Arslan");
+    }
+
+    private User createUser(String email, String username) {
+        return User.builder()
+                .username(username)
+                .email(email)
+                .age(30)
+                .build();
+    }
+}
@@ -0,0 +1,98 @@
+package dao;
+
+import entity.User;
+import exception.UserException;
+import metrics.MetricsRegistry;
+import metrics.TimerSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MetricsUserDaoTest {
+
+    @Mock
+    private UserDao<User, Long> delegate;
+
+    private MetricsRegistry registry;
+    private MetricsUserDao<User, Long> metricsDao;
+
+    @BeforeEach
+    void setUp() {
+        registry = new MetricsRegistry();
+        metricsDao = new MetricsUserDao<>(delegate, registry, "dao");
+    }
+
+    @Test
+    @DisplayName("findById: каждый вызов попадает в таймер операции")
+    void findById_shouldRecordLatency() {
+        when(delegate.findById(1L)).thenReturn(Optional.of(new User()));
+
+        metricsDao.findById(1L);
+        metricsDao.findById(1L);
+
+        TimerSnapshot snapshot = timer("dao.findById");
+        assertEquals(2, snapshot.count());
+        assertEquals(0, snapshot.errors());
+        assertTrue(snapshot.maxNanos() >= snapshot.p50Nanos());
+    }
+
+    @Test
+    @DisplayName("create: ошибка считается по классу исходной причины и пробрасывается дальше")
+    void create_shouldCountErrorByCause() {
+        User user = new User();
+        UserException failure = new UserException("Ошибка при создании пользователя", new SQLException("duplicate"));
+        when(delegate.create(user)).thenThrow(failure);
+
+        UserException thrown = assertThrows(UserException.class, () -> metricsDao.create(user));
+
+        assertSame(failure, thrown);
+        TimerSnapshot snapshot = timer("dao.create");
+        assertEquals(1, snapshot.count());
+        assertEquals(1L, snapshot.errorsByCause().get(SQLException.class.getName()));
+    }
+
+    @Test
+    @DisplayName("writePrometheus: перцентили, ошибки и датчики в текстовом формате")
+    void writePrometheus_shouldExportTimersErrorsAndGauges() {
+        when(delegate.existsByEmail("a@mail.ru")).thenThrow(new UserException("Email не указан"));
+        registry.gauge("cache.size", () -> 42);
+
+        assertThrows(UserException.class, () -> metricsDao.existsByEmail("a@mail.ru"));
+        String text = registry.getPrometheusText();
+
+        assertTrue(text.contains("user_operation_seconds{op=\"dao.existsByEmail\",quantile=\"0.99\"}"));
+        assertTrue(text.contains("user_operation_seconds_count{op=\"dao.existsByEmail\"} 1"));
+        assertTrue(text.contains("user_operation_errors_total{op=\"dao.existsByEmail\",cause=\"exception.UserException\"} 1"));
+        assertTrue(text.contains("user_cache_size 42"));
+        assertFalse(text.contains("op=\"dao.findAll\""));
+    }
+
+    @Test
+    @DisplayName("reset: счетчики и ошибки обнуляются")
+    void reset_shouldClearTimers() {
+        when(delegate.count()).thenReturn(5L);
+        metricsDao.count();
+
+        registry.reset();
+
+        assertEquals(0, timer("dao.count").count());
+        assertEquals(0L, registry.getCounts().get("dao.count"));
+    }
+
+    private TimerSnapshot timer(String name) {
+        return registry.snapshot().stream()
+                .filter(snapshot -> snapshot.name().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,434 @@
+package dao;
+
+import entity.User;
+import exception.UserException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import testutils.HibernateUtilForBenchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedUserDaoTest {
+
+    private static final int SHARDS = 3;
+    private static final Duration REFRESH_INTERVAL = Duration.ofMillis(10);
+
+    private ShardedUserDao shardedDao;
+    private final List<SessionFactory> sessionFactories = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        if (shardedDao != null) {
+            shardedDao.close();
+        }
+        sessionFactories.forEach(SessionFactory::close);
+    }
+
+    @Test
+    @DisplayName("create: пользователи расходятся по шардам, ID попадают в диапазон своего шарда")
+    void create_shouldSpreadUsersAcrossShardRanges() {
+        shardedDao = new ShardedUserDao(inMemoryShards());
+
+        for (int i = 0; i < 30; i++) {
+            shardedDao.create(createUser("u" + i + "@mail.ru"));
+        }
+
+        assertEquals(30, shardedDao.count());
+        for (User user : shardedDao.findAll()) {
+            int shard = shardedDao.shardForEmail(user.getEmail());
+            assertEquals(shard, shardedDao.ranges().shardFor(user.getId()));
+            assertEquals(user, shardedDao.findById(user.getId()).orElseThrow());
+        }
+        for (int shard = 0; shard < SHARDS; shard++) {
+            assertTrue(shardedDao.shard(shard).count() > 0, "Шард " + shard + " пуст");
+        }
+    }
+
+    @Test
+    @DisplayName("findAll/findPage/findAfterId: результаты шардов сливаются в общем порядке ID")
+    void reads_shouldMergeShardsInIdOrder() {
+        shardedDao = new ShardedUserDao(inMemoryShards());
+        for (int i = 0; i < 20; i++) {
+            shardedDao.create(createUser("u" + i + "@mail.ru"));
+        }
+        List<Long> allIds = shardedDao.findAll().stream().map(User::getId).toList();
+
+        assertEquals(allIds.subList(5, 10), ids(shardedDao.findPage(5, 5)));
+        assertEquals(allIds.subList(3, 7), ids(shardedDao.findAfterId(allIds.get(2), 4)));
+        List<Long> streamed = new ArrayList<>();
+        assertEquals(20, shardedDao.streamAll(user -> streamed.add(user.getId())));
+        assertEquals(allIds, streamed);
+        assertEquals(allIds.getFirst(), shardedDao.findMinId().orElseThrow());
+        assertEquals(allIds.getLast(), shardedDao.findMaxId().orElseThrow());
+    }
+
+    @Test
+    @DisplayName("updateIfExists: email, занятый в другом шарде, отклоняется")
+    void updateIfExists_shouldRejectEmailTakenOnAnotherShard() {
+        shardedDao = new ShardedUserDao(inMemoryShards());
+        User first = createUser("a@mail.ru");
+        User second = null;
+        shardedDao.create(first);
+        for (int i = 0; second == null; i++) {
+            String email = "b" + i + "@mail.ru";
+            if (shardedDao.shardForEmail(email) != shardedDao.shardForEmail("a@mail.ru")) {
+                second = createUser(email);
+            }
+        }
+        shardedDao.create(second);
+        second.setEmail("a@mail.ru");
+
+        User conflicting = second;
+        assertThrows(UserException.class, () -> shardedDao.updateIfExists(conflicting));
+        assertTrue(shardedDao.existsByEmail("a@mail.ru"));
+        assertEquals(first.getId(), shardedDao.findByEmail("a@mail.ru").orElseThrow().getId());
+    }
+
+    @Test
+    @DisplayName("createAll: email пользователя вне домашнего шарда отклоняется, как в create")
+    void createAll_shouldRejectEmailTakenOnAnotherShard() {
+        shardedDao = new ShardedUserDao(inMemoryShards());
+        User user = createUser("a@mail.ru");
+        shardedDao.create(user);
+        // После смены email пользователь остается в шарде, выбранном по старому email
+        String email = emailOutside(shardedDao.shardForEmail("a@mail.ru"), "taken");
+        user.setEmail(email);
+        assertTrue(shardedDao.updateIfExists(user));
+        long before = shardedDao.count();
+
+        assertThrows(UserException.class,
+                () -> shardedDao.createAll(List.of(createUser("free@mail.ru"), createUser(email))));
+        assertThrows(UserException.class, () -> shardedDao.create(createUser(email)));
+        assertEquals(before, shardedDao.count());
+    }
+
+    @Test
+    @DisplayName("Уникальность email между шардами не гарантирована для смены email параллельно со вставкой")
+    void emailChangeRacingWithCreate_mayLeaveDuplicateAcrossShards() {
+        List<UserDao<User, Long>> shards = inMemoryShards();
+        shardedDao = new ShardedUserDao(shards);
+        String email = "race@mail.ru";
+        int home = shardedDao.shardForEmail(email);
+        User other = createUser(emailOutside(home, "other"));
+        shardedDao.create(other);
+        other.setEmail(email);
+        // Смена email успевает между проверкой остальных шардов и вставкой в домашний
+        List<UserDao<User, Long>> racing = new ArrayList<>(shards);
+        racing.set(home, new ForwardingUserDao<>(shards.get(home)) {
+            @Override
+            public boolean create(User user) {
+                assertTrue(shardedDao.updateIfExists(other));
+                return super.create(user);
+            }
+        });
+
+        try (ShardedUserDao racingDao = new ShardedUserDao(racing)) {
+            assertTrue(racingDao.create(createUser(email)));
+        }
+        assertEquals(2, shardedDao.findAll().stream().filter(user -> user.getEmail().equals(email)).count());
+    }
+
+    @Test
+    @DisplayName("restartIdSequence: первый ID шарда в БД — ShardRanges.firstId, следующие идут подряд")
+    void restartIdSequence_shouldIssueFirstIdOfShard() {
+        List<UserDaoImpl> shards = h2Shards("first_id");
+
+        for (int shard = 0; shard < shards.size(); shard++) {
+            User first = createUser("first" + shard + "@mail.ru");
+            User second = createUser("second" + shard + "@mail.ru");
+            shards.get(shard).create(first);
+            shards.get(shard).create(second);
+
+            assertEquals(ShardRanges.firstId(shard), first.getId());
+            assertEquals(ShardRanges.firstId(shard) + 1, second.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("findByEmail/existsByEmail: email из БД находится в любом регистре, оба адреса идут в один шард")
+    void emailLookups_shouldIgnoreCase() {
+        shardedDao = new ShardedUserDao(h2Shards("email_case"));
+        User user = createUser("Ivan@Mail.ru");
+        shardedDao.create(user);
+
+        assertEquals(shardedDao.shardForEmail("Ivan@Mail.ru"), shardedDao.shardForEmail("ivan@mail.ru"));
+        assertEquals(user.getId(), shardedDao.findByEmail("ivan@mail.ru").orElseThrow().getId());
+        assertTrue(shardedDao.existsByEmail("IVAN@MAIL.RU"));
+        assertFalse(shardedDao.existsByEmail("ivan@mail.com"));
+    }
+
+    @Test
+    @DisplayName("searchByUsername/searchBySimilarUsername: результаты шардов сливаются в общем порядке")
+    void search_shouldMergeShardsByUsernameAndSimilarity() {
+        shardedDao = new ShardedUserDao(inMemoryShards());
+        List<String> names = List.of("Arslan", "Arsen", "Aslan", "Arslanbek", "Iba", "Arsik");
+        for (int i = 0; i < names.size(); i++) {
+            User user = createUser("u" + i + "@mail.ru");
+            user.setUsername(names.get(i));
+            shardedDao.create(user);
+        }
+
+        assertEquals(List.of("Arsen", "Arsik", "Arslan"), usernames(shardedDao.searchByUsername("Ars", 3)));
+        assertEquals(List.of("Arslan", "Arslanbek"), usernames(shardedDao.searchBySimilarUsername("Arslam", 2)));
+    }
+
+    @Test
+    @DisplayName("ageHistogram/signupsPerDay: SQL-агрегаты шардов складываются")
+    void analytics_shouldSumShardAggregates() {
+        List<UserDaoImpl> shards = h2Shards("analytics");
+        shardedDao = new ShardedUserDao(shards);
+        for (int i = 0; i < 12; i++) {
+            User user = createUser("u" + i + "@mail.ru");
+            user.setAge(15 + i * 5);
+            shardedDao.create(user);
+        }
+        // Строка в обход UserValidator: гистограмма не должна на ней падать
+        User negative = createUser("negative@mail.ru");
+        negative.setAge(-25);
+        shardedDao.create(negative);
+        LocalDate today = LocalDate.now();
+
+        assertTrue(shards.get(0).count() > 0 && shards.get(1).count() > 0);
+        assertArrayEquals(new long[]{1, 1, 2, 9}, shardedDao.ageHistogram(10, 4));
+        assertArrayEquals(new long[]{0, 13}, shardedDao.signupsPerDay(today.minusDays(1), today.plusDays(1)));
+    }
+
+    @Test
+    @DisplayName("Чтения по всем шардам: диапазон, лежащий в двух шардах во время переноса, не дублируется")
+    void fanOutReads_shouldReadRangeOnTwoShardsOnce() {
+        List<UserDaoImpl> shards = h2Shards("copied");
+        shardedDao = new ShardedUserDao(shards);
+        for (int i = 0; shards.get(1).count() < 5; i++) {
+            User user = createUser("u" + i + "@mail.ru");
+            user.setAge(20 + i);
+            shardedDao.create(user);
+        }
+        List<User> all = shardedDao.findAll();
+        long[] histogram = shardedDao.ageHistogram(10, 4);
+        LocalDate today = LocalDate.now();
+        long[] signups = shardedDao.signupsPerDay(today, today.plusDays(1));
+        // Верх шарда 1 переезжает в шард 0: копия ложится поверх строк шарда 0
+        List<User> moving = shards.get(1).findAll().subList(2, 5);
+        long from = moving.getFirst().getId();
+        long to = moving.getLast().getId() + 1;
+
+        insertCopies(sessionFactories.get(0), moving);
+        assertReads(all, histogram, signups, shardedDao);
+
+        // Карта опубликована, из исходного шарда диапазон еще не удален
+        try (ShardedUserDao published = new ShardedUserDao(shards, shardedDao.ranges().move(from, to, 0))) {
+            assertReads(all, histogram, signups, published);
+
+            // Удаление у нового владельца: старая строка в шарде 1 не должна всплыть
+            assertTrue(published.delete(moving.getLast().getId()));
+            assertEquals(all.size() - 1, published.count());
+            assertEquals(moving.get(1).getId(), published.findMaxId().orElseThrow());
+            assertEquals(ids(all.subList(0, all.size() - 1)), ids(published.findAll()));
+            assertTrue(published.findByEmail(moving.getLast().getEmail()).isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("ShardRanges.move: перенос диапазона и текстовый формат карты")
+    void shardRanges_shouldMoveRangeAndRoundTrip() {
+        ShardRanges ranges = ShardRanges.initial(SHARDS);
+        long base1 = ShardRanges.firstId(1) - 1;
+
+        ShardRanges moved = ranges.move(100, 200, 1);
+
+        assertEquals(0, moved.shardFor(99));
+        assertEquals(1, moved.shardFor(100));
+        assertEquals(1, moved.shardFor(199));
+        assertEquals(0, moved.shardFor(200));
+        assertEquals(1, moved.shardFor(base1));
+        assertEquals(moved.format(), ShardRanges.parse(moved.format(), SHARDS).format());
+        assertEquals(ranges.format(), moved.move(100, 200, 0).format());
+    }
+
+    @Test
+    @DisplayName("ShardRebalancer: диапазон переезжает в другой шард с сохранением ID, карта сохраняется в shard_map")
+    void rebalancer_shouldMoveRangeBetweenDatabases() {
+        List<UserDaoImpl> shards = fencedShards("shard");
+        shardedDao = new ShardedUserDao(shards, new ShardMapStore(sessionFactories), REFRESH_INTERVAL);
+        List<User> onShardZero = new ArrayList<>();
+        for (int i = 0; onShardZero.size() < 4; i++) {
+            User user = createUser("u" + i + "@mail.ru");
+            shardedDao.create(user);
+            if (shardedDao.ranges().shardFor(user.getId()) == 0) {
+                onShardZero.add(user);
+            }
+        }
+        long total = shardedDao.count();
+        long from = onShardZero.getFirst().getId();
+        long to = onShardZero.get(2).getId() + 1;
+
+        long moved = new ShardRebalancer(shardedDao, sessionFactories).moveRange(from, to, 1);
+
+        assertEquals(3, moved);
+        assertEquals(total, shardedDao.count());
+        assertEquals(1, shardedDao.ranges().shardFor(from));
+        assertTrue(shards.get(0).findById(from).isEmpty());
+        assertEquals(onShardZero.getFirst().getEmail(), shards.get(1).findById(from).orElseThrow().getEmail());
+        assertEquals(onShardZero.getFirst().getEmail(), shardedDao.findById(from).orElseThrow().getEmail());
+        assertTrue(shardedDao.findByEmail(onShardZero.get(1).getEmail()).isPresent());
+        assertEquals(0, shardedDao.ranges().shardFor(to));
+        ShardMapStore.State stored = new ShardMapStore(sessionFactories).load();
+        assertEquals(shardedDao.ranges().format(), stored.ranges().format());
+        assertNull(stored.frozenFrom());
+    }
+
+    @Test
+    @DisplayName("ShardRebalancer: диапазон выше выданных шардом ID не переносится")
+    void rebalancer_shouldRejectRangeAboveAllocatedIds() {
+        shardedDao = new ShardedUserDao(fencedShards("unallocated"), new ShardMapStore(sessionFactories), REFRESH_INTERVAL);
+        shardedDao.create(createUser("u@mail.ru"));
+        String before = shardedDao.ranges().format();
+        long from = ShardRanges.firstId(0);
+
+        ShardRebalancer rebalancer = new ShardRebalancer(shardedDao, sessionFactories);
+
+        assertThrows(UserException.class, () -> rebalancer.moveRange(from, from + 1_000_000, 1));
+        assertEquals(before, new ShardMapStore(sessionFactories).load().ranges().format());
+    }
+
+    @Test
+    @DisplayName("ShardFence: замороженный диапазон закрыт для записи с любого узла, даже со старой картой")
+    void shardFence_shouldRejectWritesIntoFrozenRangeFromEveryNode() {
+        List<UserDaoImpl> shards = fencedShards("frozen");
+        ShardMapStore mapStore = new ShardMapStore(sessionFactories);
+        // Второй узел перечитывает карту редко и заморозку не видит
+        ShardedUserDao otherNode = new ShardedUserDao(shards, mapStore, Duration.ofHours(1));
+        shardedDao = new ShardedUserDao(shards, mapStore, REFRESH_INTERVAL);
+        String email = "u0@mail.ru";
+        for (int i = 1; shardedDao.shardForEmail(email) != 0; i++) {
+            email = "u" + i + "@mail.ru";
+        }
+        long from = ShardRanges.firstId(0);
+        ShardMapStore.State frozen = mapStore.freeze(mapStore.load(), from, from + 1_000);
+
+        User blocked = createUser(email);
+        assertThrows(UserException.class, () -> otherNode.create(blocked));
+        assertEquals(0, shards.get(0).count());
+
+        mapStore.unfreeze(frozen);
+        assertTrue(otherNode.create(createUser(email)));
+        otherNode.close();
+    }
+
+    private static void assertReads(List<User> all, long[] histogram, long[] signups, ShardedUserDao dao) {
+        LocalDate today = LocalDate.now();
+        assertEquals(ids(all), ids(dao.findAll()));
+        assertEquals(all.size(), dao.count());
+        assertEquals(ids(all.subList(2, 7)), ids(dao.findPage(2, 5)));
+        assertEquals(ids(all.subList(3, 7)), ids(dao.findAfterId(all.get(2).getId(), 4)));
+        assertEquals(all.size(), dao.findCreatedAfter(null, null, all.size() + 10).size());
+        assertEquals(all.getFirst().getId(), dao.findMinId().orElseThrow());
+        assertEquals(all.getLast().getId(), dao.findMaxId().orElseThrow());
+        assertArrayEquals(histogram, dao.ageHistogram(10, 4));
+        assertArrayEquals(signups, dao.signupsPerDay(today, today.plusDays(1)));
+    }
+
+    /**
+     * Копирует строки с сохранением ID, как ShardRebalancer до публикации карты.
+     */
+    private static void insertCopies(SessionFactory target, List<User> users) {
+        target.inTransaction(session -> {
+            for (User user : users) {
+                session.createNativeMutationQuery("""
+                                INSERT INTO users (id, username, email, age, created_at)
+                                VALUES (:id, :username, :email, :age, :createdAt)""")
+                        .setParameter("id", user.getId())
+                        .setParameter("username", user.getUsername())
+                        .setParameter("email", user.getEmail())
+                        .setParameter("age", user.getAge())
+                        .setParameter("createdAt", user.getCreatedAt())
+                        .executeUpdate();
+            }
+        });
+    }
+
+    private List<UserDaoImpl> h2Shards(String prefix) {
+        List<UserDaoImpl> shards = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            SessionFactory sessionFactory = HibernateUtilForBenchmarks.openInMemory(prefix + "_" + i);
+            sessionFactories.add(sessionFactory);
+            UserDaoImpl shard = new UserDaoImpl(sessionFactory);
+            shard.restartIdSequence(ShardRanges.firstId(i));
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+    /**
+     * Шарды в H2 с таблицей shard_map из миграции и проверкой ShardFence, как в MainApp.
+     */
+    private List<UserDaoImpl> fencedShards(String prefix) {
+        List<UserDaoImpl> shards = h2Shards(prefix);
+        for (int i = 0; i < shards.size(); i++) {
+            try (Session session = sessionFactories.get(i).openSession()) {
+                session.doWork(connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute(shardMapScript());
+                    }
+                });
+            }
+            shards.get(i).setShardFence(new ShardFence(i, shards.size()));
+        }
+        new ShardMapStore(sessionFactories).initialize(ShardRanges.initial(shards.size()));
+        return shards;
+    }
+
+    private static String shardMapScript() {
+        try (InputStream script = ShardedUserDaoTest.class.getResourceAsStream("/db/migration/V5__shard_map.sql")) {
+            return new String(script.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private List<UserDao<User, Long>> inMemoryShards() {
+        List<UserDao<User, Long>> shards = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            shards.add(new InMemoryUserDao(ShardRanges.firstId(i)));
+        }
+        return shards;
+    }
+
+    private String emailOutside(int shard, String prefix) {
+        for (int i = 0; ; i++) {
+            String email = prefix + i + "@mail.ru";
+            if (shardedDao.shardForEmail(email) != shard) {
+                return email;
+            }
+        }
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).toList();
+    }
+
+    private static List<String> usernames(List<User> users) {
+        return users.stream().map(User::getUsername).toList();
+    }
+
+    private User createUser(String email) {
+        return User.builder()
+                .username("Arslan")
+                .email(email)
+                .age(30)
+                .build();
+    }
+}
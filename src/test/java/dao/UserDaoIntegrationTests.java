@@ -8,6 +8,7 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import testutils.HibernateUtilForTests;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -179,4 +180,127 @@ public class UserDaoIntegrationTests {
         Optional<User> retrievedUser = userDao.findById(userId);
         assertFalse(retrievedUser.isPresent());
     }
+
+    @Test
+    @DisplayName("findPage: возвращает страницу пользователей, упорядоченных по ID")
+    void findPage_shouldReturnRequestedSlice() {
+        for (int i = 0; i < 5; i++) {
+            userDao.create(User.builder()
+                    .username("User" + i)
+                    .email("user" + i + "@mail.com")
+                    .age(20 + i)
+                    .build());
+        }
+
+        List<User> page = userDao.findPage(2, 2);
+
+        assertEquals(2, page.size());
+        assertEquals("User2", page.get(0).getUsername());
+        assertEquals("User3", page.get(1).getUsername());
+        assertEquals(5, userDao.count());
+    }
+
+    @Test
+    @DisplayName("findAfterId: возвращает пользователей после указанного курсора")
+    void findAfterId_shouldSeekPastLastId() {
+        for (int i = 0; i < 5; i++) {
+            userDao.create(User.builder()
+                    .username("User" + i)
+                    .email("user" + i + "@mail.com")
+                    .age(20 + i)
+                    .build());
+        }
+
+        List<User> firstPage = userDao.findAfterId(null, 3);
+        List<User> secondPage = userDao.findAfterId(firstPage.getLast().getId(), 3);
+
+        assertEquals(3, firstPage.size());
+        assertEquals(2, secondPage.size());
+        assertTrue(secondPage.getFirst().getId() > firstPage.getLast().getId());
+    }
+
+    @Test
+    @DisplayName("streamAll: обходит всех пользователей по порядку ID")
+    void streamAll_shouldVisitEveryUserInIdOrder() {
+        for (int i = 0; i < 5; i++) {
+            userDao.create(User.builder()
+                    .username("User" + i)
+                    .email("user" + i + "@mail.com")
+                    .age(20 + i)
+                    .build());
+        }
+
+        List<String> visited = new ArrayList<>();
+        long processed = userDao.streamAll(user -> visited.add(user.getUsername()));
+
+        assertEquals(5, processed);
+        assertEquals(List.of("User0", "User1", "User2", "User3", "User4"), visited);
+    }
+
+    @Test
+    @DisplayName("createAll/updateAll/deleteAllById: пакетно сохраняет, обновляет и удаляет пользователей")
+    void bulkOperations_shouldApplyToWholeBatch() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            users.add(User.builder()
+                    .username("User" + i)
+                    .email("bulk" + i + "@mail.com")
+                    .age(20)
+                    .build());
+        }
+
+        assertEquals(120, userDao.createAll(users));
+        assertEquals(120, userDao.count());
+        assertTrue(users.stream().allMatch(user -> user.getId() != null));
+
+        users.forEach(user -> user.setAge(21));
+        assertEquals(120, userDao.updateAll(users));
+        assertEquals(21, userDao.findById(users.getFirst().getId()).orElseThrow().getAge());
+
+        List<Long> ids = users.stream().map(User::getId).toList();
+        assertEquals(120, userDao.deleteAllById(ids));
+        assertEquals(0, userDao.count());
+    }
+
+    @Test
+    @DisplayName("findByEmail/existsByEmail: находят пользователя по натуральному ключу")
+    void findByEmail_shouldLoadUserByNaturalId() {
+        userDao.create(User.builder()
+                .username("Arslan")
+                .email("natural@mail.com")
+                .age(30)
+                .build());
+
+        Optional<User> found = userDao.findByEmail("natural@mail.com");
+
+        assertTrue(found.isPresent());
+        assertEquals("Arslan", found.get().getUsername());
+        assertTrue(userDao.existsByEmail("natural@mail.com"));
+        assertFalse(userDao.existsByEmail("missing@mail.com"));
+        assertTrue(userDao.findByEmail("missing@mail.com").isEmpty());
+    }
+
+    @Test
+    @DisplayName("updateIfExists: обновляет существующего пользователя и сообщает об отсутствующем")
+    void updateIfExists_shouldReportMissingRow() {
+        User user = User.builder()
+                .username("Arslan")
+                .email("conditional@mail.com")
+                .age(30)
+                .build();
+        userDao.create(user);
+
+        user.setAge(31);
+        assertTrue(userDao.updateIfExists(user));
+        assertEquals(31, userDao.findById(user.getId()).orElseThrow().getAge());
+
+        User missing = User.builder()
+                .id(-1L)
+                .username("Ghost")
+                .email("ghost@mail.com")
+                .age(30)
+                .build();
+        assertFalse(userDao.updateIfExists(missing));
+        assertFalse(userDao.existsByEmail("ghost@mail.com"));
+    }
 }
\ No newline at end of file
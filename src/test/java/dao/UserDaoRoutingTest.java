@@ -0,0 +1,129 @@
+package dao;
+
+import entity.User;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import testutils.HibernateUtilForBenchmarks;
+import utils.SessionRouter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Две независимые БД H2 в памяти: основная и «реплика» без репликации.
+ * По тому, какие данные видны при чтении, понятно, куда ушел запрос.
+ */
+public class UserDaoRoutingTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(300);
+
+    private SessionFactory primary;
+    private SessionFactory replica;
+    private SessionFactory secondReplica;
+
+    @BeforeEach
+    void setUp() {
+        primary = HibernateUtilForBenchmarks.openInMemory("routing_primary");
+        replica = HibernateUtilForBenchmarks.openInMemory("routing_replica");
+        secondReplica = HibernateUtilForBenchmarks.openInMemory("routing_replica_2");
+    }
+
+    @AfterEach
+    void tearDown() {
+        primary.close();
+        replica.close();
+        secondReplica.close();
+    }
+
+    @Test
+    @DisplayName("Запись идет в основную БД, чтение без недавних записей — в реплику")
+    void reads_shouldGoToReplicaAndWritesToPrimary() throws Exception {
+        UserDaoImpl userDao = new UserDaoImpl(router(SessionRouter.Strategy.ROUND_ROBIN, replica(replica, () -> 0)));
+        new UserDaoImpl(replica).create(createUser("replica@mail.ru"));
+
+        userDao.create(createUser("primary@mail.ru"));
+
+        List<User> fromOtherThread = CompletableFuture.supplyAsync(userDao::findAll).get();
+        assertEquals(List.of("replica@mail.ru"), emails(fromOtherThread));
+        assertEquals(1, new UserDaoImpl(primary).count());
+    }
+
+    @Test
+    @DisplayName("read-your-writes: свой поток и записанный ID читаются с основной БД в течение окна")
+    void recentWrites_shouldBeReadFromPrimaryWithinWindow() throws Exception {
+        UserDaoImpl userDao = new UserDaoImpl(router(SessionRouter.Strategy.ROUND_ROBIN, replica(replica, () -> 0)));
+        User user = createUser("primary@mail.ru");
+        userDao.create(user);
+
+        assertTrue(userDao.findById(user.getId()).isPresent());
+        assertEquals(1, userDao.findAll().size());
+        Optional<User> byIdFromOtherThread = CompletableFuture.supplyAsync(() -> userDao.findById(user.getId())).get();
+        assertTrue(byIdFromOtherThread.isPresent());
+        Optional<User> byEmailFromOtherThread = CompletableFuture
+                .supplyAsync(() -> userDao.findByEmail("primary@mail.ru")).get();
+        assertTrue(byEmailFromOtherThread.isPresent());
+
+        Thread.sleep(WINDOW.toMillis() + 100);
+
+        assertTrue(userDao.findById(user.getId()).isEmpty());
+        assertTrue(userDao.findAll().isEmpty());
+    }
+
+    @Test
+    @DisplayName("ROUND_ROBIN: чтения чередуются между репликами")
+    void roundRobin_shouldAlternateReplicas() {
+        new UserDaoImpl(secondReplica).create(createUser("second@mail.ru"));
+        UserDaoImpl userDao = new UserDaoImpl(router(SessionRouter.Strategy.ROUND_ROBIN,
+                replica(replica, () -> 0), replica(secondReplica, () -> 0)));
+
+        long first = userDao.count();
+        long second = userDao.count();
+        long third = userDao.count();
+
+        assertNotEquals(first, second);
+        assertEquals(first, third);
+    }
+
+    @Test
+    @DisplayName("LEAST_LOADED: выбирается реплика с наименьшей нагрузкой")
+    void leastLoaded_shouldPickLeastBusyReplica() {
+        new UserDaoImpl(secondReplica).create(createUser("second@mail.ru"));
+        AtomicInteger firstLoad = new AtomicInteger(5);
+        UserDaoImpl userDao = new UserDaoImpl(router(SessionRouter.Strategy.LEAST_LOADED,
+                replica(replica, firstLoad::get), replica(secondReplica, () -> 1)));
+
+        assertEquals(1, userDao.count());
+        assertEquals(1, userDao.count());
+        firstLoad.set(0);
+        assertEquals(0, userDao.count());
+    }
+
+    private SessionRouter router(SessionRouter.Strategy strategy, SessionRouter.Replica... replicas) {
+        return new SessionRouter(primary, List.of(replicas), strategy, WINDOW);
+    }
+
+    private static SessionRouter.Replica replica(SessionFactory sessionFactory, IntSupplier load) {
+        return new SessionRouter.Replica(sessionFactory, load);
+    }
+
+    private static List<String> emails(List<User> users) {
+        return users.stream().map(User::getEmail).toList();
+    }
+
+    private User createUser(String email) {
+        return User.builder()
+                .username("Arslan")
+                .email(email)
+                .age(30)
+                .build();
+    }
+}
@@ -0,0 +1,243 @@
+package dao;
+
+import entity.User;
+import exception.UserException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WriteBehindUserDaoTest {
+
+    @Mock
+    private UserDao<User, Long> delegate;
+
+    private WriteBehindUserDao writeBehindDao;
+
+    @AfterEach
+    void tearDown() {
+        if (writeBehindDao != null) {
+            writeBehindDao.close();
+        }
+    }
+
+    @Test
+    @DisplayName("createAsync: накопленные записи уходят одним пакетом createAll")
+    void createAsync_shouldFlushFullBatchWithCreateAll() {
+        when(delegate.createAll(anyCollection())).thenReturn(3);
+        writeBehindDao = new WriteBehindUserDao(delegate, 10, 3, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        List<CompletableFuture<Boolean>> results = List.of(
+                writeBehindDao.createAsync(createUser("a@mail.ru")),
+                writeBehindDao.createAsync(createUser("b@mail.ru")),
+                writeBehindDao.createAsync(createUser("c@mail.ru")));
+
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+        verify(delegate, times(1)).createAll(argThat(users -> users.size() == 3));
+        verify(delegate, never()).create(any());
+    }
+
+    @Test
+    @DisplayName("create: неполный пакет сбрасывается по таймеру")
+    void create_shouldFlushPartialBatchAfterInterval() {
+        when(delegate.createAll(anyCollection())).thenReturn(1);
+        writeBehindDao = new WriteBehindUserDao(delegate, 10, 100, Duration.ofMillis(20), Duration.ofSeconds(1));
+
+        assertTrue(writeBehindDao.create(createUser("a@mail.ru")));
+        verify(delegate).createAll(argThat(users -> users.size() == 1));
+    }
+
+    @Test
+    @DisplayName("create: при ошибке пакета записи повторяются по одной, ошибка доходит до вызывающего")
+    void create_shouldFallBackToSingleWritesWhenBatchFails() {
+        User good = createUser("a@mail.ru");
+        User bad = createUser("b@mail.ru");
+        when(delegate.createAll(anyCollection())).thenThrow(new UserException("Ошибка пакета"));
+        when(delegate.create(good)).thenReturn(true);
+        when(delegate.create(bad)).thenThrow(new UserException("Дубликат email"));
+        writeBehindDao = new WriteBehindUserDao(delegate, 10, 2, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        CompletableFuture<Boolean> goodResult = writeBehindDao.createAsync(good);
+        CompletableFuture<Boolean> badResult = writeBehindDao.createAsync(bad);
+
+        assertTrue(goodResult.join());
+        CompletionException ex = assertThrows(CompletionException.class, badResult::join);
+        assertEquals("Дубликат email", ex.getCause().getMessage());
+    }
+
+    @Test
+    @DisplayName("flush: create и update группируются в порядке поступления")
+    void flush_shouldKeepOrderBetweenCreateAndUpdateRuns() {
+        when(delegate.createAll(anyCollection())).thenReturn(1);
+        when(delegate.updateAll(anyCollection())).thenReturn(1);
+        writeBehindDao = new WriteBehindUserDao(delegate, 10, 2, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        User user = createUser("a@mail.ru");
+        CompletableFuture<Boolean> created = writeBehindDao.createAsync(user);
+        CompletableFuture<Boolean> updated = writeBehindDao.updateAsync(user);
+        CompletableFuture.allOf(created, updated).join();
+
+        var inOrder = inOrder(delegate);
+        inOrder.verify(delegate).createAll(anyCollection());
+        inOrder.verify(delegate).updateAll(anyCollection());
+    }
+
+    @Test
+    @DisplayName("createAsync: переполненная очередь отклоняет запись после таймаута")
+    void createAsync_shouldRejectWhenQueueIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch flushing = new CountDownLatch(1);
+        when(delegate.createAll(anyCollection())).thenAnswer(invocation -> {
+            flushing.countDown();
+            release.await();
+            return 1;
+        });
+        writeBehindDao = new WriteBehindUserDao(delegate, 1, 1, Duration.ofMinutes(1), Duration.ofMillis(50));
+
+        writeBehindDao.createAsync(createUser("a@mail.ru"));
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+        writeBehindDao.createAsync(createUser("b@mail.ru"));
+
+        assertThrows(UserException.class, () -> writeBehindDao.createAsync(createUser("c@mail.ru")));
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("close: дожидается записи всех операций из очереди")
+    void close_shouldDrainPendingWrites() {
+        when(delegate.createAll(anyCollection())).thenReturn(2);
+        writeBehindDao = new WriteBehindUserDao(delegate, 10, 100, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        CompletableFuture<Boolean> first = writeBehindDao.createAsync(createUser("a@mail.ru"));
+        CompletableFuture<Boolean> second = writeBehindDao.createAsync(createUser("b@mail.ru"));
+        writeBehindDao.close();
+
+        assertTrue(first.isDone() && second.isDone());
+        assertEquals(0, writeBehindDao.pendingWrites());
+        assertThrows(UserException.class, () -> writeBehindDao.createAsync(createUser("c@mail.ru")));
+    }
+
+    @Test
+    @DisplayName("create: не ждет подтверждения дольше writeTimeout")
+    void create_shouldFailWhenWriteIsNotConfirmedInTime() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.createAll(anyCollection())).thenAnswer(invocation -> {
+            release.await();
+            return 1;
+        });
+        writeBehindDao = new WriteBehindUserDao(delegate, 10, 1, Duration.ofMinutes(1), Duration.ofSeconds(1),
+                Duration.ofMillis(50));
+
+        UserException ex = assertThrows(UserException.class, () -> writeBehindDao.create(createUser("a@mail.ru")));
+        assertTrue(ex.getMessage().startsWith("Запись не подтверждена"));
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("close: каждая принятая во время закрытия запись получает результат")
+    void close_shouldCompleteEveryAcceptedWriteWhenRacingWithEnqueue() throws InterruptedException {
+        when(delegate.createAll(anyCollection())).thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+        writeBehindDao = new WriteBehindUserDao(delegate, 1_000, 10, Duration.ofMillis(1), Duration.ofSeconds(1));
+        List<CompletableFuture<Boolean>> accepted = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(4);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            writers.add(Thread.ofPlatform().start(() -> {
+                started.countDown();
+                for (int i = 0; i < 200; i++) {
+                    try {
+                        accepted.add(writeBehindDao.createAsync(createUser(i + "@mail.ru")));
+                    } catch (UserException ex) {
+                        return;
+                    }
+                }
+            }));
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        writeBehindDao.close();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertTrue(accepted.stream().allMatch(CompletableFuture::isDone));
+        assertEquals(0, writeBehindDao.pendingWrites());
+    }
+
+    @Test
+    @DisplayName("delete: выполняется после создания, которое еще ждет в очереди")
+    void delete_shouldRunAfterQueuedCreate() {
+        when(delegate.createAll(anyCollection())).thenReturn(1);
+        when(delegate.delete(1L)).thenReturn(true);
+        writeBehindDao = new WriteBehindUserDao(delegate, 10, 2, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        CompletableFuture<Boolean> created = writeBehindDao.createAsync(createUser("a@mail.ru"));
+        assertTrue(writeBehindDao.delete(1L));
+
+        assertTrue(created.join());
+        var inOrder = inOrder(delegate);
+        inOrder.verify(delegate).createAll(anyCollection());
+        inOrder.verify(delegate).delete(1L);
+    }
+
+    @Test
+    @DisplayName("updateIfExists: идет пакетом updateAll, при недоборе строк результат уточняется по одной")
+    void updateIfExists_shouldBatchAndReportMissingRows() {
+        User existing = createUser("a@mail.ru");
+        existing.setId(1L);
+        User missing = createUser("b@mail.ru");
+        missing.setId(2L);
+        when(delegate.updateAll(anyCollection())).thenReturn(1);
+        when(delegate.updateIfExists(existing)).thenReturn(true);
+        when(delegate.updateIfExists(missing)).thenReturn(false);
+        writeBehindDao = new WriteBehindUserDao(delegate, 10, 2, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        CompletableFuture<Boolean> first = writeBehindDao.updateIfExistsAsync(existing);
+        CompletableFuture<Boolean> second = writeBehindDao.updateIfExistsAsync(missing);
+
+        assertTrue(first.join());
+        assertFalse(second.join());
+        verify(delegate).updateAll(argThat(users -> users.size() == 2));
+    }
+
+    @Test
+    @DisplayName("deleteAllById: сначала дожидается записей, принятых раньше")
+    void deleteAllById_shouldWaitForQueuedWrites() {
+        when(delegate.createAll(anyCollection())).thenReturn(1);
+        when(delegate.deleteAllById(List.of(1L))).thenReturn(1);
+        writeBehindDao = new WriteBehindUserDao(delegate, 10, 100, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        CompletableFuture<Boolean> created = writeBehindDao.createAsync(createUser("a@mail.ru"));
+        assertEquals(1, writeBehindDao.deleteAllById(List.of(1L)));
+
+        assertTrue(created.isDone());
+        var inOrder = inOrder(delegate);
+        inOrder.verify(delegate).createAll(anyCollection());
+        inOrder.verify(delegate).deleteAllById(List.of(1L));
+    }
+
+    private User createUser(String email) {
+        return User.builder()
+                .username("Arslan")
+                .email(email)
+                .age(30)
+                .build();
+    }
+}
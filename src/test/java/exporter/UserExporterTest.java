@@ -0,0 +1,83 @@
+package exporter;
+
+import dao.UserDao;
+import entity.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import service.UserService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserExporterTest {
+
+    @Mock
+    private UserDao<User, Long> userDao;
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    @DisplayName("export: параллельно выгружает диапазоны ID и склеивает их по порядку")
+    void export_shouldMergePartsInIdOrder() throws IOException {
+        when(userDao.findMinId()).thenReturn(Optional.of(1L));
+        when(userDao.findMaxId()).thenReturn(Optional.of(4L));
+        when(userDao.streamRange(anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            long from = invocation.getArgument(0);
+            long to = invocation.getArgument(1);
+            Consumer<User> action = invocation.getArgument(2);
+            for (long id = from; id < to; id++) {
+                action.accept(User.builder().id(id).username("User" + id).email("u" + id + "@mail.com").age(20).build());
+            }
+            return to - from;
+        });
+        Path target = tempDir.resolve("users.csv");
+
+        ExportReport report = new UserExporter(new UserService(userDao)).export(target, 2);
+
+        assertEquals(4, report.rows());
+        assertEquals(2, report.parts());
+        assertEquals(List.of(
+                "id,username,email,age,created_at",
+                "1,User1,u1@mail.com,20,",
+                "2,User2,u2@mail.com,20,",
+                "3,User3,u3@mail.com,20,",
+                "4,User4,u4@mail.com,20,"
+        ), Files.readAllLines(target));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count(), "Временные части должны быть удалены");
+        }
+    }
+
+    @Test
+    @DisplayName("export: пишет NDJSON построчно и экранирует строки")
+    void export_shouldWriteNdjson() throws IOException {
+        when(userDao.findMinId()).thenReturn(Optional.of(7L));
+        when(userDao.findMaxId()).thenReturn(Optional.of(7L));
+        when(userDao.streamRange(eq(7L), eq(8L), any())).thenAnswer(invocation -> {
+            Consumer<User> action = invocation.getArgument(2);
+            action.accept(User.builder().id(7L).username("A\"B").email("ab@mail.com").age(30).build());
+            return 1L;
+        });
+        Path target = tempDir.resolve("users.ndjson");
+
+        new UserExporter(new UserService(userDao)).export(target, 4);
+
+        assertEquals(List.of("{\"id\":7,\"username\":\"A\\\"B\",\"email\":\"ab@mail.com\",\"age\":30,\"createdAt\":null}"),
+                Files.readAllLines(target));
+    }
+}
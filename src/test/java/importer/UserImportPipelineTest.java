@@ -0,0 +1,80 @@
+package importer;
+
+import dao.UserDao;
+import entity.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import service.UserService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserImportPipelineTest {
+
+    @Mock
+    private UserDao<User, Long> userDao;
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    @DisplayName("run: загружает валидные строки CSV пакетами и пишет отклоненные в файл ошибок")
+    void run_shouldImportValidCsvRowsAndRejectInvalid() throws IOException {
+        Path source = tempDir.resolve("users.csv");
+        Files.write(source, List.of(
+                "username,email,age",
+                "Arslan,ismailov@yandex.ru,30",
+                "Iba,ibragim@mail.com,35",
+                ",empty@mail.com,20",
+                "Broken,not-an-email,40",
+                "Aslan,aslan@mail.com,abc"
+        ));
+        Path errors = tempDir.resolve("users.csv.errors");
+        when(userDao.createAll(anyCollection()))
+                .thenAnswer(invocation -> invocation.<Collection<?>>getArgument(0).size());
+
+        ImportReport report = new UserImportPipeline(new UserService(userDao), new ImportOptions(2, 2, 2, 10))
+                .run(source, errors);
+
+        assertEquals(5, report.totalRows());
+        assertEquals(2, report.importedRows());
+        assertEquals(3, report.rejectedRows());
+        List<String> rejected = Files.readAllLines(errors);
+        assertEquals(3, rejected.size());
+        assertTrue(rejected.stream().anyMatch(line -> line.startsWith("4;Имя пользователя обязательно")));
+        assertTrue(rejected.stream().anyMatch(line -> line.startsWith("5;Некорректный адрес электронной почты")));
+        assertTrue(rejected.stream().anyMatch(line -> line.startsWith("6;Некорректный возраст")));
+    }
+
+    @Test
+    @DisplayName("run: читает NDJSON и передает все строки в DAO")
+    void run_shouldImportNdjson() throws IOException {
+        Path source = tempDir.resolve("users.ndjson");
+        Files.write(source, List.of(
+                "{\"username\":\"Arslan\",\"email\":\"ismailov@yandex.ru\",\"age\":30}",
+                "{\"username\":\"Iba\",\"email\":\"ibragim@mail.com\",\"age\":35}"
+        ));
+        when(userDao.createAll(anyCollection()))
+                .thenAnswer(invocation -> invocation.<Collection<?>>getArgument(0).size());
+
+        ImportReport report = new UserImportPipeline(new UserService(userDao), new ImportOptions(1, 10, 1, 10))
+                .run(source, tempDir.resolve("users.ndjson.errors"));
+
+        assertEquals(2, report.importedRows());
+        assertEquals(0, report.rejectedRows());
+        verify(userDao).createAll(anyCollection());
+        verifyNoMoreInteractions(userDao);
+    }
+}
@@ -0,0 +1,77 @@
+package service;
+
+import dao.UserDao;
+import entity.User;
+import exception.UserException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import utils.HibernateUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AsyncUserServiceTest {
+
+    @Mock
+    private UserDao<User, Long> userDao;
+
+    @Test
+    @DisplayName("Лимит по умолчанию — размер пула из настроек, SessionFactory ради него не строится")
+    void defaultConcurrency_shouldComeFromPoolSettingsWithoutBuildingPool() {
+        boolean initialized = HibernateUtil.isInitialized();
+
+        assertEquals(10, HibernateUtil.getMaxPoolSize());
+        assertEquals(initialized, HibernateUtil.isInitialized());
+    }
+
+    @Test
+    @DisplayName("getUserById: не пускает к DAO больше запросов, чем задано лимитом")
+    void getUserById_shouldRespectConcurrencyLimit() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(userDao.findById(anyLong())).thenAnswer(invocation -> {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            Thread.sleep(5);
+            inFlight.decrementAndGet();
+            return Optional.of(new User());
+        });
+
+        try (AsyncUserService asyncService = new AsyncUserService(new UserService(userDao), 3)) {
+            List<CompletableFuture<Optional<User>>> futures = new ArrayList<>();
+            for (long id = 1; id <= 200; id++) {
+                futures.add(asyncService.getUserById(id));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+            assertTrue(futures.stream().allMatch(future -> future.join().isPresent()));
+            assertTrue(maxInFlight.get() <= 3, "Одновременно выполнялось " + maxInFlight.get());
+            assertEquals(3, asyncService.availablePermits());
+        }
+    }
+
+    @Test
+    @DisplayName("deleteUser: ошибка сервиса завершает future исключением UserException")
+    void deleteUser_shouldCompleteExceptionally_whenUserMissing() {
+        when(userDao.delete(1L)).thenReturn(false);
+
+        try (AsyncUserService asyncService = new AsyncUserService(new UserService(userDao), 2)) {
+            CompletionException exception = assertThrows(CompletionException.class,
+                    () -> asyncService.deleteUser(1L).join());
+            assertInstanceOf(UserException.class, exception.getCause());
+            assertEquals("Пользователь с ID 1 не найден", exception.getCause().getMessage());
+        }
+    }
+}
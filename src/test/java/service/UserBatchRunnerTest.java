@@ -0,0 +1,93 @@
+package service;
+
+import dao.UserDao;
+import entity.User;
+import exception.UserException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserBatchRunnerTest {
+
+    @Mock
+    private UserDao<User, Long> userDao;
+
+    @Test
+    @DisplayName("run: подряд идущие команды одного типа уходят одним пакетом")
+    void run_shouldGroupConsecutiveCommandsIntoBatches() {
+        when(userDao.createAll(anyCollection())).thenAnswer(invocation -> invocation.<Collection<?>>getArgument(0).size());
+        when(userDao.deleteAllById(anyCollection())).thenAnswer(invocation -> invocation.<Collection<?>>getArgument(0).size());
+        String script = """
+                # создание
+                create Arslan ismailov@yandex.ru 30
+                create   Iba    ibragim@mail.com   35
+
+                delete 7
+                delete 8
+                create Aslan aslan@mail.com 20
+                """;
+
+        BatchReport report = new UserBatchRunner(new UserService(userDao)).run(new StringReader(script));
+
+        assertEquals(5, report.operations());
+        assertEquals(3, report.created());
+        assertEquals(2, report.deleted());
+        assertEquals(0, report.failed());
+        assertEquals(3, report.batches());
+        verify(userDao).createAll(argThat(users -> users.size() == 2));
+        verify(userDao).deleteAllById(List.of(7L, 8L));
+        verify(userDao).createAll(argThat(users -> users.size() == 1));
+    }
+
+    @Test
+    @DisplayName("run: ошибочные строки пропускаются, пакет режется по размеру")
+    void run_shouldRejectInvalidLinesAndSplitBySize() {
+        when(userDao.updateAll(anyCollection())).thenAnswer(invocation -> invocation.<Collection<?>>getArgument(0).size());
+        String script = """
+                update 1 Arslan ismailov@yandex.ru 30
+                update 2 Iba not-an-email 35
+                update x Iba ibragim@mail.com 35
+                rename 3
+                delete
+                update 3 Iba ibragim@mail.com 35
+                update 4 Aslan aslan@mail.com 20
+                """;
+
+        BatchReport report = new UserBatchRunner(new UserService(userDao), 2).run(new StringReader(script));
+
+        assertEquals(7, report.operations());
+        assertEquals(3, report.updated());
+        assertEquals(4, report.failed());
+        verify(userDao, times(2)).updateAll(anyCollection());
+    }
+
+    @Test
+    @DisplayName("run: отклоненный БД пакет повторяется по одной команде")
+    void run_shouldRetrySingleCommandsWhenBatchFails() {
+        when(userDao.createAll(anyCollection())).thenThrow(new UserException("Ошибка при пакетном сохранении пользователей"));
+        when(userDao.create(any())).thenReturn(true)
+                .thenThrow(new UserException("Ошибка при сохранении пользователя", new IllegalStateException("duplicate")));
+        String script = """
+                create Arslan ismailov@yandex.ru 30
+                create Iba ismailov@yandex.ru 35
+                """;
+
+        BatchReport report = new UserBatchRunner(new UserService(userDao)).run(new StringReader(script));
+
+        assertEquals(1, report.created());
+        assertEquals(1, report.failed());
+        verify(userDao, times(2)).create(any());
+    }
+}
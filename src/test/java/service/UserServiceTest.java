@@ -4,6 +4,9 @@ import dao.UserDao;
 import entity.User;
 import exception.UserException;
 import lombok.extern.slf4j.Slf4j;
+import metrics.MetricsRegistry;
+import metrics.OperationTimer;
+import metrics.TimerSnapshot;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,6 +16,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -92,7 +96,7 @@ public class UserServiceTest {
     void updateUser_shouldThrowException_whenUserNotFound() {
         User user = createValidUser();
         user.setId(1L);
-        when(userDao.findById(user.getId())).thenReturn(Optional.empty());
+        when(userDao.updateIfExists(user)).thenReturn(false);
         Exception exception = assertThrows(UserException.class,() -> userService.updateUser(user));
         assertEquals("Пользователь с ID " + user.getId() + " не найден",  exception.getMessage());
         verifyNoMoreInteractions(userDao);
@@ -103,11 +107,10 @@ public class UserServiceTest {
     void updateUser_shouldUpdateExistingUser() {
         User user = createValidUser();
         user.setId(1L);
-        when(userDao.findById(user.getId())).thenReturn(Optional.of(user));
-        when(userDao.update(user)).thenReturn(true);
+        when(userDao.updateIfExists(user)).thenReturn(true);
         boolean result = userService.updateUser(user);
         assertTrue(result);
-        verify(userDao).update(userCaptor.capture());
+        verify(userDao).updateIfExists(userCaptor.capture());
         User actualUser = userCaptor.getValue();
         assertEquals(user, actualUser);
         verifyNoMoreInteractions(userDao);
@@ -121,11 +124,9 @@ public class UserServiceTest {
     @DisplayName("deleteUser: успешно удаляет пользователя, если он существует")
     void deleteUser_shouldReturnTrue_whenUserExistsAndDeleted() {
         Long id = 1L;
-        when(userDao.findById(id)).thenReturn(Optional.of(new User()));
         when(userDao.delete(id)).thenReturn(true);
         boolean result = userService.deleteUser(id);
         assertTrue(result);
-        verify(userDao).findById(id);
         verify(userDao).delete(id);
         verifyNoMoreInteractions(userDao);
     }
@@ -134,7 +135,7 @@ public class UserServiceTest {
     @DisplayName("deleteUser: должен выбросить исключение, если пользователь с переданным ID не найден в базе данных")
     void deleteUser_shouldThrowException_whenIdInvalid() {
         Long id = 1L;
-        when(userDao.findById(id)).thenReturn(Optional.empty());
+        when(userDao.delete(id)).thenReturn(false);
         Exception exception = assertThrows(UserException.class,() -> userService.deleteUser(id));
         assertEquals("Пользователь с ID " + id + " не найден",  exception.getMessage());
         verifyNoMoreInteractions(userDao);
@@ -202,6 +203,124 @@ public class UserServiceTest {
     }
 
 
+    /** getUsersPage / getUsersAfterId
+     * МЕТОДЫ ПОСТРАНИЧНОГО ПОЛУЧЕНИЯ ПОЛЬЗОВАТЕЛЕЙ!
+     * */
+
+    @Test
+    @DisplayName("getUsersPage: запрашивает у DAO страницу с правильным смещением")
+    void getUsersPage_shouldRequestOffsetAndLimit() {
+        List<User> users = List.of(createValidUser());
+        when(userDao.findPage(40, 20)).thenReturn(users);
+        List<User> result = userService.getUsersPage(2, 20);
+        assertEquals(users, result);
+        verifyNoMoreInteractions(userDao);
+    }
+
+    @Test
+    @DisplayName("getUsersPage: бросает исключение, если размер страницы превышает лимит")
+    void getUsersPage_shouldThrowException_whenSizeTooLarge() {
+        Exception exception = assertThrows(UserException.class,
+                () -> userService.getUsersPage(0, UserService.MAX_PAGE_SIZE + 1));
+        assertEquals("Размер страницы должен быть от 1 до " + UserService.MAX_PAGE_SIZE, exception.getMessage());
+        verifyNoInteractions(userDao);
+    }
+
+    @Test
+    @DisplayName("getUsersPage: бросает исключение, если номер страницы отрицательный")
+    void getUsersPage_shouldThrowException_whenPageNegative() {
+        Exception exception = assertThrows(UserException.class, () -> userService.getUsersPage(-1, 10));
+        assertEquals("Некорректный номер страницы", exception.getMessage());
+        verifyNoInteractions(userDao);
+    }
+
+    @Test
+    @DisplayName("getUsersAfterId: возвращает следующую страницу по курсору")
+    void getUsersAfterId_shouldDelegateToKeysetQuery() {
+        List<User> users = List.of(createValidUser());
+        when(userDao.findAfterId(100L, 50)).thenReturn(users);
+        List<User> result = userService.getUsersAfterId(100L, 50);
+        assertEquals(users, result);
+        verifyNoMoreInteractions(userDao);
+    }
+
+
+    /** saveUsers / deleteUsers
+     * МЕТОДЫ ПАКЕТНОЙ ЗАПИСИ ПОЛЬЗОВАТЕЛЕЙ!
+     * */
+
+    @Test
+    @DisplayName("saveUsers: сохраняет пакет пользователей одним вызовом DAO")
+    void saveUsers_shouldCreateWholeBatch() {
+        List<User> users = List.of(
+                createValidUser(),
+                User.builder().username("Ibrahim").email("ismailov006@yandex.ru").age(31).build()
+        );
+        when(userDao.createAll(users)).thenReturn(2);
+        assertEquals(2, userService.saveUsers(users));
+        verifyNoMoreInteractions(userDao);
+    }
+
+    @Test
+    @DisplayName("saveUsers: не обращается к DAO, если в пакете есть невалидный пользователь")
+    void saveUsers_shouldThrowException_whenAnyUserInvalid() {
+        User invalid = createValidUser();
+        invalid.setEmail("ismailov05.ru");
+        List<User> users = List.of(createValidUser(), invalid);
+        Exception exception = assertThrows(UserException.class, () -> userService.saveUsers(users));
+        assertEquals("Некорректный адрес электронной почты", exception.getMessage());
+        verifyNoInteractions(userDao);
+    }
+
+    @Test
+    @DisplayName("deleteUsers: бросает исключение для пустого пакета")
+    void deleteUsers_shouldThrowException_whenBatchEmpty() {
+        Exception exception = assertThrows(UserException.class, () -> userService.deleteUsers(List.of()));
+        assertEquals("Пакет пользователей не может быть пустым", exception.getMessage());
+        verifyNoInteractions(userDao);
+    }
+
+
+    @Test
+    @DisplayName("getUserByEmail: бросает исключение для пустого email, не обращаясь к DAO")
+    void getUserByEmail_shouldThrowException_whenEmailBlank() {
+        Exception exception = assertThrows(UserException.class, () -> userService.getUserByEmail(" "));
+        assertEquals("Некорректный адрес электронной почты", exception.getMessage());
+        verifyNoInteractions(userDao);
+    }
+
+
+
+    @Test
+    @DisplayName("getAgeHistogram/getSignupsPerDay: некорректные параметры отчета не доходят до DAO")
+    void analytics_shouldRejectInvalidArguments() {
+        LocalDate today = LocalDate.now();
+        assertThrows(UserException.class, () -> userService.getAgeHistogram(0, 10));
+        assertThrows(UserException.class, () -> userService.getAgeHistogram(10, UserService.MAX_HISTOGRAM_BUCKETS + 1));
+        assertThrows(UserException.class, () -> userService.getSignupsPerDay(today, today));
+        assertThrows(UserException.class,
+                () -> userService.getSignupsPerDay(today.minusDays(UserService.MAX_REPORT_DAYS + 1), today));
+        verifyNoInteractions(userDao);
+    }
+
+
+    @Test
+    @DisplayName("service.saveUser: ошибка валидации замеряется и считается по причине, до DAO не доходит")
+    void saveUser_shouldCountValidationErrorInServiceTimer() {
+        OperationTimer timer = MetricsRegistry.global().timer("service.saveUser");
+        TimerSnapshot before = timer.snapshot();
+        User invalid = createValidUser();
+        invalid.setEmail("not-an-email");
+
+        assertThrows(UserException.class, () -> userService.saveUser(invalid));
+
+        TimerSnapshot after = timer.snapshot();
+        assertEquals(before.count() + 1, after.count());
+        String cause = UserException.class.getName();
+        assertEquals(before.errorsByCause().getOrDefault(cause, 0L) + 1, after.errorsByCause().get(cause));
+        verifyNoInteractions(userDao);
+    }
+
     private User createValidUser() {
         return User.builder()
                 .username("Arslan")
@@ -0,0 +1,95 @@
+package service;
+
+import com.sun.management.ThreadMXBean;
+import entity.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserValidatorTest {
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$");
+
+    @Test
+    @DisplayName("isValidEmail: совпадает с исходным регулярным выражением")
+    void isValidEmail_shouldMatchRegexSemantics() {
+        String[] emails = {
+                "ismailov@yandex.ru", "a@b.co", "a.b-c_d%e+f@sub.domain.org", "x@1.2.ab", "ismailov05.ru",
+                "@mail.ru", "a@.ru", "a@b.r", "a@b.ru1", "a@@b.ru", "a@b_c.ru", "a b@c.ru", "a@b..ru", "a@b.ru.",
+                "", "a@", "a@b", "a@-.ru", "Ivan@MAIL.RU", "a@b.c.d.ef"
+        };
+        for (String email : emails) {
+            assertEquals(EMAIL_PATTERN.matcher(email).matches(), UserValidator.isValidEmail(email), email);
+        }
+    }
+
+    @Test
+    @DisplayName("validate: собирает все нарушения за один проход")
+    void validate_shouldReportAllViolations() {
+        User user = User.builder()
+                .username("VeryLongUsername16")
+                .email("not-an-email-but-very-long.ru")
+                .build();
+
+        int violations = UserValidator.validate(user);
+
+        assertEquals(UserValidator.USERNAME_TOO_LONG | UserValidator.EMAIL_INVALID
+                | UserValidator.EMAIL_TOO_LONG | UserValidator.AGE_REQUIRED, violations);
+        assertEquals("Имя пользователя не должно быть длиннее 15 символов; "
+                + "Некорректный адрес электронной почты; "
+                + "Адрес электронной почты не должен быть длиннее 25 символов; "
+                + "Возраст пользователя обязателен", UserValidator.describe(violations));
+    }
+
+    @Test
+    @DisplayName("validate: отрицательный возраст отклоняется, ноль допустим")
+    void validate_shouldRejectNegativeAge() {
+        User user = User.builder()
+                .username("Arslan")
+                .email("ismailov@yandex.ru")
+                .age(-1)
+                .build();
+
+        assertEquals(UserValidator.AGE_NEGATIVE, UserValidator.validate(user));
+        assertEquals("Возраст пользователя не может быть отрицательным",
+                UserValidator.describe(UserValidator.AGE_NEGATIVE));
+        user.setAge(0);
+        assertEquals(0, UserValidator.validate(user));
+    }
+
+    @Test
+    @DisplayName("validate: лимиты длины берутся из @Column")
+    void validate_shouldUseColumnLengths() {
+        assertEquals(15, UserValidator.USERNAME_MAX_LENGTH);
+        assertEquals(25, UserValidator.EMAIL_MAX_LENGTH);
+    }
+
+    @Test
+    @DisplayName("validate: не выделяет память для валидного пользователя")
+    void validate_shouldNotAllocateForValidUser() {
+        User user = User.builder()
+                .username("Arslan")
+                .email("ismailov@yandex.ru")
+                .age(30)
+                .build();
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        for (int i = 0; i < 10_000; i++) {
+            UserValidator.validate(user);
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        int violations = 0;
+        for (int i = 0; i < 100_000; i++) {
+            violations |= UserValidator.validate(user);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(0, violations);
+        assertTrue(allocated < 1_024, "Ожидались нулевые аллокации, выделено байт: " + allocated);
+    }
+}
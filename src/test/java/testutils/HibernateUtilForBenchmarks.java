@@ -0,0 +1,36 @@
+package testutils;
+
+import entity.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class HibernateUtilForBenchmarks {
+
+    public static SessionFactory openInMemory(String databaseName) {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("hibernate.connection.driver_class", "org.h2.Driver");
+        settings.put("hibernate.connection.url", "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1");
+        settings.put("hibernate.connection.username", "sa");
+        settings.put("hibernate.connection.password", "");
+        settings.put("hibernate.connection.pool_size", 32);
+        settings.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        settings.put("hibernate.show_sql", false);
+        settings.put("hibernate.hbm2ddl.auto", "create-drop");
+        settings.put("hibernate.jdbc.batch_size", 50);
+        settings.put("hibernate.order_inserts", true);
+        settings.put("hibernate.order_updates", true);
+
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySettings(settings)
+                .build();
+        return new MetadataSources(registry)
+                .addAnnotatedClass(User.class)
+                .buildMetadata()
+                .buildSessionFactory();
+    }
+}
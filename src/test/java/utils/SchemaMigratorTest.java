@@ -0,0 +1,149 @@
+package utils;
+
+import exception.UserException;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SchemaMigratorTest {
+
+    private static final List<String> SCRIPTS = List.of("V1__create_items.sql", "V2__items_name_index.sql");
+
+    private JdbcDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:schema_migrator;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    @Test
+    @DisplayName("migrate: скрипты применяются по порядку один раз и записываются в schema_version")
+    void migrate_shouldApplyScriptsOnce() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(dataSource, "db/test-migration", SCRIPTS);
+
+        assertEquals(2, migrator.migrate());
+        assertEquals(0, migrator.migrate());
+
+        assertEquals("a;b 'quoted'", queryString("SELECT name FROM items WHERE id = 1"));
+        assertEquals("items name index", queryString("SELECT description FROM schema_version WHERE version = 2"));
+        assertEquals("2", queryString("SELECT count(*) FROM schema_version"));
+        assertEquals("2", queryString(
+                "SELECT count(*) FROM information_schema.indexes WHERE index_name IN ('ITEMS_NAME_IDX', 'ITEMS_NAME_ID_KEY')"));
+    }
+
+    @Test
+    @DisplayName("migrate: скрипт без транзакции, упавший на середине, не записывается и повторяется с начала")
+    void migrate_shouldRerunNonTransactionalScriptAfterPartialFailure() throws SQLException {
+        new SchemaMigrator(dataSource, "db/test-migration-rerun", List.of("V1__create_items.sql")).migrate();
+        execute("INSERT INTO items (id, name) VALUES (1, 'same'), (2, 'same')");
+        SchemaMigrator migrator = new SchemaMigrator(dataSource, "db/test-migration-rerun",
+                List.of("V1__create_items.sql", "V2__items_name_unique.sql"));
+
+        UserException ex = assertThrows(UserException.class, migrator::migrate);
+        assertTrue(ex.getCause().getMessage().contains("V2__items_name_unique.sql"));
+        assertEquals("1", queryString("SELECT count(*) FROM schema_version"));
+        assertEquals("1", queryString("SELECT count(*) FROM information_schema.indexes WHERE index_name = 'ITEMS_NAME_IDX'"));
+
+        execute("DELETE FROM items WHERE id = 2");
+
+        assertEquals(1, migrator.migrate());
+        assertEquals("2", queryString("SELECT count(*) FROM schema_version"));
+        assertEquals("2", queryString(
+                "SELECT count(*) FROM information_schema.indexes WHERE index_name IN ('ITEMS_NAME_IDX', 'ITEMS_NAME_KEY')"));
+    }
+
+    @Test
+    @DisplayName("migrate: измененный после применения скрипт останавливает запуск")
+    void migrate_shouldRejectChangedScript() {
+        new SchemaMigrator(dataSource, "db/test-migration", SCRIPTS).migrate();
+
+        SchemaMigrator changed = new SchemaMigrator(dataSource, "db/test-migration-changed", List.of("V1__create_items.sql"));
+
+        UserException ex = assertThrows(UserException.class, changed::migrate);
+        assertTrue(ex.getMessage().contains("V1__create_items.sql"));
+    }
+
+    @Test
+    @DisplayName("migrate: версии должны возрастать, отсутствующий скрипт — ошибка")
+    void migrate_shouldValidateScriptList() {
+        assertThrows(UserException.class, () -> new SchemaMigrator(dataSource, "db/test-migration",
+                List.of("V2__items_name_index.sql", "V1__create_items.sql")).migrate());
+        assertThrows(UserException.class, () -> new SchemaMigrator(dataSource, "db/test-migration",
+                List.of("V3__missing.sql")).migrate());
+    }
+
+    @Test
+    @DisplayName("migrate: занятая блокировка PostgreSQL опрашивается без ожидания в БД и ограничена таймаутом")
+    void migrate_shouldPollAdvisoryLockUntilTimeout() throws SQLException {
+        DataSource postgres = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        PreparedStatement tryLock = mock(PreparedStatement.class);
+        ResultSet lockTaken = mock(ResultSet.class);
+        when(postgres.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        when(connection.prepareStatement("SELECT pg_try_advisory_lock(?)")).thenReturn(tryLock);
+        when(tryLock.executeQuery()).thenReturn(lockTaken);
+        when(lockTaken.next()).thenReturn(true);
+        when(lockTaken.getBoolean(1)).thenReturn(false);
+
+        SchemaMigrator migrator = new SchemaMigrator(postgres, "db/test-migration", SCRIPTS, Duration.ofMillis(600));
+
+        assertThrows(UserException.class, migrator::migrate);
+        verify(tryLock, atLeast(2)).executeQuery();
+        verify(connection, never()).prepareStatement("SELECT pg_advisory_lock(?)");
+        verify(connection, never()).createStatement();
+    }
+
+    @Test
+    @DisplayName("split: операторы делятся по ';' вне строк и комментариев")
+    void split_shouldIgnoreSeparatorsInStringsAndComments() {
+        List<String> statements = SchemaMigrator.split("""
+                -- комментарий; не оператор
+                SELECT 'x;y';
+                /* блок; */ SELECT 2
+                """);
+
+        assertEquals(List.of("SELECT 'x;y'", "SELECT 2"), statements);
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private String queryString(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(sql)) {
+            assertTrue(rows.next());
+            return rows.getString(1);
+        }
+    }
+}
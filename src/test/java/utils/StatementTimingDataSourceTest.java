@@ -0,0 +1,148 @@
+package utils;
+
+import dao.UserDaoImpl;
+import entity.User;
+import exception.UserException;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import service.UserService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementTimingDataSourceTest {
+
+    private SessionFactory sessionFactory;
+    private UserDaoImpl userDao;
+    private QueryBudget.Mode previousMode;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:statement_timing;DB_CLOSE_DELAY=-1");
+        h2.setUser("sa");
+        sessionFactory = new MetadataSources(new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.JAKARTA_NON_JTA_DATASOURCE, new StatementTimingDataSource(h2, Duration.ZERO))
+                .applySetting(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect")
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, 50)
+                .build())
+                .addAnnotatedClass(User.class)
+                .buildMetadata()
+                .buildSessionFactory();
+        userDao = new UserDaoImpl(sessionFactory);
+        previousMode = QueryBudget.mode();
+        QueryBudget.setMode(QueryBudget.Mode.FAIL);
+    }
+
+    @AfterEach
+    void tearDown() {
+        QueryBudget.setMode(previousMode);
+        sessionFactory.close();
+    }
+
+    @Test
+    @DisplayName("Каждый выполненный запрос засчитывается в счетчик текущего потока")
+    void statements_shouldBeCountedPerThread() {
+        long mark = QueryBudget.mark();
+
+        userDao.count();
+        userDao.findAll();
+
+        assertEquals(2, QueryBudget.mark() - mark);
+    }
+
+    @Test
+    @DisplayName("Операции сервиса укладываются в бюджет, в том числе пакетные")
+    void serviceOperations_shouldFitBudget() {
+        UserService userService = new UserService(userDao);
+        User user = createUser("single@mail.ru");
+
+        assertTrue(userService.saveUser(user));
+        assertTrue(userService.getUserById(user.getId()).isPresent());
+        assertTrue(userService.existsByEmail("single@mail.ru"));
+        List<User> batch = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            batch.add(createUser("batch" + i + "@mail.ru"));
+        }
+        assertEquals(120, userService.saveUsers(batch));
+        assertTrue(userService.deleteUser(user.getId()));
+    }
+
+    @Test
+    @DisplayName("fail: превышение бюджета — ошибка с именем операции")
+    void check_shouldFailWhenBudgetExceeded() {
+        long mark = QueryBudget.mark();
+        for (int i = 0; i < 3; i++) {
+            userDao.count();
+        }
+
+        UserException ex = assertThrows(UserException.class, () -> QueryBudget.check("test.loop", mark, 1));
+        assertTrue(ex.getMessage().contains("test.loop"));
+        QueryBudget.setMode(QueryBudget.Mode.WARN);
+        assertDoesNotThrow(() -> QueryBudget.check("test.loop", mark, 1));
+    }
+
+    @Test
+    @DisplayName("fail: превышение бюджета до коммита откатывает запись")
+    void open_shouldRollBackWriteWhenBudgetExceededBeforeCommit() {
+        UserException ex = assertThrows(UserException.class, () -> {
+            try (QueryBudget.Scope ignored = QueryBudget.open("test.save", 0)) {
+                userDao.create(createUser("rollback@mail.ru"));
+            }
+        });
+
+        assertTrue(rootCause(ex).getMessage().contains("test.save"));
+        assertEquals(0, userDao.count());
+    }
+
+    @Test
+    @DisplayName("fail: после коммита превышение бюджета не превращает сохраненную запись в ошибку")
+    void open_shouldNotFailOperationAfterCommit() {
+        assertDoesNotThrow(() -> {
+            try (QueryBudget.Scope ignored = QueryBudget.open("test.save", 3)) {
+                userDao.create(createUser("committed@mail.ru"));
+                userDao.count();
+                userDao.count();
+            }
+        });
+
+        assertEquals(1, userDao.count());
+    }
+
+    @Test
+    @DisplayName("Форма параметров: типы и длины строк без значений")
+    void bindShape_shouldHideValues() {
+        Object[] binds = {null, 42L, "secret@mail.ru", null};
+
+        String shape = StatementTimingDataSource.bindShape(binds, 3);
+
+        assertEquals("[Long, String(14), ?]", shape);
+        assertFalse(shape.contains("secret"));
+    }
+
+    private static Throwable rootCause(Throwable ex) {
+        while (ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+
+    private static User createUser(String email) {
+        User user = new User();
+        user.setUsername("user");
+        user.setEmail(email);
+        user.setAge(30);
+        return user;
+    }
+}
@@ -0,0 +1 @@
+CREATE TABLE items (id BIGINT NOT NULL PRIMARY KEY);
@@ -0,0 +1,4 @@
+CREATE TABLE items (
+    id   BIGINT      NOT NULL PRIMARY KEY,
+    name VARCHAR(50) NOT NULL
+);
@@ -0,0 +1,6 @@
+-- migration: nontransactional
+-- Каждый оператор можно выполнить повторно: после сбоя на втором индексе скрипт запускается заново
+DROP INDEX IF EXISTS items_name_idx;
+CREATE INDEX items_name_idx ON items (name);
+DROP INDEX IF EXISTS items_name_key;
+CREATE UNIQUE INDEX items_name_key ON items (name);
@@ -0,0 +1,10 @@
+-- Таблица и последовательность, как в основной миграции
+CREATE SEQUENCE items_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE items (
+    id   BIGINT      NOT NULL PRIMARY KEY,
+    name VARCHAR(50) NOT NULL
+);
+
+/* точка с запятой внутри строки не делит оператор */
+INSERT INTO items (id, name) VALUES (1, 'a;b ''quoted''');
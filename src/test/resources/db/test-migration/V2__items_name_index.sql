@@ -0,0 +1,5 @@
+-- migration: nontransactional
+DROP INDEX IF EXISTS items_name_idx;
+CREATE INDEX items_name_idx ON items (name);
+DROP INDEX IF EXISTS items_name_id_key;
+CREATE UNIQUE INDEX items_name_id_key ON items (name, id);